@@ -0,0 +1,161 @@
+import com.google.gson.Gson;
+import ru.yandex.practicum.tasktracker.manager.*;
+import ru.yandex.practicum.tasktracker.model.*;
+import ru.yandex.practicum.tasktracker.server.KVServer;
+import ru.yandex.practicum.tasktracker.server.KVTaskClient;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Общие данные и менеджеры для бенчмарков. Виды менеджеров: inmemory, concurrent, snapshot, wal, group
+ * (FileBackedTaskManager в режимах SNAPSHOT, WRITE_AHEAD_LOG и GROUP_COMMIT) и http (HTTPTaskManager,
+ * KVServer для него должен быть запущен)
+ */
+public class BenchmarkData {
+    public static final String IN_MEMORY = "inmemory";
+    public static final String CONCURRENT = "concurrent";
+    public static final String SNAPSHOT = "snapshot";
+    public static final String WRITE_AHEAD_LOG = "wal";
+    public static final String GROUP_COMMIT = "group";
+    public static final String HTTP = "http";
+
+    public static final LocalDateTime START_TIME = LocalDateTime.of(2022, 1, 1, 0, 0);
+    public static final int SLOT_MINUTES = 30; // каждая задача занимает свой получасовой интервал
+    public static final int TASK_DURATION = 15;
+    public static final int EPIC_PERIOD = 100; // каждая сотая задача - эпик, за ним идут его подзадачи
+    public static final int SUBTASKS_PER_EPIC = 9;
+    private static final int NO_TIME_PERIOD = 10; // у каждой десятой задачи нет времени начала
+    private static final int MAX_HISTORY_VIEWS = 10_000;
+    private static final long FILL_COMMIT_DELAY_MILLIS = 10 * 60 * 1000L;
+
+    /**
+     * Задачи, эпики и подзадачи с id от 1 до count; задача с id занимает интервал, начинающийся через
+     * id * 30 минут после START_TIME
+     */
+    public static List<Task> createTasks(int count) {
+        List<Task> tasks = new ArrayList<>(count);
+        int epicId = 0;
+        for (int id = 1; id <= count; id++) {
+            LocalDateTime startTime = (id % NO_TIME_PERIOD == 0) ? null : getStartTime(id);
+            if (id % EPIC_PERIOD == 1) {
+                epicId = id;
+                tasks.add(new Epic(id, "Эпик " + id, "Описание эпика " + id));
+            } else if (id % EPIC_PERIOD <= SUBTASKS_PER_EPIC + 1) {
+                tasks.add(new Subtask(id, "Подзадача " + id, TaskStatus.NEW, "Описание подзадачи " + id,
+                        startTime, TASK_DURATION, epicId));
+            } else {
+                tasks.add(new Task(id, "Задача " + id, TaskStatus.NEW, "Описание задачи " + id, startTime,
+                        TASK_DURATION));
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Эпик с id 1 и count - 1 подзадачами
+     */
+    public static List<Task> createEpicWithSubtasks(int count) {
+        List<Task> tasks = new ArrayList<>(count);
+        tasks.add(new Epic(1, "Эпик", "Описание эпика"));
+        for (int id = 2; id <= count; id++) {
+            tasks.add(new Subtask(id, "Подзадача " + id, TaskStatus.NEW, "Описание подзадачи " + id,
+                    getStartTime(id), TASK_DURATION, 1));
+        }
+        return tasks;
+    }
+
+    /**
+     * Менеджер сохраняет данные во внешнее хранилище при каждом изменении
+     */
+    public static boolean isPersistedOnChange(String kind) {
+        return !kind.equals(IN_MEMORY) && !kind.equals(CONCURRENT);
+    }
+
+    public static LocalDateTime getStartTime(int id) {
+        return START_TIME.plusMinutes((long) SLOT_MINUTES * id);
+    }
+
+    /**
+     * Создаёт менеджер, заполненный задачами, с историей просмотров первых задач. Данные менеджеров, сохраняющих
+     * их во внешнее хранилище, готовятся заранее и загружаются при создании менеджера, чтобы заполнение
+     * не сохраняло снимок после каждой добавленной задачи
+     */
+    public static TaskManager createManager(String kind, List<Task> tasks, Path directory) throws IOException {
+        switch (kind) {
+            case IN_MEMORY:
+                return fill(new InMemoryTaskManager(), tasks);
+            case CONCURRENT:
+                return fill(new ConcurrentTaskManager(), tasks);
+            case SNAPSHOT:
+                return createFileBackedManager(FileBackedTaskManager.PersistenceMode.SNAPSHOT, tasks, directory);
+            case WRITE_AHEAD_LOG:
+                return createFileBackedManager(FileBackedTaskManager.PersistenceMode.WRITE_AHEAD_LOG, tasks,
+                        directory);
+            case GROUP_COMMIT:
+                return createFileBackedManager(FileBackedTaskManager.PersistenceMode.GROUP_COMMIT, tasks, directory);
+            case HTTP:
+                return createHttpManager(tasks);
+            default:
+                throw new IllegalArgumentException("Неизвестный менеджер: " + kind);
+        }
+    }
+
+    private static TaskManager fill(TaskManager manager, List<Task> tasks) {
+        tasks.forEach(manager::addTaskOfAnyType);
+        tasks.stream().limit(MAX_HISTORY_VIEWS).forEach(task -> {
+            if (manager.getTask(task.getId()) == null && manager.getEpic(task.getId()) == null) {
+                manager.getSubtask(task.getId());
+            }
+        });
+        return manager;
+    }
+
+    private static TaskManager createFileBackedManager(FileBackedTaskManager.PersistenceMode persistenceMode,
+                                                       List<Task> tasks, Path directory) throws IOException {
+        Path file = Files.createTempFile(directory, "tasks", ".csv");
+        FileBackedTaskManager filler = new FileBackedTaskManager(file.toString(), false,
+                FileBackedTaskManager.PersistenceMode.GROUP_COMMIT);
+        filler.setGroupCommitMaxDelay(FILL_COMMIT_DELAY_MILLIS); // снимок записывается один раз при закрытии
+        fill(filler, tasks);
+        filler.close();
+        return new FileBackedTaskManager(file.toString(), true, persistenceMode);
+    }
+
+    private static TaskManager createHttpManager(List<Task> tasks) {
+        String url = "http://localhost:" + KVServer.PORT;
+        TaskManager filler = fill(new InMemoryTaskManager(), tasks);
+        Gson gson = Managers.getGson();
+        KVTaskClient client = new KVTaskClient(url);
+        client.put("tasks", gson.toJson(toMap(filler.getTasks())));
+        client.put("epics", gson.toJson(toMap(filler.getEpics())));
+        client.put("history", gson.toJson(filler.getHistory().stream().map(Task::getId).toArray()));
+        return new HTTPTaskManager(url, true);
+    }
+
+    private static <T extends Task> Map<Integer, T> toMap(List<T> tasks) {
+        return tasks.stream().collect(Collectors.toMap(Task::getId, task -> task));
+    }
+
+    public static void close(TaskManager manager) {
+        if (manager instanceof FileBackedTaskManager) {
+            ((FileBackedTaskManager) manager).close();
+        }
+    }
+
+    public static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
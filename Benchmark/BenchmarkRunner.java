@@ -0,0 +1,99 @@
+import java.io.PrintStream;
+
+/**
+ * Измеритель для бенчмарков без подключения JMH: серия операций выполняется несколько раз для прогрева,
+ * затем несколько раз с замером времени. Выводится среднее и лучшее по раундам время операции (или элемента,
+ * если операция обрабатывает несколько элементов) и пропускная способность.
+ * Число раундов можно задать свойствами benchmark.warmup и benchmark.rounds (-Dbenchmark.rounds=10)
+ */
+public class BenchmarkRunner {
+    private static final int DEFAULT_WARMUP_ROUNDS = 3;
+    private static final int DEFAULT_MEASURED_ROUNDS = 5;
+
+    private static long sink; // результаты накапливаются, чтобы JIT не удалил измеряемый код
+
+    private final int warmupRounds;
+    private final int measuredRounds;
+    private final PrintStream out; // вывод результатов (System.out может быть заглушён на время замеров)
+
+    /**
+     * Операция серии
+     */
+    public interface Operation {
+        /**
+         * @param index номер операции в серии (от 0)
+         */
+        void run(int index) throws Exception;
+    }
+
+    public BenchmarkRunner() {
+        this(Integer.getInteger("benchmark.warmup", DEFAULT_WARMUP_ROUNDS),
+                Integer.getInteger("benchmark.rounds", DEFAULT_MEASURED_ROUNDS));
+    }
+
+    public BenchmarkRunner(int warmupRounds, int measuredRounds) {
+        this.warmupRounds = warmupRounds;
+        this.measuredRounds = Math.max(1, measuredRounds);
+        this.out = System.out;
+    }
+
+    /**
+     * Сохраняет результат операции, чтобы JIT не посчитал его вычисление лишним
+     */
+    public static void consume(long value) {
+        sink += value;
+    }
+
+    public static long getSink() {
+        return sink;
+    }
+
+    public PrintStream getOut() {
+        return out;
+    }
+
+    public void printHeader(String title) {
+        out.println();
+        out.println(title);
+        out.printf("%-52s %12s %12s %14s%n", "бенчмарк", "среднее, нс", "лучшее, нс", "оп./с");
+    }
+
+    public void run(String name, int operationsCount, Operation operation) {
+        run(name, operationsCount, 1, operation);
+    }
+
+    /**
+     * Выполняет серию из operationsCount операций в каждом раунде
+     *
+     * @param itemsPerOperation число элементов, обрабатываемых одной операцией; время выводится в расчёте
+     *                          на один элемент
+     */
+    public void run(String name, int operationsCount, int itemsPerOperation, Operation operation) {
+        try {
+            for (int i = 0; i < warmupRounds; i++) {
+                runRound(operationsCount, operation);
+            }
+            long totalNanos = 0;
+            long bestNanos = Long.MAX_VALUE;
+            for (int i = 0; i < measuredRounds; i++) {
+                long roundNanos = runRound(operationsCount, operation);
+                totalNanos += roundNanos;
+                bestNanos = Math.min(bestNanos, roundNanos);
+            }
+            double items = (double) operationsCount * itemsPerOperation;
+            double averageNanos = totalNanos / items / measuredRounds;
+            out.printf("%-52s %12.1f %12.1f %14.0f%n", name, averageNanos, bestNanos / items,
+                    1_000_000_000.0 / averageNanos);
+        } catch (Exception e) {
+            out.printf("%-52s ошибка: %s%n", name, e);
+        }
+    }
+
+    private long runRound(int operationsCount, Operation operation) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < operationsCount; i++) {
+            operation.run(i);
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,420 @@
+import com.google.gson.Gson;
+import ru.yandex.practicum.tasktracker.manager.Managers;
+import ru.yandex.practicum.tasktracker.manager.TaskManager;
+import ru.yandex.practicum.tasktracker.model.*;
+import ru.yandex.practicum.tasktracker.server.HttpTaskServer;
+import ru.yandex.practicum.tasktracker.server.InMemoryKVStorage;
+import ru.yandex.practicum.tasktracker.server.KVServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Нагрузочный тест HTTP API: несколько потоков отправляют смесь запросов к эндпойнтам задач, эпиков, подзадач,
+ * истории и приоритезированного списка и записывают задержки в гистограммы по типам запросов.
+ * При заданной частоте (rate) запросы отправляются по расписанию (открытая модель нагрузки), и задержка
+ * отсчитывается от запланированного времени отправки, поэтому в неё входит ожидание запросов, которые не удалось
+ * отправить вовремя из-за медленных ответов. Без частоты каждый поток отправляет следующий запрос сразу после
+ * ответа на предыдущий (закрытая модель).
+ * Параметры (имя=значение):
+ * url - адрес работающего HttpTaskServer (по умолчанию сервер и, для менеджера http, KVServer запускаются
+ * в этом же процессе), manager - вид менеджера локального сервера (см. {@link BenchmarkData}, по умолчанию
+ * inmemory), executor и serverThreads - режим обработки запросов и число потоков локальных серверов,
+ * tasks - число задач, которыми заполняется менеджер, threads - число потоков нагрузки, rate - общая частота
+ * запросов в секунду (0 - закрытая модель), warmup и duration - продолжительность прогрева и замера в секундах,
+ * mix - веса запросов, например mix=get-task:10,post-task:1.
+ * Запуск: java -cp out:lib/* HttpLoadTest manager=concurrent executor=FIXED_POOL threads=8 rate=2000
+ */
+public class HttpLoadTest {
+    private static final String LOCAL_SERVER_URL = "http://localhost:8080";
+    private static final int OWN_IDS_PER_WORKER = 1_000_000; // id задач, добавляемых потоком нагрузки
+    private static final long START_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private static final Gson gson = Managers.getGson();
+
+    private static String serverUrl;
+    private static int threadsCount;
+    private static double rate;
+    private static final List<Task> tasks = new ArrayList<>();
+    private static final List<Epic> epics = new ArrayList<>();
+    private static final List<Subtask> subtasks = new ArrayList<>();
+
+    /**
+     * Тип запроса и его вес в смеси по умолчанию
+     */
+    private enum RequestType {
+        GET_TASK("get-task", 20) {
+            @Override
+            HttpRequest create(Worker worker) {
+                return get("/tasks/task/?id=" + worker.pick(tasks).getId());
+            }
+        },
+        GET_EPIC("get-epic", 10) {
+            @Override
+            HttpRequest create(Worker worker) {
+                return get("/tasks/epic/?id=" + worker.pick(epics).getId());
+            }
+        },
+        GET_SUBTASK("get-subtask", 10) {
+            @Override
+            HttpRequest create(Worker worker) {
+                return get("/tasks/subtask/?id=" + worker.pick(subtasks).getId());
+            }
+        },
+        GET_EPIC_SUBTASKS("get-epic-subtasks", 5) {
+            @Override
+            HttpRequest create(Worker worker) {
+                return get("/tasks/subtask/epic/?id=" + worker.pick(epics).getId());
+            }
+        },
+        GET_TASKS("get-tasks", 2) {
+            @Override
+            HttpRequest create(Worker worker) {
+                return get("/tasks/task/");
+            }
+        },
+        GET_EPICS("get-epics", 1) {
+            @Override
+            HttpRequest create(Worker worker) {
+                return get("/tasks/epic/");
+            }
+        },
+        GET_SUBTASKS("get-subtasks", 1) {
+            @Override
+            HttpRequest create(Worker worker) {
+                return get("/tasks/subtask/");
+            }
+        },
+        GET_HISTORY("get-history", 10) {
+            @Override
+            HttpRequest create(Worker worker) {
+                return get("/tasks/history");
+            }
+        },
+        GET_PRIORITIZED("get-prioritized", 5) {
+            @Override
+            HttpRequest create(Worker worker) {
+                return get("/tasks/");
+            }
+        },
+        POST_TASK("post-task", 10) {
+            @Override
+            HttpRequest create(Worker worker) {
+                int id = worker.nextOwnId++;
+                worker.postedIds.addLast(id);
+                return post("/tasks/task/", new Task(id, "Задача " + id, TaskStatus.NEW, "Описание задачи " + id,
+                        BenchmarkData.getStartTime(id), BenchmarkData.TASK_DURATION));
+            }
+        },
+        UPDATE_SUBTASK("update-subtask", 10) {
+            @Override
+            HttpRequest create(Worker worker) {
+                Subtask subtask = worker.pick(subtasks);
+                TaskStatus status = TaskStatus.values()[worker.random.nextInt(TaskStatus.values().length)];
+                return post("/tasks/subtask/", new Subtask(subtask.getId(), subtask.getName(), status,
+                        subtask.getDescription(), subtask.getStartTime(), subtask.getDuration(), subtask.getEpicId()));
+            }
+        },
+        DELETE_TASK("delete-task", 10) {
+            @Override
+            HttpRequest create(Worker worker) {
+                return HttpRequest.newBuilder(URI.create(serverUrl + "/tasks/task/?id=" + worker.postedIds.poll()))
+                        .DELETE().build();
+            }
+        };
+
+        private final String name;
+        private final int defaultWeight;
+
+        RequestType(String name, int defaultWeight) {
+            this.name = name;
+            this.defaultWeight = defaultWeight;
+        }
+
+        abstract HttpRequest create(Worker worker);
+
+        static RequestType byName(String name) {
+            for (RequestType type : values()) {
+                if (type.name.equals(name)) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Неизвестный тип запроса: " + name);
+        }
+    }
+
+    /**
+     * Поток нагрузки со своим клиентом, генератором случайных чисел и гистограммами
+     */
+    private static class Worker implements Runnable {
+        private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        private final Random random;
+        private final RequestType[] types;
+        private final int[] cumulativeWeights;
+        private final long startNanos;
+        private final long measureStartNanos;
+        private final long endNanos;
+        private final long intervalNanos; // 0 - закрытая модель нагрузки
+        private final Map<RequestType, LatencyHistogram> histograms = new EnumMap<>(RequestType.class);
+        private final Map<RequestType, Long> errors = new EnumMap<>(RequestType.class);
+        private final Deque<Integer> postedIds = new ArrayDeque<>(); // добавленные потоком и ещё не удалённые
+        private int nextOwnId;
+        private long lastResponseNanos;
+
+        Worker(int number, Map<RequestType, Integer> weights, long startNanos, long measureStartNanos,
+               long endNanos) {
+            random = new Random(number);
+            types = weights.keySet().toArray(new RequestType[0]);
+            cumulativeWeights = new int[types.length];
+            int sum = 0;
+            for (int i = 0; i < types.length; i++) {
+                sum += weights.get(types[i]);
+                cumulativeWeights[i] = sum;
+            }
+            intervalNanos = (rate > 0) ? (long) (threadsCount * 1_000_000_000.0 / rate) : 0;
+            // потоки открытой модели сдвинуты друг относительно друга, чтобы запросы шли равномерно
+            this.startNanos = startNanos + intervalNanos * number / threadsCount;
+            this.measureStartNanos = measureStartNanos;
+            this.endNanos = endNanos;
+            nextOwnId = tasks.size() + epics.size() + subtasks.size() + 1 + number * OWN_IDS_PER_WORKER;
+        }
+
+        @Override
+        public void run() {
+            long intendedNanos = startNanos;
+            while (true) {
+                if (intervalNanos > 0) {
+                    long delay = intendedNanos - System.nanoTime();
+                    if (delay > 0) {
+                        LockSupport.parkNanos(delay);
+                        continue; // parkNanos может вернуться раньше срока
+                    }
+                } else {
+                    intendedNanos = Math.max(System.nanoTime(), startNanos);
+                }
+                if (intendedNanos >= endNanos) {
+                    return;
+                }
+                RequestType type = chooseType();
+                boolean isSuccessful;
+                try {
+                    HttpResponse<Void> response = client.send(type.create(this),
+                            HttpResponse.BodyHandlers.discarding());
+                    isSuccessful = response.statusCode() < 400;
+                } catch (IOException e) {
+                    isSuccessful = false;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                lastResponseNanos = System.nanoTime();
+                long latencyNanos = lastResponseNanos - intendedNanos;
+                if (intendedNanos >= measureStartNanos) {
+                    histograms.computeIfAbsent(type, key -> new LatencyHistogram()).record(latencyNanos);
+                    if (!isSuccessful) {
+                        errors.merge(type, 1L, Long::sum);
+                    }
+                }
+                intendedNanos += intervalNanos;
+            }
+        }
+
+        private RequestType chooseType() {
+            int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            int i = 0;
+            while (cumulativeWeights[i] <= value) {
+                i++;
+            }
+            // удаляются только задачи, добавленные этим потоком; если их нет, задача добавляется
+            return (types[i] == RequestType.DELETE_TASK && postedIds.isEmpty()) ? RequestType.POST_TASK : types[i];
+        }
+
+        private <T> T pick(List<T> items) {
+            return items.get(random.nextInt(items.size()));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        HttpTaskServer.enableTcpNoDelay(); // до создания локальных серверов
+        Map<String, String> parameters = new HashMap<>();
+        for (String arg : args) {
+            String[] parts = arg.split("=", 2);
+            parameters.put(parts[0], (parts.length > 1) ? parts[1] : "");
+        }
+        serverUrl = parameters.get("url");
+        String managerKind = parameters.getOrDefault("manager", BenchmarkData.IN_MEMORY);
+        HttpTaskServer.ExecutorMode executorMode = HttpTaskServer.ExecutorMode.valueOf(
+                parameters.getOrDefault("executor", HttpTaskServer.ExecutorMode.DISPATCHER.name()));
+        int serverThreadsCount = Integer.parseInt(parameters.getOrDefault("serverThreads", "0"));
+        int tasksCount = Integer.parseInt(parameters.getOrDefault("tasks", "1000"));
+        threadsCount = Integer.parseInt(parameters.getOrDefault("threads", "4"));
+        rate = Double.parseDouble(parameters.getOrDefault("rate", "0"));
+        int warmupSeconds = Integer.parseInt(parameters.getOrDefault("warmup", "2"));
+        int durationSeconds = Integer.parseInt(parameters.getOrDefault("duration", "10"));
+        Map<RequestType, Integer> weights = parseWeights(parameters.get("mix"));
+
+        List<Task> data = BenchmarkData.createTasks(Math.max(tasksCount, BenchmarkData.EPIC_PERIOD));
+        for (Task task : data) {
+            if (task instanceof Epic) {
+                epics.add((Epic) task);
+            } else if (task instanceof Subtask) {
+                subtasks.add((Subtask) task);
+            } else {
+                tasks.add(task);
+            }
+        }
+
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // серверы пишут в консоль о каждом запросе
+        Path directory = Files.createTempDirectory("http-load-test");
+        KVServer kvServer = null;
+        HttpTaskServer taskServer = null;
+        try {
+            if (serverUrl == null) {
+                if (managerKind.equals(BenchmarkData.HTTP)) {
+                    kvServer = new KVServer(new InMemoryKVStorage(), executorMode, serverThreadsCount);
+                    kvServer.start();
+                }
+                TaskManager manager = BenchmarkData.createManager(managerKind, data, directory);
+                taskServer = new HttpTaskServer(manager, executorMode, serverThreadsCount);
+                taskServer.start();
+                serverUrl = LOCAL_SERVER_URL;
+            } else {
+                fillRemoteServer(data);
+            }
+
+            long startNanos = System.nanoTime() + START_DELAY_NANOS;
+            long measureStartNanos = startNanos + TimeUnit.SECONDS.toNanos(warmupSeconds);
+            long endNanos = measureStartNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+            List<Worker> workers = new ArrayList<>();
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < threadsCount; i++) {
+                Worker worker = new Worker(i, weights, startNanos, measureStartNanos, endNanos);
+                workers.add(worker);
+                threads.add(new Thread(worker, "load-" + i));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            out.printf("Сервер: %s, задач: %d, потоков: %d, %s, замер: %d с%n",
+                    (taskServer != null) ? managerKind + ", " + executorMode : serverUrl, data.size(), threadsCount,
+                    (rate > 0) ? String.format("частота: %.0f запросов/с", rate) : "закрытая модель",
+                    durationSeconds);
+            long lastResponseNanos = workers.stream().mapToLong(worker -> worker.lastResponseNanos).max().orElse(0);
+            printResults(out, workers, Math.max(lastResponseNanos - measureStartNanos, 1));
+        } finally {
+            if (taskServer != null) {
+                taskServer.stop();
+            }
+            if (kvServer != null) {
+                kvServer.stop();
+            }
+            System.setOut(out);
+            BenchmarkData.deleteDirectory(directory);
+        }
+    }
+
+    private static Map<RequestType, Integer> parseWeights(String mix) {
+        Map<RequestType, Integer> weights = new EnumMap<>(RequestType.class);
+        if (mix == null) {
+            for (RequestType type : RequestType.values()) {
+                weights.put(type, type.defaultWeight);
+            }
+            return weights;
+        }
+        for (String item : mix.split(",")) {
+            String[] parts = item.split(":");
+            int weight = (parts.length > 1) ? Integer.parseInt(parts[1]) : 1;
+            if (weight > 0) {
+                weights.put(RequestType.byName(parts[0]), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("В смеси нет запросов с положительным весом.");
+        }
+        return weights;
+    }
+
+    /**
+     * Заполняет задачами сервер, запущенный вне теста (эпики передаются раньше своих подзадач)
+     */
+    private static void fillRemoteServer(List<Task> data) throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        for (Task task : data) {
+            String path = (task instanceof Epic) ? "/tasks/epic/" : (task instanceof Subtask) ? "/tasks/subtask/"
+                    : "/tasks/task/";
+            HttpResponse<Void> response = client.send(post(path, task), HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() >= 400) {
+                throw new IllegalStateException("Сервер не принял задачу с id " + task.getId() + ", код ответа "
+                        + response.statusCode());
+            }
+        }
+    }
+
+    /**
+     * @param elapsedNanos время от начала замера до последнего ответа (в открытой модели при перегрузке сервера
+     *                     больше продолжительности замера, так как запланированные запросы отправляются с опозданием)
+     */
+    private static void printResults(PrintStream out, List<Worker> workers, long elapsedNanos) {
+        out.printf("%-18s %9s %7s %9s", "запрос", "ответов", "ошибок", "среднее");
+        for (double percentile : PERCENTILES) {
+            out.printf(" %9s", "p" + formatPercentile(percentile));
+        }
+        out.printf(" %9s   (задержки в мс)%n", "макс.");
+
+        LatencyHistogram total = new LatencyHistogram();
+        long totalErrors = 0;
+        for (RequestType type : RequestType.values()) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            long errors = 0;
+            for (Worker worker : workers) {
+                LatencyHistogram workerHistogram = worker.histograms.get(type);
+                if (workerHistogram != null) {
+                    histogram.add(workerHistogram);
+                }
+                errors += worker.errors.getOrDefault(type, 0L);
+            }
+            if (histogram.getCount() > 0) {
+                printRow(out, type.name, histogram, errors);
+                total.add(histogram);
+                totalErrors += errors;
+            }
+        }
+        printRow(out, "всего", total, totalErrors);
+        out.printf("Пропускная способность: %.1f запросов/с%n", total.getCount() * 1e9 / elapsedNanos);
+    }
+
+    private static void printRow(PrintStream out, String name, LatencyHistogram histogram, long errors) {
+        out.printf("%-18s %9d %7d %9.3f", name, histogram.getCount(), errors, histogram.getMean() / 1_000_000);
+        for (double percentile : PERCENTILES) {
+            out.printf(" %9.3f", histogram.getValueAtPercentile(percentile) / 1_000_000.0);
+        }
+        out.printf(" %9.3f%n", histogram.getMax() / 1_000_000.0);
+    }
+
+    private static String formatPercentile(double percentile) {
+        return (percentile == Math.rint(percentile)) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+
+    private static HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(serverUrl + path)).GET().build();
+    }
+
+    private static HttpRequest post(String path, Task task) {
+        return HttpRequest.newBuilder(URI.create(serverUrl + path))
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(task))).build();
+    }
+}
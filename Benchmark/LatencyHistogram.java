@@ -0,0 +1,94 @@
+/**
+ * Гистограмма задержек с логарифмически-линейными интервалами (по образцу HdrHistogram): значения до 256 нс
+ * хранятся точно, бóльшие - в интервалах, ширина которых не превышает 1/128 их нижней границы, поэтому
+ * относительная погрешность перцентилей не больше 0,8% при постоянном объёме памяти. Не потокобезопасная:
+ * каждый поток нагрузки ведёт свою гистограмму, и гистограммы объединяются после замера
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS; // интервалов на каждую степень двойки
+    private static final int EXACT_VALUES_COUNT = 2 * SUB_BUCKET_COUNT; // значения меньше хранятся точно
+    private static final int BUCKETS_COUNT = EXACT_VALUES_COUNT + (Long.SIZE - 2 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final long[] counts = new long[BUCKETS_COUNT];
+    private long totalCount;
+    private long minValue = Long.MAX_VALUE;
+    private long maxValue;
+    private double sum;
+
+    /**
+     * Добавляет значение задержки (отрицательное значение считается нулевым)
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[getIndex(value)]++;
+        totalCount++;
+        minValue = Math.min(minValue, value);
+        maxValue = Math.max(maxValue, value);
+        sum += value;
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        minValue = Math.min(minValue, other.minValue);
+        maxValue = Math.max(maxValue, other.maxValue);
+        sum += other.sum;
+    }
+
+    public long getCount() {
+        return totalCount;
+    }
+
+    public long getMin() {
+        return (totalCount > 0) ? minValue : 0;
+    }
+
+    public long getMax() {
+        return maxValue;
+    }
+
+    public double getMean() {
+        return (totalCount > 0) ? sum / totalCount : 0;
+    }
+
+    /**
+     * Возвращает значение, которого не превышают percentile процентов записанных значений (верхнюю границу
+     * интервала, в который попал перцентиль, но не больше максимального значения)
+     *
+     * @param percentile перцентиль от 0 до 100
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * totalCount));
+        long count = 0;
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            count += counts[i];
+            if (count >= rank) {
+                return Math.min(getHighestValue(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    private static int getIndex(long value) {
+        if (value < EXACT_VALUES_COUNT) {
+            return (int) value;
+        }
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS; // value >>> shift в [128, 256)
+        return EXACT_VALUES_COUNT + (shift - 1) * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    }
+
+    private static long getHighestValue(int index) {
+        if (index < EXACT_VALUES_COUNT) {
+            return index;
+        }
+        int shift = (index - EXACT_VALUES_COUNT) / SUB_BUCKET_COUNT + 1;
+        long subBucket = (index - EXACT_VALUES_COUNT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
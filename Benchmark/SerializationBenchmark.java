@@ -0,0 +1,110 @@
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import ru.yandex.practicum.tasktracker.manager.Managers;
+import ru.yandex.practicum.tasktracker.model.*;
+import ru.yandex.practicum.tasktracker.server.LocalDateTimeAdapter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сравнение сериализации задач в JSON: Gson на основе отражения с датой через DateTimeFormatter (прежний способ)
+ * и Gson из Managers.getGson() с потоковыми адаптерами задач и посимвольным кодеком даты.
+ * Запуск: java -cp out:lib/* SerializationBenchmark [количество задач]
+ */
+public class SerializationBenchmark {
+    private static final int WARMUP_ROUNDS = 10;
+    private static final int MEASURED_ROUNDS = 20;
+    private static final Type TASK_LIST_TYPE = new TypeToken<List<Task>>() {
+    }.getType();
+
+    /**
+     * Адаптер даты через шаблон DateTimeFormatter, как до появления посимвольного кодека
+     */
+    private static class FormatterDateTimeAdapter extends TypeAdapter<LocalDateTime> {
+        private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+
+        @Override
+        public void write(JsonWriter jsonWriter, LocalDateTime localDateTime) throws IOException {
+            jsonWriter.value((localDateTime != null) ? localDateTime.format(formatter) : "null");
+        }
+
+        @Override
+        public LocalDateTime read(JsonReader jsonReader) throws IOException {
+            String value = jsonReader.nextString();
+            return (!value.equals("null")) ? LocalDateTime.parse(value, formatter) : null;
+        }
+    }
+
+    public static void main(String[] args) {
+        int tasksCount = (args.length > 0) ? Integer.parseInt(args[0]) : 10_000;
+        List<Task> tasks = createTasks(tasksCount);
+
+        Gson reflectiveGson = new GsonBuilder()
+                .serializeNulls()
+                .registerTypeAdapter(LocalDateTime.class, new FormatterDateTimeAdapter())
+                .create();
+        Gson adaptersGson = Managers.getGson();
+        String reflectiveJson = reflectiveGson.toJson(tasks);
+        String adaptersJson = adaptersGson.toJson(tasks);
+
+        BenchmarkRunner runner = new BenchmarkRunner(WARMUP_ROUNDS, MEASURED_ROUNDS);
+        runner.printHeader(String.format("Задач: %d, размер JSON: %d (отражение) / %d (адаптеры) символов."
+                + " Время - в расчёте на одну задачу", tasksCount, reflectiveJson.length(), adaptersJson.length()));
+        runner.run("toJson, отражение", 1, tasksCount,
+                index -> BenchmarkRunner.consume(reflectiveGson.toJson(tasks).length()));
+        runner.run("toJson, адаптеры", 1, tasksCount,
+                index -> BenchmarkRunner.consume(adaptersGson.toJson(tasks).length()));
+        runner.run("fromJson, отражение", 1, tasksCount, index -> BenchmarkRunner.consume(
+                reflectiveGson.<List<Task>>fromJson(reflectiveJson, TASK_LIST_TYPE).size()));
+        runner.run("fromJson, адаптеры", 1, tasksCount, index -> BenchmarkRunner.consume(
+                adaptersGson.<List<Task>>fromJson(adaptersJson, TASK_LIST_TYPE).size()));
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+        runner.run("дата, DateTimeFormatter", tasksCount, index -> {
+            LocalDateTime startTime = tasks.get(index).getStartTime();
+            if (startTime != null) {
+                BenchmarkRunner.consume(LocalDateTime.parse(startTime.format(formatter), formatter).getMinute());
+            }
+        });
+        runner.run("дата, посимвольный кодек", tasksCount, index -> {
+            LocalDateTime startTime = tasks.get(index).getStartTime();
+            if (startTime != null) {
+                BenchmarkRunner.consume(LocalDateTimeAdapter.parse(LocalDateTimeAdapter.format(startTime)).getMinute());
+            }
+        });
+        runner.getOut().println("(контрольное значение: " + BenchmarkRunner.getSink() + ")");
+    }
+
+    /**
+     * Смесь задач, эпиков и подзадач: у каждого десятого эпика 5 подзадач, у каждой четвёртой задачи нет времени
+     */
+    private static List<Task> createTasks(int count) {
+        List<Task> tasks = new ArrayList<>(count);
+        LocalDateTime startTime = LocalDateTime.of(2022, 6, 1, 9, 0);
+        Epic epic = null;
+        for (int id = 1; id <= count; id++) {
+            LocalDateTime taskStartTime = (id % 4 == 0) ? null : startTime.plusMinutes(id * 30L);
+            if (id % 10 == 1) {
+                epic = new Epic(id, "Эпик " + id, "Описание эпика " + id);
+                tasks.add(epic);
+            } else if (id % 10 <= 5) {
+                Subtask subtask = new Subtask(id, "Подзадача " + id, TaskStatus.IN_PROGRESS,
+                        "Описание подзадачи " + id, taskStartTime, 30, epic.getId());
+                epic.getSubtasksMap().put(id, subtask);
+                tasks.add(subtask);
+            } else {
+                tasks.add(new Task(id, "Задача " + id, TaskStatus.NEW, "Описание задачи " + id, taskStartTime, 15));
+            }
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,135 @@
+import ru.yandex.practicum.tasktracker.manager.TaskManager;
+import ru.yandex.practicum.tasktracker.model.*;
+import ru.yandex.practicum.tasktracker.server.KVServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Бенчмарки менеджеров задач: смесь добавления, замены и удаления, просмотр задачи, получение истории
+ * и приоритезированного списка, проверка пересечения по времени и пересчёт свойств эпика с большим числом подзадач.
+ * Виды менеджеров - см. {@link BenchmarkData}; KVServer для менеджера http запускается в этом же процессе.
+ * Запуск: java -cp out:lib/* TaskManagerBenchmark [размеры через запятую] [менеджеры через запятую],
+ * например: TaskManagerBenchmark 1000,1000000 inmemory
+ */
+public class TaskManagerBenchmark {
+    private static final List<String> ALL_KINDS = List.of(BenchmarkData.IN_MEMORY, BenchmarkData.CONCURRENT,
+            BenchmarkData.SNAPSHOT, BenchmarkData.WRITE_AHEAD_LOG, BenchmarkData.GROUP_COMMIT, BenchmarkData.HTTP);
+    private static final String DEFAULT_SIZES = "1000,10000,100000";
+    private static final int PROBES_COUNT = 1024;
+
+    // Число операций в серии: для менеджеров в памяти и для менеджеров, сохраняющих данные при изменении
+    private static final int IN_MEMORY_OPERATIONS = 10_000;
+    private static final int LIST_ELEMENTS_BUDGET = 10_000_000; // суммарное число элементов списков в серии
+    private static final int PERSISTED_TASKS_BUDGET = 200_000; // суммарный размер сохраняемых снимков в серии
+    private static final int MIN_OPERATIONS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = Arrays.stream(((args.length > 0) ? args[0] : DEFAULT_SIZES).split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        List<String> kinds = (args.length > 1) ? Arrays.asList(args[1].split(",")) : ALL_KINDS;
+
+        BenchmarkRunner runner = new BenchmarkRunner();
+        PrintStream out = runner.getOut();
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // KVServer пишет в консоль о каждом запросе
+        Path directory = Files.createTempDirectory("task-manager-benchmark");
+        KVServer kvServer = null;
+        try {
+            if (kinds.contains(BenchmarkData.HTTP)) {
+                kvServer = new KVServer();
+                kvServer.start();
+            }
+            for (int size : sizes) {
+                for (String kind : kinds) {
+                    runner.printHeader(String.format("%s, задач: %d", kind, size));
+                    List<Task> tasks = BenchmarkData.createTasks(size);
+                    TaskManager manager = BenchmarkData.createManager(kind, tasks, directory);
+                    runManagerBenchmarks(runner, kind, manager, size);
+                    BenchmarkData.close(manager);
+
+                    tasks = BenchmarkData.createEpicWithSubtasks(size);
+                    manager = BenchmarkData.createManager(kind, tasks, directory);
+                    runEpicBenchmarks(runner, kind, manager, size);
+                    BenchmarkData.close(manager);
+                }
+            }
+        } finally {
+            System.setOut(out);
+            if (kvServer != null) {
+                kvServer.stop();
+            }
+            BenchmarkData.deleteDirectory(directory);
+        }
+        out.println("(контрольное значение: " + BenchmarkRunner.getSink() + ")");
+    }
+
+    private static void runManagerBenchmarks(BenchmarkRunner runner, String kind, TaskManager manager, int size) {
+        int changeOperations = BenchmarkData.isPersistedOnChange(kind)
+                ? Math.max(MIN_OPERATIONS, PERSISTED_TASKS_BUDGET / size) : IN_MEMORY_OPERATIONS;
+        int listOperations = Math.max(MIN_OPERATIONS, LIST_ELEMENTS_BUDGET / size);
+        int[] timedIds = manager.getPrioritizedTasks().stream()
+                .filter(task -> task.getStartTime() != null).mapToInt(Task::getId).toArray();
+        Random random = new Random(42);
+
+        // Добавление, замена и удаление задачи в свободном интервале после всех задач менеджера
+        runner.run("add + replace + remove", changeOperations, index -> {
+            LocalDateTime startTime = BenchmarkData.getStartTime(size + 1 + index);
+            int id = manager.addTaskOfAnyType(new Task("Новая задача", TaskStatus.NEW, "Описание", startTime,
+                    BenchmarkData.TASK_DURATION));
+            manager.replaceTask(new Task(id, "Новая задача", TaskStatus.IN_PROGRESS, "Описание",
+                    startTime.plusMinutes(5), BenchmarkData.TASK_DURATION));
+            BenchmarkRunner.consume(manager.removeTaskOfAnyTypeById(id) ? id : 0);
+        });
+
+        int[] viewedIds = random.ints(PROBES_COUNT, 0, timedIds.length).map(i -> timedIds[i]).toArray();
+        runner.run("getTask / getSubtask (просмотр)", changeOperations, index -> {
+            int id = viewedIds[index % viewedIds.length];
+            Task task = manager.getTask(id);
+            BenchmarkRunner.consume(((task != null) ? task : manager.getSubtask(id)).getDuration());
+        });
+
+        // Добавление задачи, пересекающейся по времени с существующей: менеджер отклоняет её после проверки
+        Task[] overlappingTasks = Arrays.stream(viewedIds)
+                .mapToObj(id -> new Task("Пересекающаяся задача", TaskStatus.NEW, "Описание",
+                        BenchmarkData.getStartTime(id).plusMinutes(BenchmarkData.TASK_DURATION - 1),
+                        BenchmarkData.TASK_DURATION))
+                .toArray(Task[]::new);
+        runner.run("проверка пересечения (отклонённое добавление)", IN_MEMORY_OPERATIONS, index ->
+                BenchmarkRunner.consume(manager.addTaskOfAnyType(overlappingTasks[index % overlappingTasks.length])));
+
+        int historySize = manager.getHistory().size();
+        runner.run("getHistory (" + historySize + " задач)", listOperations, index ->
+                BenchmarkRunner.consume(manager.getHistory().size()));
+        runner.run("getPrioritizedTasks", listOperations, index ->
+                BenchmarkRunner.consume(manager.getPrioritizedTasks().size()));
+    }
+
+    private static void runEpicBenchmarks(BenchmarkRunner runner, String kind, TaskManager manager, int size) {
+        int changeOperations = BenchmarkData.isPersistedOnChange(kind)
+                ? Math.max(MIN_OPERATIONS, PERSISTED_TASKS_BUDGET / size) : IN_MEMORY_OPERATIONS;
+        int epicId = 1;
+        int subtasksCount = size - 1;
+
+        // Смена статуса подзадачи пересчитывает статус эпика
+        runner.run("эпик: replaceSubtask со сменой статуса", changeOperations, index -> {
+            int id = epicId + 1 + index % subtasksCount;
+            TaskStatus status = (index % 2 == 0) ? TaskStatus.DONE : TaskStatus.NEW;
+            BenchmarkRunner.consume(manager.replaceSubtask(new Subtask(id, "Подзадача " + id, status,
+                    "Описание", BenchmarkData.getStartTime(id), BenchmarkData.TASK_DURATION, epicId)) ? 1 : 0);
+        });
+        // Удаление и возврат самой ранней подзадачи пересчитывают время начала и продолжительность эпика
+        Subtask firstSubtask = manager.getEpicSubtasks(epicId).stream()
+                .min(Comparator.comparing(Task::getStartTime)).orElseThrow();
+        runner.run("эпик: remove + add самой ранней подзадачи", changeOperations, index -> {
+            manager.removeTaskOfAnyTypeById(firstSubtask.getId());
+            BenchmarkRunner.consume(manager.addTaskOfAnyType(firstSubtask));
+        });
+        runner.run("эпик: getEpic", changeOperations, index ->
+                BenchmarkRunner.consume(manager.getEpic(epicId).getDuration()));
+    }
+}
@@ -0,0 +1,122 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.tasktracker.manager.ConcurrentTaskManager;
+import ru.yandex.practicum.tasktracker.model.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentTaskManagerTest extends TaskManagerTest<ConcurrentTaskManager> {
+    private static final int THREADS_COUNT = 8;
+    private static final int TASKS_PER_THREAD_COUNT = 200;
+
+    @BeforeEach
+    @Override
+    void init() {
+        taskManager = new ConcurrentTaskManager();
+        super.init();
+    }
+
+    @Test
+    @DisplayName("Параллельное добавление задач не должно приводить к пересечениям по времени и повтору id")
+    void parallelAddingTasksKeepsScheduleWithoutOverlapsTest() throws Exception {
+        LocalDateTime start = LocalDateTime.of(2022, 6, 1, 0, 0);
+        // Каждый поток пытается занять одни и те же интервалы, поэтому успешно добавится только одна задача на интервал
+        runInParallel(() -> {
+            for (int i = 0; i < TASKS_PER_THREAD_COUNT; i++) {
+                taskManager.addTaskOfAnyType(new Task("Task", TaskStatus.NEW, "Task description",
+                        start.plusMinutes(30L * i), 30));
+            }
+        });
+
+        List<Task> prioritizedTasks = taskManager.getPrioritizedTasks();
+        assertEquals(TASKS_PER_THREAD_COUNT, prioritizedTasks.size(), "Неверное количество задач в расписании.");
+        assertEquals(TASKS_PER_THREAD_COUNT, taskManager.getTasks().size(), "Неверное количество задач.");
+        for (int i = 1; i < prioritizedTasks.size(); i++) {
+            assertFalse(prioritizedTasks.get(i - 1).getEndTime().isAfter(prioritizedTasks.get(i).getStartTime()),
+                    "Задачи в расписании пересекаются по времени.");
+        }
+    }
+
+    @Test
+    @DisplayName("Параллельное добавление подзадач в один эпик должно сохранять все подзадачи и статус эпика")
+    void parallelAddingSubtasksKeepsEpicInvariantsTest() throws Exception {
+        int epicId = taskManager.addTaskOfAnyType(epicA);
+        runInParallel(() -> {
+            for (int i = 0; i < TASKS_PER_THREAD_COUNT; i++) {
+                taskManager.addTaskOfAnyType(new Subtask("Subtask", TaskStatus.DONE, "Subtask description",
+                        null, 1, epicId));
+            }
+        });
+
+        Epic epic = taskManager.getEpic(epicId);
+        assertEquals(THREADS_COUNT * TASKS_PER_THREAD_COUNT, epic.getSubtasksMap().size(),
+                "Неверное количество подзадач в эпике.");
+        assertEquals(THREADS_COUNT * TASKS_PER_THREAD_COUNT, taskManager.getSubtasks().size(),
+                "Неверное количество подзадач.");
+        assertEquals(TaskStatus.DONE, epic.getStatus(), "Статус эпика не соответствует статусам подзадач.");
+        assertEquals(THREADS_COUNT * TASKS_PER_THREAD_COUNT, epic.getDuration(),
+                "Продолжительность эпика не равна сумме продолжительностей подзадач.");
+        assertTrue(taskManager.verifyEpics(), "Свойства эпика не совпадают с полным пересчётом.");
+    }
+
+    @Test
+    @DisplayName("Задача, просмотренная параллельно с удалением, не должна оставаться в истории")
+    void viewingWhileRemovingNotLeavingTaskInHistoryTest() throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < TASKS_PER_THREAD_COUNT; i++) {
+            ids.add(taskManager.addTaskOfAnyType(new Task("Task", TaskStatus.NEW, "Task description", null, 0)));
+            int epicId = taskManager.addTaskOfAnyType(new Epic("Epic", "Epic description"));
+            ids.add(taskManager.addTaskOfAnyType(new Subtask("Subtask", TaskStatus.NEW, "Subtask description",
+                    null, 0, epicId)));
+            ids.add(epicId);
+        }
+        AtomicBoolean isRemoved = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS_COUNT; i++) {
+            futures.add(executor.submit(() -> {
+                while (!isRemoved.get()) {
+                    for (int id : ids) {
+                        taskManager.getTask(id);
+                        taskManager.getEpic(id);
+                        taskManager.getSubtask(id);
+                    }
+                }
+            }));
+        }
+        for (int id : ids) {
+            taskManager.removeTaskOfAnyTypeById(id);
+        }
+        isRemoved.set(true);
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertTrue(taskManager.getHistory().isEmpty(), "В истории остались удалённые задачи.");
+    }
+
+    private static void runInParallel(Runnable action) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT);
+        CyclicBarrier barrier = new CyclicBarrier(THREADS_COUNT);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS_COUNT; i++) {
+            futures.add(executor.submit(() -> {
+                barrier.await();
+                action.run();
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+}
@@ -9,10 +9,13 @@ import ru.yandex.practicum.tasktracker.model.Epic;
 import ru.yandex.practicum.tasktracker.model.Subtask;
 import ru.yandex.practicum.tasktracker.model.TaskStatus;
 
+import java.lang.management.ManagementFactory;
 import java.time.LocalDateTime;
+import java.util.*;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static ru.yandex.practicum.tasktracker.model.TaskStatus.*;
 
 public class EpicTest {
@@ -186,6 +189,23 @@ public class EpicTest {
         assertNull(taskManager.getEpic(epicId).getEndTime(), "Конец эпика не null.");
     }
 
+    @Test
+    @DisplayName("Тест на неизменность полученного ранее эпика и сохранение подзадач при замене эпика")
+    void epicNotChangedAfterReadingAndKeepsSubtasksAfterReplacingTest() {
+        Epic epic = taskManager.getEpic(epicId);
+        Add3Subtasks();
+        assertTrue(epic.getSubtasksMap().isEmpty(), "Полученный ранее эпик изменён при изменении подзадач.");
+        assertNull(epic.getStartTime(), "Полученный ранее эпик изменён при изменении подзадач.");
+        assertEquals(START_TIME_FIRST, taskManager.getEpic(epicId).getStartTime(), "Начало эпика не обновлено.");
+
+        taskManager.replaceEpic(new Epic(epicId, "Epic new name", "Epic new description"));
+        Epic replacedEpic = taskManager.getEpic(epicId);
+        assertEquals("Epic new name", replacedEpic.getName(), "Эпик не заменён.");
+        assertEquals(3, replacedEpic.getSubtasksMap().size(), "Подзадачи эпика не сохранены при замене.");
+        assertEquals(IN_PROGRESS, replacedEpic.getStatus(), "Статус эпика не сохранён при замене.");
+        assertTrue(taskManager.verifyEpics(), "Свойства эпика не совпадают с полным пересчётом.");
+    }
+
     private void Add3Subtasks(TaskStatus statusA, TaskStatus statusB, TaskStatus statusC) {
         subtaskFirst = new Subtask(2, "Subtask A", statusA, "Subtask A description",
                 START_TIME_FIRST, DURATION_FIRST, epicId);
@@ -202,6 +222,77 @@ public class EpicTest {
         Add3Subtasks(NEW, IN_PROGRESS, DONE);
     }
 
+    @Test
+    @DisplayName("Свойства эпика при многократном изменении подзадач должны совпадать с полным пересчётом")
+    void epicPropertiesAfterSubtasksChurnTest() {
+        Random random = new Random(42);
+        TaskStatus[] statuses = TaskStatus.values();
+        List<Integer> subtaskIds = new ArrayList<>();
+        // полученные ранее эпики и id их подзадач в момент получения
+        Map<Epic, Set<Integer>> epicVersions = new IdentityHashMap<>();
+        for (int i = 0; i < 500; i++) {
+            int operation = random.nextInt(3);
+            // время начала выбирается так, чтобы подзадачи не пересекались: каждой подзадаче - своя неделя
+            LocalDateTime startTime = (random.nextInt(4) == 0) ? null
+                    : START_TIME_FIRST.plusWeeks(taskManager.getNextTaskId()).plusMinutes(random.nextInt(60));
+            if (operation == 0 || subtaskIds.isEmpty()) {
+                int id = taskManager.addTaskOfAnyType(new Subtask(taskManager.getNextTaskId(), "Subtask",
+                        statuses[random.nextInt(statuses.length)], "Subtask description", startTime,
+                        random.nextInt(120), epicId));
+                subtaskIds.add(id);
+            } else if (operation == 1) {
+                int id = subtaskIds.get(random.nextInt(subtaskIds.size()));
+                if (startTime != null) {
+                    startTime = START_TIME_FIRST.plusWeeks(id).plusMinutes(random.nextInt(60));
+                }
+                assertTrue(taskManager.replaceSubtask(new Subtask(id, "Subtask",
+                        statuses[random.nextInt(statuses.length)], "Subtask description", startTime,
+                        random.nextInt(120), epicId)), "Подзадача не заменена.");
+            } else {
+                int id = subtaskIds.remove(random.nextInt(subtaskIds.size()));
+                assertTrue(taskManager.removeTaskOfAnyTypeById(id), "Подзадача не удалена.");
+            }
+            assertTrue(taskManager.verifyEpics(), "Свойства эпика не совпадают с полным пересчётом.");
+            Epic epic = taskManager.getEpic(epicId);
+            assertEquals(new TreeSet<>(subtaskIds), new TreeSet<>(epic.getSubtasksMap().keySet()),
+                    "Таблица подзадач эпика не соответствует подзадачам.");
+            epicVersions.put(epic, new TreeSet<>(subtaskIds));
+        }
+        epicVersions.forEach((epic, ids) -> assertEquals(ids, new TreeSet<>(epic.getSubtasksMap().keySet()),
+                "Полученный ранее эпик изменён при изменении подзадач."));
+    }
+
+    @Test
+    @DisplayName("Изменение подзадачи большого эпика не должно копировать таблицу его подзадач")
+    void subtaskChangeNotCopyingEpicSubtasksTest() {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported());
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        int subtasksCount = 50_000;
+        int changesCount = 1_000;
+        for (int id = 2; id < subtasksCount + 2; id++) {
+            taskManager.addTaskOfAnyType(new Subtask(id, "Subtask", NEW, "Subtask description", null, 10, epicId));
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBytes = 0;
+        for (int round = 0; round < 2; round++) { // первый круг - прогрев
+            allocatedBytes = allocationBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < changesCount; i++) {
+                int id = 2 + i * (subtasksCount / changesCount);
+                taskManager.replaceSubtask(new Subtask(id, "Subtask", (i % 2 == 0) ? DONE : NEW,
+                        "Subtask description", null, 10 + round, epicId));
+            }
+            allocatedBytes = allocationBean.getThreadAllocatedBytes(threadId) - allocatedBytes;
+        }
+        // копия таблицы из 50 000 подзадач - больше мегабайта, изменение пути в дереве - сотни байт
+        assertTrue(allocatedBytes / changesCount < 16 * 1024,
+                "На одно изменение выделено " + allocatedBytes / changesCount + " байт.");
+        assertEquals(subtasksCount, taskManager.getEpic(epicId).getSubtasksMap().size(), "Подзадачи потеряны.");
+        assertTrue(taskManager.verifyEpics(), "Свойства эпика не совпадают с полным пересчётом.");
+    }
+
     private static Stream<Arguments> taskStatusStreamForAddingSubtasks() {
         return Stream.of(
                 Arguments.of(NEW, NEW, NEW, NEW),
@@ -3,12 +3,32 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import ru.yandex.practicum.tasktracker.exeption.ManagerSaveException;
 import ru.yandex.practicum.tasktracker.manager.FileBackedTaskManager;
+import ru.yandex.practicum.tasktracker.manager.FileBackedTaskManager.PersistenceMode;
+import ru.yandex.practicum.tasktracker.manager.FileBackedTaskManager.SnapshotFormat;
+import ru.yandex.practicum.tasktracker.manager.HistoryFlushPolicy;
+import ru.yandex.practicum.tasktracker.manager.Managers;
+import ru.yandex.practicum.tasktracker.manager.MappedCsvSnapshotParser;
 import ru.yandex.practicum.tasktracker.manager.TasksHelper;
+import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskStatus;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 public class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
     private final String FILENAME = "tasks.csv";
+    private final String BINARY_FILENAME = "tasks.bin";
+    private static final int LARGE_FILE_TASKS_COUNT = 20_000;
     private FileBackedTaskManager newTaskManager;
 
     @BeforeEach
@@ -64,6 +84,329 @@ public class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskMan
         noDataRecordedToManagerCheck(newTaskManager);
     }
 
+    @Test
+    @DisplayName("Тест на запись-считывание в режиме журнала упреждающей записи")
+    void writeAndReadWithWriteAheadLogTest() {
+        taskManager = new FileBackedTaskManager(FILENAME, false, PersistenceMode.WRITE_AHEAD_LOG);
+        Add2TasksAndEpicWith3Subtasks();
+        taskManager.getTask(taskA.getId());
+        taskManager.getSubtask(subtaskB.getId());
+        taskManager.getEpic(epicA.getId());
+        taskManager.replaceTask(new Task(taskB.getId(), "Task B", TaskStatus.DONE, "Task B description",
+                null, 20));
+        taskManager.removeTaskOfAnyTypeById(subtaskC.getId());
+
+        newTaskManager = new FileBackedTaskManager(FILENAME, true, PersistenceMode.WRITE_AHEAD_LOG);
+        compareManagersLists(taskManager, newTaskManager);
+        compareTasksLists(taskManager.getEpics(), newTaskManager.getEpics());
+    }
+
+    @Test
+    @DisplayName("Тест на считывание снимка и журнала после компактизации")
+    void readAfterWriteAheadLogCompactionTest() {
+        taskManager = new FileBackedTaskManager(FILENAME, false, PersistenceMode.WRITE_AHEAD_LOG);
+        Add2TasksAndEpicWith3Subtasks();
+        taskManager.compact();
+        taskManager.getTask(taskB.getId());
+        taskManager.removeAllTasks();
+
+        newTaskManager = new FileBackedTaskManager(FILENAME, true, PersistenceMode.WRITE_AHEAD_LOG);
+        compareManagersLists(taskManager, newTaskManager);
+        assertTrue(newTaskManager.getTasks().isEmpty(), "Список задач не пустой.");
+    }
+
+    @Test
+    @DisplayName("Изменения после обрезки оборванного конца журнала должны сохраняться при повторном открытии")
+    void writeAfterTruncatedWriteAheadLogTest() throws IOException {
+        taskManager = new FileBackedTaskManager(FILENAME, false, PersistenceMode.WRITE_AHEAD_LOG);
+        taskA = TasksHelper.replaceTaskId(taskA, taskManager.getNextTaskId());
+        taskManager.addTaskOfAnyType(taskA);
+        taskB = TasksHelper.replaceTaskId(taskB, taskManager.getNextTaskId());
+        taskManager.addTaskOfAnyType(taskB);
+        taskManager.close();
+
+        Path log = Path.of(FILENAME + ".wal");
+        byte[] data = Files.readAllBytes(log);
+        Files.write(log, Arrays.copyOf(data, data.length - 5)); // обрыв последней записи
+        newTaskManager = new FileBackedTaskManager(FILENAME, true, PersistenceMode.WRITE_AHEAD_LOG);
+        assertEquals(List.of(taskA), newTaskManager.getTasks(), "Загружена оборванная запись журнала.");
+
+        Task taskC = new Task(newTaskManager.getNextTaskId(), "Task C", TaskStatus.NEW, "Task C description",
+                null, 0);
+        newTaskManager.addTaskOfAnyType(taskC);
+        newTaskManager.getTask(taskA.getId());
+        newTaskManager.close();
+
+        FileBackedTaskManager reopenedTaskManager =
+                new FileBackedTaskManager(FILENAME, true, PersistenceMode.WRITE_AHEAD_LOG);
+        compareManagersLists(newTaskManager, reopenedTaskManager);
+        assertEquals(2, reopenedTaskManager.getTasks().size(), "Записи после обрезки журнала не загружены.");
+    }
+
+    @Test
+    @DisplayName("Запись журнала с неверной контрольной суммой не должна применяться")
+    void corruptedWriteAheadLogRecordTest() throws IOException {
+        taskManager = new FileBackedTaskManager(FILENAME, false, PersistenceMode.WRITE_AHEAD_LOG);
+        taskA = TasksHelper.replaceTaskId(taskA, taskManager.getNextTaskId());
+        taskManager.addTaskOfAnyType(taskA);
+        taskB = TasksHelper.replaceTaskId(taskB, taskManager.getNextTaskId());
+        taskManager.addTaskOfAnyType(taskB);
+        taskManager.close();
+
+        Path log = Path.of(FILENAME + ".wal");
+        byte[] data = Files.readAllBytes(log);
+        data[data.length - 1] ^= 1; // длина записи не изменилась, текст повреждён
+        Files.write(log, data);
+        newTaskManager = new FileBackedTaskManager(FILENAME, true, PersistenceMode.WRITE_AHEAD_LOG);
+        assertEquals(List.of(taskA), newTaskManager.getTasks(), "Применена повреждённая запись журнала.");
+    }
+
+    @Test
+    @DisplayName("Просмотры не должны сохраняться до закрытия менеджера при отложенном сохранении истории")
+    void deferredHistoryFlushOnCloseTest() {
+        Add2TasksAndEpicWith3Subtasks();
+        taskManager.setHistoryFlushPolicy(HistoryFlushPolicy.onShutdown());
+        taskManager.getTask(taskA.getId());
+        taskManager.getEpic(epicA.getId());
+
+        newTaskManager = new FileBackedTaskManager(FILENAME, true);
+        assertTrue(newTaskManager.getHistory().isEmpty(), "История сохранена до закрытия менеджера.");
+
+        taskManager.close();
+        newTaskManager = new FileBackedTaskManager(FILENAME, true);
+        compareManagersLists(taskManager, newTaskManager);
+    }
+
+    @Test
+    @DisplayName("История должна сохраняться после накопления заданного числа просмотров")
+    void historyFlushEveryViewsTest() {
+        Add2TasksAndEpicWith3Subtasks();
+        taskManager.setHistoryFlushPolicy(HistoryFlushPolicy.everyViews(2));
+        taskManager.getTask(taskA.getId());
+
+        newTaskManager = new FileBackedTaskManager(FILENAME, true);
+        assertTrue(newTaskManager.getHistory().isEmpty(), "История сохранена раньше заданного числа просмотров.");
+
+        taskManager.getTask(taskB.getId());
+        newTaskManager = new FileBackedTaskManager(FILENAME, true);
+        compareManagersLists(taskManager, newTaskManager);
+    }
+
+    @Test
+    @DisplayName("Отложенные просмотры должны попадать в журнал раньше последующих изменений")
+    void deferredHistoryFlushWithWriteAheadLogTest() {
+        taskManager = new FileBackedTaskManager(FILENAME, false, PersistenceMode.WRITE_AHEAD_LOG);
+        taskManager.setHistoryFlushPolicy(HistoryFlushPolicy.onShutdown());
+        Add2TasksAndEpicWith3Subtasks();
+        taskManager.getTask(taskA.getId());
+        taskManager.getSubtask(subtaskA.getId());
+        taskManager.removeTaskOfAnyTypeById(subtaskA.getId());
+        taskManager.getTask(taskB.getId());
+        taskManager.close();
+
+        newTaskManager = new FileBackedTaskManager(FILENAME, true, PersistenceMode.WRITE_AHEAD_LOG);
+        compareManagersLists(taskManager, newTaskManager);
+    }
+
+    @Test
+    @DisplayName("Тест на запись-считывание в режиме групповой фиксации после flush()")
+    void writeAndReadWithGroupCommitTest() {
+        taskManager = new FileBackedTaskManager(FILENAME, false, PersistenceMode.GROUP_COMMIT);
+        taskManager.setGroupCommitMaxDelay(10_000); // без flush() данные не успели бы записаться
+        Add2TasksAndEpicWith3Subtasks();
+        taskManager.getTask(taskA.getId());
+        taskManager.getSubtask(subtaskC.getId());
+        taskManager.flush();
+
+        newTaskManager = new FileBackedTaskManager(FILENAME, true);
+        compareManagersLists(taskManager, newTaskManager);
+        taskManager.close();
+    }
+
+    @Test
+    @DisplayName("В режиме групповой фиксации изменения должны записываться в фоне по истечении окна ожидания")
+    void groupCommitWritesInBackgroundTest() throws InterruptedException, IOException {
+        Files.deleteIfExists(Path.of(FILENAME)); // файл от предыдущих тестов не должен приниматься за результат
+        taskManager = new FileBackedTaskManager(FILENAME, false, PersistenceMode.GROUP_COMMIT);
+        taskManager.setGroupCommitMaxDelay(20);
+        Add2TasksAndEpicWith3Subtasks();
+
+        for (int i = 0; i < 100 && newTaskManager == null; i++) {
+            Thread.sleep(20);
+            FileBackedTaskManager loadedTaskManager = new FileBackedTaskManager(FILENAME, true);
+            if (loadedTaskManager.getSubtasks().size() == 3) {
+                newTaskManager = loadedTaskManager;
+            }
+        }
+        assertNotNull(newTaskManager, "Изменения не записаны в фоне.");
+        compareManagersLists(taskManager, newTaskManager);
+        taskManager.close();
+    }
+
+    @Test
+    @DisplayName("Снимок должен записываться с контрольной суммой и без оставшегося временного файла")
+    void snapshotWrittenWithChecksumTest() throws IOException {
+        Add2TasksAndEpicWith3Subtasks();
+        List<String> lines = Files.readAllLines(Path.of(FILENAME), StandardCharsets.UTF_8);
+        assertTrue(lines.get(lines.size() - 1).startsWith("#crc32="), "Файл не содержит контрольной суммы.");
+        assertFalse(Files.exists(Path.of(FILENAME + ".tmp")), "Временный файл не переименован.");
+    }
+
+    @Test
+    @DisplayName("Файл с несовпадающей контрольной суммой не должен загружаться")
+    void readFromFileWithWrongChecksumTest() throws IOException {
+        Add2TasksAndEpicWith3Subtasks();
+        String content = Files.readString(Path.of(FILENAME), StandardCharsets.UTF_8);
+        Files.writeString(Path.of(FILENAME), content.replace("Task A", "Task Z"), StandardCharsets.UTF_8);
+
+        newTaskManager = new FileBackedTaskManager(FILENAME, true);
+        noDataRecordedToManagerCheck(newTaskManager);
+    }
+
+    @Test
+    @DisplayName("Тест на запись-считывание задач и истории в двоичном формате снимка")
+    void writeAndReadBinarySnapshotTest() {
+        taskManager = Managers.getFileBacked(BINARY_FILENAME, false, PersistenceMode.SNAPSHOT,
+                SnapshotFormat.BINARY);
+        Add2TasksAndEpicWith3Subtasks();
+        taskManager.getTask(taskB.getId());
+        taskManager.getSubtask(subtaskA.getId());
+        taskManager.getEpic(epicA.getId());
+
+        newTaskManager = Managers.getFileBacked(BINARY_FILENAME, true, PersistenceMode.SNAPSHOT,
+                SnapshotFormat.BINARY);
+        compareManagersLists(taskManager, newTaskManager);
+        assertEquals(taskManager.getNextTaskId(), newTaskManager.getNextTaskId(), "Следующий id не совпадает.");
+    }
+
+    @Test
+    @DisplayName("Файл csv должен импортироваться в менеджер с двоичным снимком и экспортироваться обратно")
+    void importAndExportCsvWithBinarySnapshotTest() throws IOException {
+        Add2TasksAndEpicWith3Subtasks();
+        taskManager.getEpic(epicA.getId());
+
+        newTaskManager = new FileBackedTaskManager(FILENAME, true, PersistenceMode.SNAPSHOT, SnapshotFormat.BINARY);
+        compareManagersLists(taskManager, newTaskManager);
+
+        Path exportFile = Files.createTempFile("tasks", ".csv");
+        try {
+            newTaskManager.exportToCsv(exportFile.toString());
+            compareManagersLists(taskManager, new FileBackedTaskManager(exportFile.toString(), true));
+        } finally {
+            Files.deleteIfExists(exportFile);
+        }
+    }
+
+    @Test
+    @DisplayName("Повреждённый двоичный снимок не должен загружаться")
+    void readFromCorruptedBinarySnapshotTest() throws IOException {
+        taskManager = new FileBackedTaskManager(BINARY_FILENAME, false, PersistenceMode.SNAPSHOT,
+                SnapshotFormat.BINARY);
+        Add2TasksAndEpicWith3Subtasks();
+        byte[] data = Files.readAllBytes(Path.of(BINARY_FILENAME));
+        data[data.length / 2] ^= 0x01;
+        Files.write(Path.of(BINARY_FILENAME), data);
+
+        newTaskManager = new FileBackedTaskManager(BINARY_FILENAME, true, PersistenceMode.SNAPSHOT,
+                SnapshotFormat.BINARY);
+        noDataRecordedToManagerCheck(newTaskManager);
+    }
+
+    @Test
+    @DisplayName("Большой файл csv должен загружаться через отображение в память так же, как небольшой")
+    void writeAndReadLargeFileTest() throws IOException {
+        fillLargeFile();
+        assertTrue(Files.size(Path.of(FILENAME)) > 1024 * 1024, "Файл меньше порога загрузки через отображение.");
+
+        newTaskManager = new FileBackedTaskManager(FILENAME, true);
+        assertEquals(LARGE_FILE_TASKS_COUNT, newTaskManager.getTasks().size(), "Неверное количество задач.");
+        compareManagersLists(taskManager, newTaskManager);
+        assertEquals(taskManager.getEpics().get(0).getDuration(), newTaskManager.getEpics().get(0).getDuration(),
+                "Свойства эпика не рассчитаны.");
+    }
+
+    @Test
+    @DisplayName("Повреждённый большой файл csv не должен загружаться")
+    void readFromCorruptedLargeFileTest() throws IOException {
+        fillLargeFile();
+        byte[] data = Files.readAllBytes(Path.of(FILENAME));
+        data[data.length / 2] = (byte) (data[data.length / 2] == '1' ? '2' : '1');
+        Files.write(Path.of(FILENAME), data);
+
+        newTaskManager = new FileBackedTaskManager(FILENAME, true);
+        noDataRecordedToManagerCheck(newTaskManager);
+    }
+
+    @Test
+    @DisplayName("Подзадача, записанная в файле раньше своего эпика, должна загружаться и связываться с эпиком")
+    void readFileWithSubtaskBeforeEpicTest() throws IOException {
+        Files.writeString(Path.of(FILENAME), String.join("\n",
+                "id,type,name,status,description,start,duration,epic",
+                "2,SUBTASK,Subtask,DONE,Subtask description,01.06.2022 10:00,30,1",
+                "1,EPIC,Epic,NEW,Epic description,null,0,",
+                "",
+                "2,1"), StandardCharsets.UTF_8);
+
+        newTaskManager = new FileBackedTaskManager(FILENAME, true);
+        Epic epic = newTaskManager.getEpics().get(0);
+        assertEquals(1, epic.getSubtasksMap().size(), "Подзадача не связана с эпиком.");
+        assertEquals(TaskStatus.DONE, epic.getStatus(), "Статус эпика не рассчитан.");
+        assertEquals(30, epic.getDuration(), "Продолжительность эпика не рассчитана.");
+        assertEquals(2, newTaskManager.getHistory().size(), "История просмотров не загружена.");
+    }
+
+    @Test
+    @DisplayName("Файл без контрольной суммы с задачами нулевой продолжительности должен загружаться полностью")
+    void readFileWithZeroDurationTasksTest() throws IOException {
+        Files.writeString(Path.of(FILENAME), String.join("\n",
+                "id,type,name,status,description,start,duration,epic",
+                "1,TASK,Task A,NEW,Task A description,01.06.2022 10:00,0,",
+                "2,TASK,Task B,NEW,Task B description,01.06.2022 10:00,0,",
+                "3,TASK,Task C,NEW,Task C description,01.06.2022 10:00,30,",
+                "4,TASK,Task D,NEW,Task D description,01.06.2022 10:30,30,",
+                "",
+                ""), StandardCharsets.UTF_8);
+
+        newTaskManager = new FileBackedTaskManager(FILENAME, true);
+        assertEquals(4, newTaskManager.getTasks().size(), "Загружены не все задачи.");
+    }
+
+    @Test
+    @DisplayName("Разбор большого файла частями в пуле fork-join должен давать тот же результат, что и одной частью")
+    void parallelParsingOfLargeFileTest() throws IOException {
+        fillLargeFile();
+        ForkJoinPool parallelPool = new ForkJoinPool(4);
+        ForkJoinPool sequentialPool = new ForkJoinPool(1);
+        MappedCsvSnapshotParser.ParsedSnapshot parallelSnapshot =
+                MappedCsvSnapshotParser.parse(Path.of(FILENAME), "#crc32=", parallelPool);
+        MappedCsvSnapshotParser.ParsedSnapshot sequentialSnapshot =
+                MappedCsvSnapshotParser.parse(Path.of(FILENAME), "#crc32=", sequentialPool);
+        parallelPool.shutdown();
+        sequentialPool.shutdown();
+
+        assertTrue(parallelSnapshot.isChecksumVerified(), "Контрольная сумма не проверена.");
+        assertEquals(sequentialSnapshot.getHistoryLine(), parallelSnapshot.getHistoryLine(),
+                "Строки истории не совпадают.");
+        compareTasksLists(sequentialSnapshot.getTasks(), parallelSnapshot.getTasks());
+    }
+
+    private void fillLargeFile() {
+        taskManager = new FileBackedTaskManager(FILENAME, false, PersistenceMode.GROUP_COMMIT);
+        LocalDateTime start = LocalDateTime.of(2022, 6, 1, 0, 0);
+        int epicId = taskManager.addTaskOfAnyType(new Epic(taskManager.getNextTaskId(), "Epic", "Epic description"));
+        for (int i = 0; i < 10; i++) {
+            taskManager.addTaskOfAnyType(new Subtask(taskManager.getNextTaskId(), "Subtask " + i, TaskStatus.DONE,
+                    "Subtask description", start.minusDays(i + 1), 60, epicId));
+        }
+        for (int i = 0; i < LARGE_FILE_TASKS_COUNT; i++) {
+            taskManager.addTaskOfAnyType(new Task(taskManager.getNextTaskId(), "Task " + i, TaskStatus.NEW,
+                    "Large file task description", start.plusMinutes(30L * i), 30));
+        }
+        taskManager.getEpic(epicId);
+        taskManager.getTask(epicId + 20);
+        taskManager.close();
+    }
+
     @Test
     @DisplayName("Тест на чтение из недоступного файла")
     void readFromBadFileTest() {
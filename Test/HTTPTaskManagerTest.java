@@ -2,11 +2,20 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.tasktracker.manager.FileBackedTaskManager.PersistenceMode;
 import ru.yandex.practicum.tasktracker.manager.HTTPTaskManager;
+import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskStatus;
 import ru.yandex.practicum.tasktracker.server.KVServer;
+import ru.yandex.practicum.tasktracker.server.LogKVStorage;
 import ru.yandex.practicum.tasktracker.manager.TasksHelper;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -80,4 +89,110 @@ public class HTTPTaskManagerTest extends TaskManagerTest<HTTPTaskManager> {
         compareManagersLists(taskManager, newTaskManager);
         noDataRecordedToManagerCheck(newTaskManager);
     }
+
+    @Test
+    @DisplayName("Тест на продолжение нумерации задач после загрузки")
+    void nextTaskIdAfterReadingTest() {
+        Add2TasksAndEpicWith3Subtasks();
+        newTaskManager = new HTTPTaskManager(URL, true);
+        assertEquals(taskManager.getNextTaskId(), newTaskManager.getNextTaskId(),
+                "Очередной id после загрузки не совпадает с очередным id исходного менеджера.");
+    }
+
+    @Test
+    @DisplayName("Тест на запись-считывание пакетов изменений")
+    void writeAndReadWithDeltaSyncTest() {
+        taskManager = new HTTPTaskManager(URL, false, PersistenceMode.WRITE_AHEAD_LOG);
+        Add2TasksAndEpicWith3Subtasks();
+        // история хранит эпик в состоянии на момент просмотра, поэтому подзадача эпика удаляется до просмотра
+        taskManager.removeTaskOfAnyTypeById(subtaskC.getId());
+        taskManager.getTask(taskA.getId());
+        taskManager.getSubtask(subtaskB.getId());
+        taskManager.getEpic(epicA.getId());
+        taskManager.getTask(taskA.getId());
+        taskManager.replaceTask(new Task(taskB.getId(), "Task B", TaskStatus.DONE, "Task B description",
+                null, 20));
+
+        newTaskManager = new HTTPTaskManager(URL, true, PersistenceMode.WRITE_AHEAD_LOG);
+        compareManagersLists(taskManager, newTaskManager);
+        compareTasksLists(taskManager.getEpics(), newTaskManager.getEpics());
+    }
+
+    @Test
+    @DisplayName("Тест на считывание пакетов изменений после передачи нового снимка")
+    void readDeltaSyncAfterCompactionTest() {
+        taskManager = new HTTPTaskManager(URL, false, PersistenceMode.WRITE_AHEAD_LOG);
+        Add2TasksAndEpicWith3Subtasks();
+        for (int i = 0; i < 150; i++) { // после 100 пакетов передаётся снимок
+            taskManager.replaceTask(new Task(taskB.getId(), "Task B " + i, TaskStatus.IN_PROGRESS,
+                    "Task B description", null, 20));
+        }
+        taskManager.removeAllEpics();
+
+        newTaskManager = new HTTPTaskManager(URL, true, PersistenceMode.WRITE_AHEAD_LOG);
+        compareManagersLists(taskManager, newTaskManager);
+        assertEquals("Task B 149", newTaskManager.getTask(taskB.getId()).getName(),
+                "Загружена не последняя версия задачи.");
+    }
+
+    @Test
+    @DisplayName("Тест на запись-считывание пакетов изменений в режиме групповой фиксации после flush()")
+    void writeAndReadWithDeltaSyncGroupCommitTest() {
+        taskManager = new HTTPTaskManager(URL, false, PersistenceMode.GROUP_COMMIT);
+        taskManager.setGroupCommitMaxDelay(10_000); // без flush() пакет не успел бы передаться
+        Add2TasksAndEpicWith3Subtasks();
+        taskManager.getTask(taskA.getId());
+        taskManager.getSubtask(subtaskC.getId());
+        taskManager.flush();
+
+        newTaskManager = new HTTPTaskManager(URL, true, PersistenceMode.GROUP_COMMIT);
+        compareManagersLists(taskManager, newTaskManager);
+        taskManager.close();
+        newTaskManager.close();
+    }
+
+    @Test
+    @DisplayName("Данные, сохранённые полными снимками, должны загружаться в режиме пакетов изменений")
+    void readSnapshotDataWithDeltaSyncTest() {
+        Add2TasksAndEpicWith3Subtasks();
+        taskManager.getEpic(epicA.getId());
+
+        newTaskManager = new HTTPTaskManager(URL, true, PersistenceMode.WRITE_AHEAD_LOG);
+        compareManagersLists(taskManager, newTaskManager);
+        newTaskManager.getTask(taskA.getId());
+        newTaskManager.removeTaskOfAnyTypeById(taskB.getId());
+
+        HTTPTaskManager reloadedTaskManager = new HTTPTaskManager(URL, true, PersistenceMode.WRITE_AHEAD_LOG);
+        compareManagersLists(newTaskManager, reloadedTaskManager);
+    }
+
+    @Test
+    @DisplayName("Данные должны сохраняться после перезапуска KV-сервера с хранилищем на диске")
+    void readAfterKVServerRestartWithLogStorageTest() throws IOException {
+        Path directory = Files.createTempDirectory("kv-storage");
+        try {
+            server.stop();
+            server = new KVServer(new LogKVStorage(directory));
+            server.start();
+            taskManager = new HTTPTaskManager(URL, false, PersistenceMode.WRITE_AHEAD_LOG);
+            Add2TasksAndEpicWith3Subtasks();
+            taskManager.getTask(taskA.getId());
+            taskManager.getSubtask(subtaskB.getId());
+
+            server.stop();
+            server = new KVServer(new LogKVStorage(directory));
+            server.start();
+            newTaskManager = new HTTPTaskManager(URL, true, PersistenceMode.WRITE_AHEAD_LOG);
+            compareManagersLists(taskManager, newTaskManager);
+        } finally {
+            server.stop();
+            server = new KVServer(); // для остановки в stopServer
+            server.start();
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
 }
@@ -1,24 +1,37 @@
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
 import org.junit.jupiter.api.*;
+import ru.yandex.practicum.tasktracker.manager.ConcurrentTaskManager;
+import ru.yandex.practicum.tasktracker.manager.InMemoryTaskManager;
+import ru.yandex.practicum.tasktracker.manager.Managers;
 import ru.yandex.practicum.tasktracker.model.Epic;
 import ru.yandex.practicum.tasktracker.model.Subtask;
 import ru.yandex.practicum.tasktracker.model.Task;
 import ru.yandex.practicum.tasktracker.model.TaskStatus;
+import ru.yandex.practicum.tasktracker.model.TimeSlot;
 import ru.yandex.practicum.tasktracker.server.HttpTaskServer;
 import ru.yandex.practicum.tasktracker.server.KVServer;
 import ru.yandex.practicum.tasktracker.server.LocalDateTimeAdapter;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -242,6 +255,145 @@ public class HttpTaskServerTest {
         assertEquals(6, tasks.get(3).getId(), message);
     }
 
+    @Test
+    @DisplayName("Тест на работу эндпойнта /tasks/slots")
+    void apiSlotsEndpointTest() throws IOException, InterruptedException {
+        addTaskByHttpRequest(TASK_ENDPOINT, gson.toJson(taskB)); // 2022.06.02 15:15 - 15:35
+        addTaskByHttpRequest(EPIC_ENDPOINT, gson.toJson(epicA));
+        addTaskByHttpRequest(SUBTASK_ENDPOINT, gson.toJson(subtaskA)); // 2022.06.05 10:30 - 11:00
+
+        JsonArray slots = getJsonArrayByHttpRequest(
+                "/tasks/slots?from=2022-06-02T00:00&to=2022-06-06T00:00&duration=60&limit=5");
+        assertEquals(3, slots.size(), "Количество свободных интервалов не соответствует ожидаемому.");
+        TimeSlot slot = gson.fromJson(slots.get(1), TimeSlot.class);
+        assertEquals(LocalDateTime.of(2022, 6, 2, 15, 35), slot.getStartTime(), "Неверное начало интервала.");
+        assertEquals(LocalDateTime.of(2022, 6, 5, 10, 30), slot.getEndTime(), "Неверный конец интервала.");
+
+        assertEquals(1, getJsonArrayByHttpRequest(
+                "/tasks/slots?from=2022-06-02T00:00&to=2022-06-06T00:00&limit=1").size(),
+                "Не учтено ограничение количества интервалов.");
+        assertEquals(400, getResponseCodeByHttpRequest("/tasks/slots?from=2022-06-02&to=never", 0),
+                "При ошибке в запросе код ответа не указывает на ошибку");
+    }
+
+    @Test
+    @DisplayName("Тест на постраничную выдачу задач")
+    void apiPagesTest() throws IOException, InterruptedException {
+        addTaskByHttpRequest(TASK_ENDPOINT, gson.toJson(taskA));
+        addTaskByHttpRequest(TASK_ENDPOINT, gson.toJson(taskB));
+        addTaskByHttpRequest(EPIC_ENDPOINT, gson.toJson(epicA));
+        addTaskByHttpRequest(SUBTASK_ENDPOINT, gson.toJson(subtaskA));
+
+        JsonObject page = getJsonObjectByHttpRequest(TASK_ENDPOINT + "?limit=1");
+        assertEquals(1, page.getAsJsonArray("items").size(), "Размер страницы не соответствует заданному.");
+        assertEquals(taskA.getId(), page.getAsJsonArray("items").get(0).getAsJsonObject().get("id").getAsInt(),
+                "Неверная первая страница.");
+        page = getJsonObjectByHttpRequest(TASK_ENDPOINT + "?limit=1&cursor=" + page.get("nextCursor").getAsString());
+        assertEquals(taskB.getId(), page.getAsJsonArray("items").get(0).getAsJsonObject().get("id").getAsInt(),
+                "Неверная вторая страница.");
+        assertTrue(page.get("nextCursor").isJsonNull(), "Есть курсор после последней страницы.");
+
+        // список приоритетов: Task B (2022.06.02), Subtask A (2022.06.05), Task A (2022.06.10)
+        page = getJsonObjectByHttpRequest("/tasks/?limit=2");
+        assertEquals(subtaskA.getId(), page.getAsJsonArray("items").get(1).getAsJsonObject().get("id").getAsInt(),
+                "Неверная страница списка приоритетов.");
+        page = getJsonObjectByHttpRequest("/tasks/?limit=2&cursor="
+                + URLEncoder.encode(page.get("nextCursor").getAsString(), StandardCharsets.UTF_8));
+        assertEquals(taskA.getId(), page.getAsJsonArray("items").get(0).getAsJsonObject().get("id").getAsInt(),
+                "Неверная страница списка приоритетов.");
+
+        assertEquals(400, getResponseCodeByHttpRequest(EPIC_ENDPOINT + "?limit=0", 0),
+                "При ошибке в запросе код ответа не указывает на ошибку");
+    }
+
+    @Test
+    @DisplayName("Тест на потоковую передачу большого списка задач")
+    void apiStreamingListTest() throws IOException, InterruptedException {
+        taskServer.stop();
+        ConcurrentTaskManager taskManager = new ConcurrentTaskManager();
+        int tasksCount = 5000;
+        for (int i = 1; i <= tasksCount; i++) {
+            taskManager.addTaskOfAnyType(new Task(i, "Задача " + i, TaskStatus.NEW, "Описание задачи",
+                    LocalDateTime.of(2022, 6, 1, 0, 0).plusHours(i), 30));
+        }
+        taskServer = new HttpTaskServer(taskManager, HttpTaskServer.ExecutorMode.DISPATCHER, 0);
+        taskServer.start();
+
+        JsonArray tasks = getJsonArrayByHttpRequest(TASK_ENDPOINT);
+        assertEquals(tasksCount, tasks.size(), "Количество возвращаемых задач не соответствует количеству задач.");
+        assertEquals("Задача 1", gson.fromJson(tasks.get(0), Task.class).getName(),
+                "Текст задачи искажён при передаче.");
+        assertTrue(response.headers().firstValue("Content-Length").isEmpty(),
+                "Список передан не частями.");
+    }
+
+    @Test
+    @DisplayName("Список от непотокобезопасного менеджера по умолчанию должен передаваться частями")
+    void apiStreamingListWithDefaultManagerTest() throws IOException, InterruptedException {
+        addTaskByHttpRequest(EPIC_ENDPOINT, gson.toJson(epicA));
+        addTaskByHttpRequest(SUBTASK_ENDPOINT, gson.toJson(subtaskA));
+        addTaskByHttpRequest(SUBTASK_ENDPOINT, gson.toJson(subtaskB));
+
+        JsonArray epics = getJsonArrayByHttpRequest(EPIC_ENDPOINT);
+        assertTrue(response.headers().firstValue("Content-Length").isEmpty(), "Список передан не частями.");
+        assertEquals(1, epics.size(), "Количество возвращаемых эпиков не соответствует количеству эпиков.");
+        assertEquals(2, epics.get(0).getAsJsonObject().getAsJsonObject("subtasksMap").size(),
+                "Подзадачи эпика искажены при передаче.");
+    }
+
+    @Test
+    @DisplayName("Клиент, не читающий список, не должен блокировать запросы к непотокобезопасному менеджеру")
+    void apiStalledClientTest() throws IOException, InterruptedException {
+        taskServer.stop();
+        InMemoryTaskManager taskManager = new InMemoryTaskManager();
+        int tasksCount = 20_000;
+        for (int i = 1; i <= tasksCount; i++) {
+            taskManager.addTaskOfAnyType(new Task(i, "Задача " + i, TaskStatus.NEW, "Описание задачи " + i,
+                    LocalDateTime.of(2022, 6, 1, 0, 0).plusHours(i), 30));
+        }
+        taskServer = new HttpTaskServer(taskManager, HttpTaskServer.ExecutorMode.FIXED_POOL, 2);
+        taskServer.start();
+
+        try (Socket stalledClient = new Socket()) {
+            stalledClient.setReceiveBufferSize(1024);
+            stalledClient.connect(new InetSocketAddress("localhost", 8080));
+            stalledClient.getOutputStream().write("GET /tasks/task/ HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    .getBytes(StandardCharsets.US_ASCII)); // ответ не читается
+            Thread.sleep(200);
+
+            request = HttpRequest.newBuilder().uri(URI.create(URL + TASK_ENDPOINT + "?id=1"))
+                    .timeout(Duration.ofSeconds(5)).GET().build();
+            response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode(), "Запрос не выполнен.");
+            assertEquals("Задача 1", gson.fromJson(response.body(), Task.class).getName(),
+                    "Возвращена не та задача.");
+        }
+    }
+
+    @Test
+    @DisplayName("Тест на сериализацию списка задач разных типов потоковыми адаптерами")
+    void mixedTypesSerializationTest() {
+        Gson managersGson = Managers.getGson();
+        epicA.getSubtasksMap().put(subtaskA.getId(), subtaskA);
+        List<Task> tasks = List.of(taskA, epicA, subtaskA, subtaskB);
+
+        List<Task> restoredTasks = managersGson.fromJson(managersGson.toJson(tasks),
+                new TypeToken<List<Task>>() {
+                }.getType());
+
+        assertEquals(tasks, restoredTasks, "Список задач искажён при сериализации.");
+        for (int i = 0; i < tasks.size(); i++) {
+            assertEquals(tasks.get(i).getClass(), restoredTasks.get(i).getClass(), "Тип задачи не сохранён.");
+        }
+        assertEquals(subtaskA, ((Epic) restoredTasks.get(1)).getSubtasksMap().get(subtaskA.getId()),
+                "Подзадачи эпика не сохранены.");
+        // JSON без поля type (сериализованный через отражение) читается как объект запрошенного типа
+        assertEquals(subtaskA, managersGson.fromJson(gson.toJson(subtaskA), Subtask.class),
+                "Подзадача без поля type прочитана неверно.");
+        assertThrows(JsonSyntaxException.class, () -> managersGson.fromJson(managersGson.toJson(taskA),
+                Subtask.class), "Задача прочитана как подзадача.");
+    }
+
     @Test
     @DisplayName("Тест на работу всех эндпойнтов при передаче некорректных данных")
     void apiIncorrectDataTest() throws IOException, InterruptedException {
@@ -272,6 +424,55 @@ public class HttpTaskServerTest {
         assertEquals(400, addTaskByHttpRequest(TASK_ENDPOINT, gson.toJson(taskA)), message);
     }
 
+    @Test
+    @DisplayName("Эндпойнт должен отклонять объекты другого типа, указанного в поле type")
+    void apiMismatchedTypeTest() throws IOException, InterruptedException {
+        String message = "Объект другого типа не отклонён";
+        addTaskByHttpRequest(TASK_ENDPOINT, gson.toJson(taskA));
+
+        // подзадача с id существующей задачи не должна заменять задачу
+        JsonObject subtaskJson = gson.toJsonTree(new Subtask(taskA.getId(), "Subtask", TaskStatus.NEW,
+                "Subtask description", null, 10, 99)).getAsJsonObject();
+        subtaskJson.addProperty("type", "SUBTASK");
+        assertEquals(400, addTaskByHttpRequest(TASK_ENDPOINT, subtaskJson.toString()), message);
+        JsonObject taskJson = JsonParser.parseString(getTaskJsonByHttpRequest(TASK_ENDPOINT, taskA.getId()))
+                .getAsJsonObject();
+        assertEquals("TASK", taskJson.get("type").getAsString(), "Задача заменена объектом другого типа.");
+
+        // эпик без id не должен добавляться через эндпойнт задач
+        JsonObject epicJson = gson.toJsonTree(new Epic(0, "Epic", "Epic description")).getAsJsonObject();
+        epicJson.addProperty("type", "EPIC");
+        assertEquals(400, addTaskByHttpRequest(TASK_ENDPOINT, epicJson.toString()), message);
+        assertEquals(0, getJsonArrayByHttpRequest(EPIC_ENDPOINT).size(), "Эпик добавлен через эндпойнт задач.");
+        assertEquals(1, getJsonArrayByHttpRequest(TASK_ENDPOINT).size(), "Изменён список задач.");
+
+        // подзадача, переданная эндпойнту эпиков
+        assertEquals(400, addTaskByHttpRequest(EPIC_ENDPOINT, subtaskJson.toString()), message);
+    }
+
+    @Test
+    @DisplayName("Тест на параллельную обработку запросов на добавление задач в пуле потоков")
+    void apiParallelRequestsTest() throws IOException, InterruptedException {
+        taskServer.stop();
+        taskServer = new HttpTaskServer(new ConcurrentTaskManager(), HttpTaskServer.ExecutorMode.FIXED_POOL, 4);
+        taskServer.start();
+
+        int tasksCount = 50;
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 1; i <= tasksCount; i++) {
+            Task task = new Task(i, "Task " + i, TaskStatus.NEW, "Task description",
+                    LocalDateTime.of(2022, 6, 1, 0, 0).plusHours(i), 30);
+            HttpRequest request = HttpRequest.newBuilder().uri(URI.create(URL + TASK_ENDPOINT))
+                    .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(task))).build();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(201, response.join().statusCode(), "Задача не добавлена при параллельной обработке.");
+        }
+        assertEquals(tasksCount, getJsonArrayByHttpRequest(TASK_ENDPOINT).size(),
+                "Количество возвращаемых задач не соответствует количеству отправленных.");
+    }
+
     private int addTaskByHttpRequest(String endpoint, String json) throws IOException, InterruptedException {
         URI uri = URI.create(URL + endpoint);
         HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofString(json);
@@ -301,6 +502,13 @@ public class HttpTaskServerTest {
         return JsonParser.parseString(response.body()).getAsJsonArray();
     }
 
+    private JsonObject getJsonObjectByHttpRequest(String endpoint) throws IOException, InterruptedException {
+        URI uri = URI.create(URL + endpoint);
+        request = HttpRequest.newBuilder().uri(uri).GET().build();
+        response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        return JsonParser.parseString(response.body()).getAsJsonObject();
+    }
+
     private int deleteTasksByHttpRequest(String endpoint, int id) throws IOException, InterruptedException {
         URI uri = URI.create((URL + endpoint + ((id != 0) ? ("?id=" + id) : "")));
         request = HttpRequest.newBuilder().uri(uri).DELETE().build();
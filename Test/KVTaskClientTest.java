@@ -0,0 +1,268 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.tasktracker.server.HttpTaskServer;
+import ru.yandex.practicum.tasktracker.server.InMemoryKVStorage;
+import ru.yandex.practicum.tasktracker.server.KVServer;
+import ru.yandex.practicum.tasktracker.server.KVTaskClient;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KVTaskClientTest {
+    private final String URL = "http://localhost:8078";
+    private KVServer server;
+    private KVTaskClient client;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new KVServer();
+        server.start();
+        client = new KVTaskClient(URL);
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    @DisplayName("Тест на асинхронное сохранение и загрузку значения")
+    void putAndLoadAsyncTest() {
+        client.putAsync("key", "[1,2,3]").join();
+        assertEquals("[1,2,3]", client.loadAsync("key").join(), "Загружено не сохранённое значение.");
+        assertEquals("[1,2,3]", client.load("key"), "Загружено не сохранённое значение.");
+    }
+
+    @Test
+    @DisplayName("Тест на одновременное сохранение и загрузку нескольких ключей")
+    void putAllAndLoadAllTest() {
+        Map<String, String> values = new HashMap<>();
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            values.put("key" + i, "\"value " + i + "\"");
+            keys.add("key" + i);
+        }
+        client.putAll(values);
+
+        List<String> loadedValues = client.loadAll(keys);
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(values.get(keys.get(i)), loadedValues.get(i), "Значения загружены не в порядке ключей.");
+        }
+    }
+
+    @Test
+    @DisplayName("Тест на асинхронную загрузку нескольких ключей с отсутствующим ключом")
+    void loadAllAsyncWithMissingKeyTest() {
+        client.putAll(Map.of("key", "{\"name\": \"Задача\"}"));
+        assertEquals(Arrays.asList("{\"name\": \"Задача\"}", null),
+                client.loadAllAsync(List.of("key", "missing")).join(),
+                "Для отсутствующего ключа должен возвращаться null.");
+        assertThrows(RuntimeException.class, () -> client.loadAll(List.of("key", "missing")),
+                "Загрузка отсутствующего ключа не завершилась ошибкой.");
+    }
+
+    @Test
+    @DisplayName("При ошибке в одной из пар /mset не должна сохраняться ни одна пара")
+    void putAllRejectedAtomicallyTest() {
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("key", "1");
+        values.put("empty", "");
+        assertThrows(RuntimeException.class, () -> client.putAll(values), "Пустое значение не отклонено.");
+        assertNull(client.loadIfExists("key"), "Сохранена часть пар отклонённого запроса.");
+    }
+
+    @Test
+    @DisplayName("Запрос /mset с оборванным телом должен отклоняться с кодом 400")
+    void truncatedBulkBodyTest() throws IOException, InterruptedException {
+        HttpClient httpClient = HttpClient.newHttpClient();
+        // заявлены 2 пары, передана часть ключа первой
+        byte[] body = {0, 0, 0, 2, 0, 0, 0, 10, 'k', 'e'};
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(URL + "/mset?API_TOKEN=DEBUG"))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        assertEquals(400, response.statusCode(), "Оборванное тело запроса не отклонено.");
+    }
+
+    @Test
+    @DisplayName("Запросы сверх лимита должны ждать завершения предыдущих и выполняться")
+    void boundedInFlightRequestsTest() {
+        KVTaskClient limitedClient = new KVTaskClient(URL, 1);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(limitedClient.putAsync("key" + i, String.valueOf(i)));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        assertEquals("19", limitedClient.load("key19"), "Загружено не сохранённое значение.");
+    }
+
+    @Test
+    @DisplayName("Асинхронный запрос сверх лимита не должен блокировать вызывающий поток")
+    void asyncRequestOverLimitNotBlockingTest() throws IOException {
+        CountDownLatch latch = new CountDownLatch(1);
+        // хранилище отвечает на чтение, только когда тест разрешит
+        server.stop();
+        server = new KVServer(new InMemoryKVStorage() {
+            @Override
+            public String get(String key) {
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "\"value\"";
+            }
+        }, HttpTaskServer.ExecutorMode.FIXED_POOL, 2);
+        server.start();
+        KVTaskClient limitedClient = new KVTaskClient(URL, 1);
+
+        CompletableFuture<String> first = limitedClient.loadAsync("first");
+        CompletableFuture<Void> second = assertTimeout(Duration.ofSeconds(2),
+                () -> limitedClient.putAsync("key", "1"), "Вызывающий поток ждал завершения предыдущего запроса.");
+        assertFalse(second.isDone(), "Запрос сверх лимита выполнен до завершения предыдущего.");
+        latch.countDown();
+        assertEquals("\"value\"", first.join(), "Загружено не то значение.");
+        second.join();
+    }
+
+    @Test
+    @DisplayName("Запрос при заполненной очереди должен сразу отклоняться, остальные запросы - выполняться")
+    void requestOverPendingLimitRejectedTest() throws IOException {
+        CountDownLatch latch = new CountDownLatch(1);
+        server.stop();
+        server = new KVServer(new InMemoryKVStorage() {
+            @Override
+            public String get(String key) {
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "\"value\"";
+            }
+        }, HttpTaskServer.ExecutorMode.FIXED_POOL, 2);
+        server.start();
+        KVTaskClient limitedClient = new KVTaskClient(URL, 1, 1);
+
+        CompletableFuture<String> first = limitedClient.loadAsync("first");
+        CompletableFuture<Void> second = limitedClient.putAsync("key", "1");
+        CompletableFuture<Void> third = limitedClient.putAsync("key", "2");
+        assertFalse(second.isDone(), "Запрос из очереди выполнен до завершения предыдущего.");
+        assertTrue(third.isCompletedExceptionally(), "Запрос при заполненной очереди не отклонён сразу.");
+        CompletionException exception = assertThrows(CompletionException.class, third::join,
+                "Запрос при заполненной очереди не завершился ошибкой.");
+        assertTrue(exception.getCause() instanceof RejectedExecutionException, "Неверный тип ошибки.");
+
+        latch.countDown();
+        assertEquals("\"value\"", first.join(), "Загружено не то значение.");
+        second.join();
+    }
+
+    @Test
+    @DisplayName("Длинная очередь завершающихся с ошибкой запросов должна обрабатываться без переполнения стека")
+    void longQueueOfFailingRequestsTest() throws IOException {
+        KVTaskClient limitedClient = new KVTaskClient(URL, 1, 5000);
+        server.stop();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            futures.add(limitedClient.putAsync("key" + i, String.valueOf(i)));
+        }
+        for (CompletableFuture<Void> future : futures) {
+            assertThrows(CompletionException.class, future::join, "Запрос к остановленному серверу выполнен.");
+        }
+        server = new KVServer(); // для остановки в stopServer
+        server.start();
+    }
+
+    @Test
+    @DisplayName("Отсутствующий ключ: null при loadIfExists и исключение при асинхронной загрузке")
+    void missingKeyTest() {
+        assertNull(client.loadIfExists("missing"), "Для отсутствующего ключа возвращено значение.");
+        CompletableFuture<String> future = client.loadAsync("missing");
+        assertThrows(RuntimeException.class, future::join, "Загрузка отсутствующего ключа не завершилась ошибкой.");
+    }
+
+    @Test
+    @DisplayName("Ошибка запроса должна завершать future исключением")
+    void unavailableServerTest() throws IOException {
+        server.stop();
+        CompletableFuture<Void> future = client.putAsync("key", "1");
+        assertThrows(RuntimeException.class, future::join, "Запрос к остановленному серверу не завершился ошибкой.");
+        assertThrows(RuntimeException.class, () -> client.put("key", "1"),
+                "Запрос к остановленному серверу не завершился ошибкой.");
+        server = new KVServer(); // для остановки в stopServer
+        server.start();
+    }
+
+    @Test
+    @DisplayName("В пуле потоков запросы должны обрабатываться параллельно")
+    void parallelRequestsTest() throws IOException {
+        CountDownLatch latch = new CountDownLatch(2);
+        // хранилище отвечает на чтение, только когда два чтения выполняются одновременно
+        server.stop();
+        server = new KVServer(new InMemoryKVStorage() {
+            @Override
+            public String get(String key) {
+                latch.countDown();
+                try {
+                    return latch.await(5, TimeUnit.SECONDS) ? "\"parallel\"" : "\"sequential\"";
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+        }, HttpTaskServer.ExecutorMode.FIXED_POOL, 2);
+        server.start();
+        client = new KVTaskClient(URL);
+
+        CompletableFuture<String> first = client.loadAsync("first");
+        CompletableFuture<String> second = client.loadAsync("second");
+        assertEquals("\"parallel\"", first.join(), "Запросы обработаны последовательно.");
+        assertEquals("\"parallel\"", second.join(), "Запросы обработаны последовательно.");
+    }
+
+    @Test
+    @DisplayName("Параллельные /mget не должны видеть изменения /mset частично")
+    void concurrentBulkRequestsConsistencyTest() throws IOException, InterruptedException, ExecutionException {
+        server.stop();
+        server = new KVServer(new InMemoryKVStorage(), HttpTaskServer.ExecutorMode.FIXED_POOL, 4);
+        server.start();
+        client = new KVTaskClient(URL);
+        List<String> keys = List.of("tasks", "epics", "history");
+        client.putAll(Map.of("tasks", "0", "epics", "0", "history", "0"));
+
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 2; thread++) {
+                int writer = thread;
+                futures.add(threads.submit(() -> {
+                    for (int i = 1; i <= 100; i++) {
+                        String value = String.valueOf(i * 2 + writer);
+                        client.putAll(Map.of("tasks", value, "epics", value, "history", value));
+                    }
+                }));
+                futures.add(threads.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        List<String> values = client.loadAll(keys);
+                        assertEquals(1, Set.copyOf(values).size(), "Изменение прочитано частично: " + values);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            threads.shutdown();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.tasktracker.exeption.KVStorageException;
+import ru.yandex.practicum.tasktracker.server.LogKVStorage;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogKVStorageTest {
+    private static final long SMALL_SEGMENT_SIZE = 512;
+
+    private Path directory;
+    private LogKVStorage storage;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("kv-storage");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        if (storage != null) {
+            storage.close();
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Тест на сохранение значений после повторного открытия хранилища")
+    void putAndReadAfterReopenTest() {
+        storage = new LogKVStorage(directory);
+        storage.put("tasks", "{\"1\": {\"name\": \"Задача\"}}");
+        storage.put("history", "[1]");
+        storage.put("history", "[1,2]");
+        assertEquals("[1,2]", storage.get("history"), "Загружено не последнее значение.");
+        assertNull(storage.get("missing"), "Для отсутствующего ключа возвращено значение.");
+        storage.close();
+
+        storage = new LogKVStorage(directory);
+        assertEquals("{\"1\": {\"name\": \"Задача\"}}", storage.get("tasks"), "Значение не сохранилось.");
+        assertEquals("[1,2]", storage.get("history"), "Загружено не последнее значение.");
+    }
+
+    @Test
+    @DisplayName("Не дописанное до конца изменение не должно учитываться после повторного открытия")
+    void truncatedBatchIgnoredAfterReopenTest() throws IOException {
+        storage = new LogKVStorage(directory);
+        storage.put("key", "old");
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("key", "new");
+        entries.put("other", "value");
+        storage.putAll(entries);
+        storage.close();
+
+        Path segment = getFiles(".data").get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 2); // обрыв записи последнего ключа изменения
+        }
+        storage = new LogKVStorage(directory);
+        assertEquals("old", storage.get("key"), "Учтена часть не дописанного изменения.");
+        assertNull(storage.get("other"), "Учтена часть не дописанного изменения.");
+
+        storage.put("other", "value");
+        storage.close();
+        storage = new LogKVStorage(directory);
+        assertEquals("value", storage.get("other"), "Значение, записанное после обрезки сегмента, не сохранилось.");
+    }
+
+    @Test
+    @DisplayName("Повреждённый конец сегмента должен обрезаться при открытии")
+    void corruptedTailTruncatedTest() throws IOException {
+        storage = new LogKVStorage(directory);
+        storage.put("key", "value");
+        storage.close();
+
+        Path segment = getFiles(".data").get(0);
+        long size = Files.size(segment);
+        Files.write(segment, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18},
+                StandardOpenOption.APPEND);
+        storage = new LogKVStorage(directory);
+        assertEquals("value", storage.get("key"), "Значение перед повреждённым концом сегмента не загружено.");
+        assertEquals(size, Files.size(segment), "Повреждённый конец сегмента не обрезан.");
+    }
+
+    @Test
+    @DisplayName("Компактизация должна удалять устаревшие значения и сохранять действующие")
+    void compactionTest() throws IOException {
+        storage = new LogKVStorage(directory, SMALL_SEGMENT_SIZE, false);
+        for (int i = 0; i < 200; i++) {
+            storage.put("key" + i % 5, "value " + i);
+        }
+        storage.compact();
+
+        List<Path> segments = getFiles(".data");
+        assertTrue(segments.size() <= 2, "Сегменты не объединены: " + segments.size());
+        assertEquals(1, getFiles(".hint").size(), "Файл подсказок не записан.");
+        for (int i = 195; i < 200; i++) {
+            assertEquals("value " + i, storage.get("key" + i % 5), "Действующее значение потеряно.");
+        }
+
+        storage.put("key0", "after compaction");
+        storage.close();
+        storage = new LogKVStorage(directory, SMALL_SEGMENT_SIZE, false); // индекс строится по подсказкам
+        assertEquals("after compaction", storage.get("key0"), "Значение после компактизации не сохранилось.");
+        assertEquals("value 196", storage.get("key1"), "Значение из объединённого сегмента не загружено.");
+    }
+
+    @Test
+    @DisplayName("Компактизация должна выполняться в фоне при накоплении устаревших значений")
+    void backgroundCompactionTest() throws IOException, InterruptedException {
+        storage = new LogKVStorage(directory, SMALL_SEGMENT_SIZE, false);
+        for (int i = 0; i < 500; i++) {
+            storage.put("key", "value " + i);
+        }
+        // без компактизации на каждые 512 байт приходится отдельный сегмент
+        for (int i = 0; i < 100 && getFiles(".data").size() > 5; i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(getFiles(".data").size() <= 5, "Сегменты не объединены в фоне.");
+        assertEquals("value 499", storage.get("key"), "Действующее значение потеряно.");
+    }
+
+    @Test
+    @DisplayName("Обращение к закрытому хранилищу должно завершаться исключением")
+    void closedStorageTest() {
+        storage = new LogKVStorage(directory);
+        storage.close();
+        assertThrows(KVStorageException.class, () -> storage.put("key", "value"),
+                "Запись в закрытое хранилище не завершилась исключением.");
+        assertThrows(KVStorageException.class, () -> storage.get("key"),
+                "Чтение из закрытого хранилища не завершилось исключением.");
+    }
+
+    private List<Path> getFiles(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(suffix)).sorted().collect(Collectors.toList());
+        }
+    }
+}
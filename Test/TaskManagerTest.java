@@ -5,13 +5,16 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import ru.yandex.practicum.tasktracker.manager.TaskManager;
+import ru.yandex.practicum.tasktracker.manager.TasksPage;
 import ru.yandex.practicum.tasktracker.manager.TasksHelper;
 import ru.yandex.practicum.tasktracker.model.*;
 
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 import java.util.stream.Stream;
 
@@ -369,6 +372,32 @@ abstract class TaskManagerTest<T extends TaskManager> {
         assertEquals(epicB, taskManager.getEpic(epicA.getId()), "Эпики не совпадают.");
     }
 
+    @Test
+    @DisplayName("При замене эпика подзадачи сохраняются, а статус и время рассчитываются по подзадачам")
+    void replaceEpicKeepsSubtasksAndCalculatedPropertiesTest() {
+        Add2TasksAndEpicWith3Subtasks();
+        Epic savedEpic = taskManager.getEpic(epicA.getId());
+        Epic newEpic = new Epic(epicA.getId(), "New Epic A", TaskStatus.DONE, "New Epic A description",
+                null, 0, null);
+
+        assertTrue(taskManager.replaceEpic(newEpic), "Метод возвращает не true при стандартной замене эпика.");
+        Epic replacedEpic = taskManager.getEpic(epicA.getId());
+        assertEquals("New Epic A", replacedEpic.getName(), "Эпик не заменён.");
+        assertEquals(TaskStatus.IN_PROGRESS, replacedEpic.getStatus(), "Статус эпика взят из заменяющего эпика.");
+        assertEquals(LocalDateTime.of(2022, 6, 3, 10, 0), replacedEpic.getStartTime(),
+                "Время начала эпика взято из заменяющего эпика.");
+        assertEquals(Set.of(subtaskA.getId(), subtaskB.getId(), subtaskC.getId()),
+                replacedEpic.getSubtasksMap().keySet(), "Подзадачи эпика не сохранены при замене.");
+        assertTrue(newEpic.getSubtasksMap().isEmpty(), "Заменяющий эпик изменён менеджером.");
+        assertEquals(TaskStatus.DONE, newEpic.getStatus(), "Заменяющий эпик изменён менеджером.");
+
+        taskManager.removeTaskOfAnyTypeById(subtaskA.getId());
+        assertEquals("Epic A", savedEpic.getName(), "Полученный ранее эпик изменён.");
+        assertEquals(3, savedEpic.getSubtasksMap().size(), "Полученный ранее эпик изменён.");
+        assertEquals(3, replacedEpic.getSubtasksMap().size(), "Полученный ранее эпик изменён.");
+        assertEquals(2, taskManager.getEpic(epicA.getId()).getSubtasksMap().size(), "Подзадача не удалена из эпика.");
+    }
+
     @Test
     @DisplayName("replaceEpic(null) должен возвращать false")
     void replaceEpicReturnsFalseIfEpicIsNullTest() {
@@ -596,6 +625,24 @@ abstract class TaskManagerTest<T extends TaskManager> {
                 "Результат добавления подзадачи не соответствует ожидаемому.");
     }
 
+    @Test
+    @DisplayName("Задачи нулевой продолжительности не должны пересекаться с другими задачами")
+    void zeroDurationTasksNotOverlappingTest() {
+        LocalDateTime startTime = LocalDateTime.of(2022, 6, 1, 10, 0);
+        String message = "Задача нулевой продолжительности не добавлена.";
+        assertNotEquals(0, taskManager.addTaskOfAnyType(new Task("Task A", TaskStatus.NEW, "Task A description",
+                startTime, 0)), message);
+        assertNotEquals(0, taskManager.addTaskOfAnyType(new Task("Task B", TaskStatus.NEW, "Task B description",
+                startTime, 0)), message);
+        assertNotEquals(0, taskManager.addTaskOfAnyType(new Task("Task C", TaskStatus.NEW, "Task C description",
+                startTime, 30)), "Не добавлена задача, начинающаяся одновременно с задачами нулевой длины.");
+        assertNotEquals(0, taskManager.addTaskOfAnyType(new Task("Task D", TaskStatus.NEW, "Task D description",
+                startTime.plusMinutes(15), 0)), message);
+        assertEquals(0, taskManager.addTaskOfAnyType(new Task("Task E", TaskStatus.NEW, "Task E description",
+                startTime.plusMinutes(15), 15)), "Добавлена задача, пересекающаяся с задачей C.");
+        assertEquals(4, taskManager.getPrioritizedTasks().size(), "Неверное количество задач в списке приоритетов.");
+    }
+
     @DisplayName("Тест на замену задач перекрывающихся / непересекающихся по времени")
     @ParameterizedTest(name = "{index} проверка интервала с началом {0} длительностью {1}")
     @MethodSource("timeOverlappingStreamForAddingTasks")
@@ -627,6 +674,156 @@ abstract class TaskManagerTest<T extends TaskManager> {
                 "Результат замены подзадачи не соответствует ожидаемому.");
     }
 
+    @Test
+    @DisplayName("Тест на получение задач, пересекающихся с интервалом времени")
+    void getTasksInRangeTest() {
+        mixingAddTasksAndSubtasksWhichNamedInOrderByTime();
+
+        compareTasksLists(Arrays.asList(subtaskA, taskA), taskManager.getTasksInRange(
+                LocalDateTime.of(2022, 6, 1, 10, 45), LocalDateTime.of(2022, 6, 1, 15, 20)));
+        // интервал между задачами, касающийся их границ
+        assertTrue(taskManager.getTasksInRange(LocalDateTime.of(2022, 6, 1, 11, 0),
+                LocalDateTime.of(2022, 6, 1, 15, 15)).isEmpty(), "Найдены задачи вне интервала.");
+        // без границ - все задачи с заданным временем начала
+        compareTasksLists(Arrays.asList(subtaskA, taskA, subtaskB), taskManager.getTasksInRange(null, null));
+
+        taskManager.removeTaskOfAnyTypeById(taskA.getId());
+        compareTasksLists(List.of(subtaskA), taskManager.getTasksInRange(
+                LocalDateTime.of(2022, 6, 1, 10, 45), LocalDateTime.of(2022, 6, 1, 15, 20)));
+    }
+
+    @Test
+    @DisplayName("Результат запроса по интервалу времени должен совпадать с полным перебором задач")
+    void getTasksInRangeMatchesFullScanTest() {
+        Random random = new Random(7);
+        LocalDateTime baseTime = LocalDateTime.of(2022, 1, 1, 0, 0);
+        for (int i = 0; i < 300; i++) {
+            taskManager.addTaskOfAnyType(new Task("Task", TaskStatus.NEW, "Task description",
+                    baseTime.plusMinutes(random.nextInt(100000)), random.nextInt(300)));
+        }
+        for (int i = 0; i < 100; i++) {
+            LocalDateTime from = baseTime.plusMinutes(random.nextInt(100000));
+            LocalDateTime to = from.plusMinutes(random.nextInt(3000));
+            List<Task> expected = new ArrayList<>();
+            for (Task task : taskManager.getPrioritizedTasks()) {
+                if (task.getStartTime() != null && task.getStartTime().isBefore(to)
+                        && (task.getEndTime().isAfter(from) || task.getStartTime().equals(from))) {
+                    expected.add(task);
+                }
+            }
+            compareTasksLists(expected, taskManager.getTasksInRange(from, to));
+        }
+    }
+
+    @Test
+    @DisplayName("Тест на поиск свободных интервалов времени")
+    void findFreeSlotsTest() {
+        // занятые интервалы: 2022.06.01 10:30 - 11:00, 15:15 - 15:30, 2022.06.05 18:00 - 20:00
+        mixingAddTasksAndSubtasksWhichNamedInOrderByTime();
+        LocalDateTime from = LocalDateTime.of(2022, 6, 1, 10, 0);
+        LocalDateTime to = LocalDateTime.of(2022, 6, 1, 16, 0);
+
+        assertEquals(List.of(new TimeSlot(from, LocalDateTime.of(2022, 6, 1, 10, 30)),
+                        new TimeSlot(LocalDateTime.of(2022, 6, 1, 11, 0), LocalDateTime.of(2022, 6, 1, 15, 15)),
+                        new TimeSlot(LocalDateTime.of(2022, 6, 1, 15, 30), to)),
+                taskManager.findFreeSlots(from, to, 0, 10), "Свободные интервалы найдены неверно.");
+        // интервалы короче минимальной продолжительности пропускаются
+        assertEquals(List.of(new TimeSlot(LocalDateTime.of(2022, 6, 1, 11, 0), LocalDateTime.of(2022, 6, 1, 15, 15))),
+                taskManager.findFreeSlots(from, to, 60, 10), "Не учтена минимальная продолжительность.");
+        assertEquals(1, taskManager.findFreeSlots(from, to, 0, 1).size(), "Не учтено ограничение количества.");
+        // начало интервала поиска внутри задачи
+        assertEquals(new TimeSlot(LocalDateTime.of(2022, 6, 1, 11, 0), LocalDateTime.of(2022, 6, 1, 15, 15)),
+                taskManager.findFreeSlots(LocalDateTime.of(2022, 6, 1, 10, 45), to, 0, 1).get(0),
+                "Свободный интервал найден неверно.");
+        assertTrue(taskManager.findFreeSlots(to, from, 0, 10).isEmpty(), "Найдены интервалы при from > to.");
+    }
+
+    @Test
+    @DisplayName("Тест на размещение задач без времени начала в свободное время")
+    void scheduleTasksTest() {
+        // занятые интервалы: 2022.06.01 10:30 - 11:00, 15:15 - 15:30
+        mixingAddTasksAndSubtasksWhichNamedInOrderByTime();
+        Task longTask = new Task("Task D", TaskStatus.NEW, "Task D description", null, 60);
+        Subtask firstSubtask = new Subtask("Subtask E", TaskStatus.NEW, "Subtask E description", null, 30,
+                epicA.getId());
+        Subtask secondSubtask = new Subtask("Subtask F", TaskStatus.NEW, "Subtask F description", null, 30,
+                epicA.getId());
+        Task tooLongTask = new Task("Task G", TaskStatus.NEW, "Task G description", null, 300);
+
+        List<Task> scheduledTasks = taskManager.scheduleTasks(
+                List.of(longTask, firstSubtask, secondSubtask, tooLongTask),
+                LocalDateTime.of(2022, 6, 1, 10, 0), LocalDateTime.of(2022, 6, 1, 18, 0), null, null);
+
+        assertEquals(3, scheduledTasks.size(), "Количество размещённых задач не соответствует ожидаемому.");
+        assertEquals(LocalDateTime.of(2022, 6, 1, 11, 0), scheduledTasks.get(0).getStartTime(),
+                "Задача размещена не в самый ранний подходящий интервал.");
+        assertEquals(LocalDateTime.of(2022, 6, 1, 10, 0), scheduledTasks.get(1).getStartTime(),
+                "Подзадача размещена не в самый ранний подходящий интервал.");
+        // подзадача эпика размещается после предыдущей подзадачи того же эпика
+        assertEquals(LocalDateTime.of(2022, 6, 1, 12, 0), scheduledTasks.get(2).getStartTime(),
+                "Подзадача эпика размещена раньше предыдущей подзадачи.");
+        assertEquals(Subtask.class, scheduledTasks.get(2).getClass(), "Подзадача не сохранила свой тип.");
+        assertEquals(epicA.getId(), ((Subtask) scheduledTasks.get(2)).getEpicId(), "Подзадача не в эпике.");
+        assertEquals(6, taskManager.getTasksInRange(null, null).size(),
+                "Размещённые задачи не попали в расписание.");
+    }
+
+    @Test
+    @DisplayName("Тест на размещение задач в рабочее время")
+    void scheduleTasksInWorkingHoursTest() {
+        List<Task> batch = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            batch.add(new Task("Task " + i, TaskStatus.NEW, "Task description", null, 240));
+        }
+        List<Task> scheduledTasks = taskManager.scheduleTasks(batch, LocalDateTime.of(2022, 6, 2, 0, 0),
+                LocalDateTime.of(2022, 6, 4, 0, 0), LocalTime.of(9, 0), LocalTime.of(18, 0));
+
+        assertEquals(3, scheduledTasks.size(), "Количество размещённых задач не соответствует ожидаемому.");
+        assertEquals(LocalDateTime.of(2022, 6, 2, 9, 0), scheduledTasks.get(0).getStartTime(),
+                "Задача размещена вне рабочего времени.");
+        assertEquals(LocalDateTime.of(2022, 6, 2, 13, 0), scheduledTasks.get(1).getStartTime(),
+                "Задача размещена вне рабочего времени.");
+        assertEquals(LocalDateTime.of(2022, 6, 3, 9, 0), scheduledTasks.get(2).getStartTime(),
+                "Задача, не умещающаяся в рабочий день, не перенесена на следующий день.");
+    }
+
+    @Test
+    @DisplayName("Тест на постраничную выдачу задач и списка приоритетов")
+    void pagesTest() {
+        mixingAddTasksAndSubtasksWhichNamedInOrderByTime();
+        Add2TasksAndEpicWith3Subtasks();
+
+        List<Task> tasks = new ArrayList<>();
+        TasksPage<Task> page = taskManager.getTasksPage(null, 2);
+        tasks.addAll(page.getItems());
+        assertNotNull(page.getNextCursor(), "Нет курсора следующей страницы.");
+        // задача, удалённая с уже выданной страницы, не сбивает выдачу следующей
+        taskManager.removeTaskOfAnyTypeById(page.getItems().get(0).getId());
+        tasks.remove(0);
+        page = taskManager.getTasksPage(page.getNextCursor(), 2);
+        tasks.addAll(page.getItems());
+        assertNull(page.getNextCursor(), "Есть курсор после последней страницы.");
+        compareTasksLists(taskManager.getTasks(), tasks);
+
+        List<Task> prioritizedTasks = new ArrayList<>();
+        String cursor = null;
+        do {
+            page = taskManager.getPrioritizedTasksPage(cursor, 2);
+            assertTrue(page.getItems().size() <= 2, "Размер страницы больше заданного.");
+            prioritizedTasks.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        compareTasksLists(taskManager.getPrioritizedTasks(), prioritizedTasks);
+
+        assertEquals(taskManager.getSubtasks().size(), taskManager.getSubtasksPage(null, 100).getItems().size(),
+                "На странице не все подзадачи.");
+        assertEquals(2, taskManager.getEpicsPage(null, 100).getItems().size(), "На странице не все эпики.");
+        assertThrows(IllegalArgumentException.class, () -> taskManager.getTasksPage("abc", 10),
+                "Некорректный курсор не отклонён.");
+        assertThrows(IllegalArgumentException.class, () -> taskManager.getPrioritizedTasksPage(null, 0),
+                "Некорректный размер страницы не отклонён.");
+    }
+
     protected void Add2TasksAndEpicWith3Subtasks() {
         // Создание двух задач
         taskA = TasksHelper.replaceTaskId(taskA, taskManager.getNextTaskId());
@@ -755,6 +952,10 @@ abstract class TaskManagerTest<T extends TaskManager> {
                 Arguments.of(LocalDateTime.of(2022, 6, 1, 10, 30), 6330, true),
                 Arguments.of(LocalDateTime.of(2022, 6, 1, 10, 29), 6332, true),
                 Arguments.of(LocalDateTime.of(2022, 6, 1, 10, 31), 6328, true),
+                // Нет пересечения - задача нулевой продолжительности (пустой полуинтервал)
+                Arguments.of(LocalDateTime.of(2022, 6, 1, 10, 30), 0, false),
+                Arguments.of(LocalDateTime.of(2022, 6, 1, 10, 45), 0, false),
+                Arguments.of(LocalDateTime.of(2022, 6, 1, 11, 0), 0, false),
                 // Нет пересечения - до самой ранней задачи
                 Arguments.of(LocalDateTime.of(2022, 6, 1, 9, 0), 60, false),
                 Arguments.of(LocalDateTime.of(2022, 6, 1, 10, 29), 1, false),
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.tasktracker.exeption;
+
+public class KVStorageException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public KVStorageException(String message) {
+        super(message);
+    }
+
+    public KVStorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
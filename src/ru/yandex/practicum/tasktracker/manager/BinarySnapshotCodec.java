@@ -0,0 +1,297 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import ru.yandex.practicum.tasktracker.exeption.ManagerLoadException;
+import ru.yandex.practicum.tasktracker.model.*;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Двоичный формат снимка данных менеджера.
+ * Структура файла: сигнатура и версия формата, таблица строк (повторяющиеся названия и описания хранятся
+ * один раз), записи задач (тип и статус - номерами констант, время начала - числом минут от начала эпохи,
+ * числа - в формате varint), id задач из истории просмотров и контрольная сумма CRC32 всех предшествующих байтов
+ */
+public class BinarySnapshotCodec {
+    private static final byte[] MAGIC = {'T', 'T', 'S', 'B'};
+    private static final int FORMAT_VERSION = 1;
+    private static final int CHECKSUM_LENGTH = Integer.BYTES;
+    private static final long NO_START_TIME = 0; // время начала хранится со сдвигом на 1, 0 - время не задано
+
+    /**
+     * Содержимое снимка: задачи в порядке записи (эпики раньше своих подзадач) и id задач из истории просмотров
+     */
+    public static class Snapshot {
+        private final List<Task> tasks;
+        private final List<Integer> historyIds;
+
+        public Snapshot(List<Task> tasks, List<Integer> historyIds) {
+            this.tasks = tasks;
+            this.historyIds = historyIds;
+        }
+
+        public List<Task> getTasks() {
+            return tasks;
+        }
+
+        public List<Integer> getHistoryIds() {
+            return historyIds;
+        }
+    }
+
+    /**
+     * Проверяет, начинаются ли данные с сигнатуры двоичного снимка
+     */
+    public static boolean isBinarySnapshot(byte[] data) {
+        if (data.length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет, начинается ли файл с сигнатуры двоичного снимка (читаются только первые байты файла)
+     */
+    public static boolean isBinarySnapshot(Path path) throws IOException {
+        try (InputStream input = Files.newInputStream(path)) {
+            return isBinarySnapshot(input.readNBytes(MAGIC.length));
+        }
+    }
+
+    public static byte[] encode(List<Task> tasks, List<Integer> historyIds) {
+        Map<String, Integer> stringIndexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (Task task : tasks) {
+            addString(task.getName(), stringIndexes, strings);
+            addString(task.getDescription(), stringIndexes, strings);
+        }
+
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream(64 + tasks.size() * 16);
+        DataOutputStream output = new DataOutputStream(byteStream);
+        try {
+            output.write(MAGIC);
+            writeVarLong(output, FORMAT_VERSION);
+
+            writeVarLong(output, strings.size());
+            for (String string : strings) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(output, bytes.length);
+                output.write(bytes);
+            }
+
+            writeVarLong(output, tasks.size());
+            for (Task task : tasks) {
+                TaskType type = getTaskType(task);
+                output.writeByte(type.ordinal());
+                writeVarLong(output, task.getId());
+                writeVarLong(output, getStringReference(task.getName(), stringIndexes));
+                output.writeByte(task.getStatus().ordinal());
+                writeVarLong(output, getStringReference(task.getDescription(), stringIndexes));
+                if (type != TaskType.EPIC) { // время эпика вычисляется по подзадачам
+                    writeVarLong(output, toEpochMinuteReference(task.getStartTime()));
+                    writeVarLong(output, task.getDuration());
+                }
+                if (type == TaskType.SUBTASK) {
+                    writeVarLong(output, ((Subtask) task).getEpicId());
+                }
+            }
+
+            writeVarLong(output, historyIds.size());
+            for (int id : historyIds) {
+                writeVarLong(output, id);
+            }
+
+            CRC32 crc32 = new CRC32();
+            crc32.update(byteStream.toByteArray());
+            output.writeInt((int) crc32.getValue());
+            output.flush();
+        } catch (IOException exception) {
+            // запись в ByteArrayOutputStream не приводит к ошибкам ввода-вывода
+            throw new UncheckedIOException(exception);
+        }
+        return byteStream.toByteArray();
+    }
+
+    public static Snapshot decode(byte[] data) throws ManagerLoadException {
+        return decode(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Разбирает снимок непосредственно из буфера (например, из отображённого в память файла) без копирования
+     * данных в массив
+     */
+    public static Snapshot decode(ByteBuffer data) throws ManagerLoadException {
+        ByteBuffer input = data.duplicate();
+        int length = input.remaining();
+        if (length < MAGIC.length + CHECKSUM_LENGTH || !hasMagic(input)) {
+            throw new ManagerLoadException("Данные не являются двоичным снимком.");
+        }
+        int dataLength = length - CHECKSUM_LENGTH;
+        int expectedChecksum = input.getInt(input.position() + dataLength);
+        CRC32 crc32 = new CRC32();
+        ByteBuffer checkedData = input.duplicate();
+        checkedData.limit(checkedData.position() + dataLength);
+        crc32.update(checkedData);
+        if ((int) crc32.getValue() != expectedChecksum) {
+            throw new ManagerLoadException("Контрольная сумма двоичного снимка не совпадает.");
+        }
+
+        input.limit(input.position() + dataLength);
+        input.position(input.position() + MAGIC.length);
+        try {
+            long version = readVarLong(input);
+            if (version != FORMAT_VERSION) {
+                throw new ManagerLoadException(
+                        String.format("Неподдерживаемая версия двоичного снимка: %d.", version));
+            }
+
+            String[] strings = new String[readCount(input)];
+            byte[] bytes = new byte[64];
+            for (int i = 0; i < strings.length; i++) {
+                int stringLength = readCount(input);
+                if (stringLength > bytes.length) {
+                    bytes = new byte[Math.max(stringLength, bytes.length * 2)];
+                }
+                input.get(bytes, 0, stringLength);
+                strings[i] = new String(bytes, 0, stringLength, StandardCharsets.UTF_8);
+            }
+
+            TaskType[] types = TaskType.values();
+            TaskStatus[] statuses = TaskStatus.values();
+            int tasksCount = readCount(input);
+            List<Task> tasks = new ArrayList<>(Math.min(tasksCount, input.remaining()));
+            for (int i = 0; i < tasksCount; i++) {
+                TaskType type = types[Byte.toUnsignedInt(input.get())];
+                int id = (int) readVarLong(input);
+                String name = getString(strings, readVarLong(input));
+                TaskStatus status = statuses[Byte.toUnsignedInt(input.get())];
+                String description = getString(strings, readVarLong(input));
+                if (type == TaskType.EPIC) {
+                    tasks.add(new Epic(id, name, status, description, null, 0, null));
+                    continue;
+                }
+                LocalDateTime startTime = fromEpochMinuteReference(readVarLong(input));
+                int duration = (int) readVarLong(input);
+                if (type == TaskType.SUBTASK) {
+                    int epicId = (int) readVarLong(input);
+                    tasks.add(new Subtask(id, name, status, description, startTime, duration, epicId));
+                } else {
+                    tasks.add(new Task(id, name, status, description, startTime, duration));
+                }
+            }
+
+            int historyCount = readCount(input);
+            List<Integer> historyIds = new ArrayList<>(Math.min(historyCount, input.remaining()));
+            for (int i = 0; i < historyCount; i++) {
+                historyIds.add((int) readVarLong(input));
+            }
+            return new Snapshot(tasks, historyIds);
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException exception) {
+            throw new ManagerLoadException("Ошибка в структуре двоичного снимка.", exception);
+        }
+    }
+
+    private static boolean hasMagic(ByteBuffer data) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data.get(data.position() + i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static TaskType getTaskType(Task task) {
+        if (task.getClass() == Epic.class) {
+            return TaskType.EPIC;
+        } else if (task.getClass() == Subtask.class) {
+            return TaskType.SUBTASK;
+        }
+        return TaskType.TASK;
+    }
+
+    private static void addString(String string, Map<String, Integer> stringIndexes, List<String> strings) {
+        if (string != null && !stringIndexes.containsKey(string)) {
+            stringIndexes.put(string, strings.size());
+            strings.add(string);
+        }
+    }
+
+    /**
+     * Ссылка на строку в таблице: номер строки + 1, 0 - строка null
+     */
+    private static long getStringReference(String string, Map<String, Integer> stringIndexes) {
+        return (string != null) ? stringIndexes.get(string) + 1 : 0;
+    }
+
+    private static String getString(String[] strings, long reference) {
+        return (reference != 0) ? strings[(int) (reference - 1)] : null;
+    }
+
+    private static long toEpochMinuteReference(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return NO_START_TIME;
+        }
+        long epochMinute = Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60);
+        return zigZag(epochMinute) + 1;
+    }
+
+    private static LocalDateTime fromEpochMinuteReference(long reference) {
+        if (reference == NO_START_TIME) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(unZigZag(reference - 1) * 60, 0, ZoneOffset.UTC);
+    }
+
+    // ZigZag-кодирование позволяет записывать отрицательные значения (даты до 1970 года) в коротком varint
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(DataOutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = Byte.toUnsignedInt(input.get());
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Слишком длинное число varint.");
+    }
+
+    private static int readCount(ByteBuffer input) throws IOException {
+        long count = readVarLong(input);
+        if (count < 0 || count > Integer.MAX_VALUE) {
+            throw new IOException("Некорректное количество элементов: " + count);
+        }
+        return (int) count;
+    }
+}
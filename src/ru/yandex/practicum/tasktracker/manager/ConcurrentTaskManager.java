@@ -0,0 +1,459 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TimeSlot;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Потокобезопасный менеджер задач, хранящий данные в памяти.
+ * Чтение выполняется без блокировок по конкурентным коллекциям. Изменения эпика и его подзадач выполняются
+ * под блокировкой полосы (stripe), соответствующей id эпика, а выдача id, проверка пересечения по времени
+ * и вставка в список приоритетов - под общей короткой блокировкой расписания.
+ * Порядок захвата блокировок: сначала блокировки эпиков (по возрастанию номера полосы), затем блокировка расписания.
+ * Как и в родительском классе, опубликованный эпик и его таблица подзадач не изменяются: при изменении подзадач
+ * эпик заменяется новым, поэтому читатели обходят таблицу подзадач эпика без блокировок.
+ * Накопленные свойства эпика изменяются только под блокировкой его полосы.
+ * Удаление сначала убирает задачу из таблицы, затем из истории просмотров (см. getAnyTypeTask).
+ */
+public class ConcurrentTaskManager extends InMemoryTaskManager {
+    private static final int DEFAULT_LOCK_STRIPES_COUNT = 64;
+
+    private final ReentrantLock scheduleLock;
+    private final ReentrantLock[] epicLocks;
+
+    public ConcurrentTaskManager() {
+        this(DEFAULT_LOCK_STRIPES_COUNT);
+    }
+
+    public ConcurrentTaskManager(int lockStripesCount) {
+        super(new ConcurrentSkipListMap<>(), new ConcurrentSkipListMap<>(), new ConcurrentSkipListMap<>(),
+                new ConcurrentSkipListSet<>(PRIORITY_COMPARATOR),
+                new SynchronizedHistoryManager(Managers.getDefaultHistory()), new ConcurrentHashMap<>());
+        scheduleLock = new ReentrantLock();
+        epicLocks = new ReentrantLock[Math.max(lockStripesCount, 1)];
+        for (int i = 0; i < epicLocks.length; i++) {
+            epicLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public int getNextTaskId() {
+        scheduleLock.lock();
+        try {
+            return nextTaskId;
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    /**
+     * Задача читается без блокировок, поэтому её могут удалить между чтением и добавлением в историю. После
+     * добавления таблица проверяется повторно: если задачи в ней уже нет, удаляющий поток мог не увидеть её
+     * в истории, и задача удаляется из истории здесь
+     */
+    @Override
+    protected <T extends Task> T getAnyTypeTask(int id, Map<Integer, T> tasks) {
+        T task = super.getAnyTypeTask(id, tasks);
+        if (task != null && !tasks.containsKey(id)) {
+            historyManager.remove(id);
+        }
+        return task;
+    }
+
+    /**
+     * Индекс интервалов не потокобезопасен, поэтому запросы по времени выполняются под блокировкой расписания
+     */
+    @Override
+    public List<Task> getTasksInRange(LocalDateTime from, LocalDateTime to) {
+        scheduleLock.lock();
+        try {
+            return super.getTasksInRange(from, to);
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    @Override
+    public List<TimeSlot> findFreeSlots(LocalDateTime from, LocalDateTime to, int minDuration, int limit) {
+        scheduleLock.lock();
+        try {
+            return super.findFreeSlots(from, to, minDuration, limit);
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет все задачи
+     */
+    @Override
+    public void removeAllTasks() {
+        scheduleLock.lock();
+        try {
+            Set<Integer> idSet = new HashSet<>(tasks.keySet());
+            removeAnyTypeTaskCollectionFromPrioritizedTasks(tasks.values());
+            tasks.clear();
+            removeTasksFromHistoryByIDSet(idSet);
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет все эпики (а также все подзадачи вместе с ними)
+     */
+    @Override
+    public void removeAllEpics() {
+        lockAllEpics();
+        try {
+            scheduleLock.lock();
+            try {
+                Set<Integer> idSet = new HashSet<>(subtasks.keySet());
+                idSet.addAll(epics.keySet());
+                removeAnyTypeTaskCollectionFromPrioritizedTasks(subtasks.values());
+                subtasks.clear();
+                epics.clear();
+                epicAggregates.clear();
+                removeTasksFromHistoryByIDSet(idSet);
+            } finally {
+                scheduleLock.unlock();
+            }
+        } finally {
+            unlockAllEpics();
+        }
+    }
+
+    /**
+     * Удаляет все подзадачи
+     */
+    @Override
+    public void removeAllSubtasks() {
+        lockAllEpics();
+        try {
+            epicAggregates.clear();
+            for (Epic epic : epics.values()) {
+                EpicAggregates aggregates = new EpicAggregates();
+                epicAggregates.put(epic.getId(), aggregates);
+                epics.replace(epic.getId(), aggregates.applyTo(epic, PersistentIntMap.empty()));
+            }
+            scheduleLock.lock();
+            try {
+                Set<Integer> idSet = new HashSet<>(subtasks.keySet());
+                removeAnyTypeTaskCollectionFromPrioritizedTasks(subtasks.values());
+                subtasks.clear();
+                removeTasksFromHistoryByIDSet(idSet);
+            } finally {
+                scheduleLock.unlock();
+            }
+        } finally {
+            unlockAllEpics();
+        }
+    }
+
+    /**
+     * Добавляет новую задачу, эпик или подзадачу в соответствующие их типу коллекции, если переданный объект
+     * не содержит некорректных параметров
+     *
+     * @param task объект класса Task или классов-наследников Epic и Subtask
+     * @return id подзадачи, если она добавлена и 0, если не добавлена
+     */
+    @Override
+    public int addTaskOfAnyType(Task task) {
+        if (task == null) {
+            return 0;
+        }
+        if (task.getClass() == Epic.class) {
+            return addEpic((Epic) task);
+        } else if (task.getClass() == Subtask.class) {
+            return addSubtask((Subtask) task);
+        } else {
+            return addTask(task);
+        }
+    }
+
+    private int addTask(Task task) {
+        scheduleLock.lock();
+        try {
+            if (task.getId() == Task.DEFAULT_ID) {
+                task = TasksHelper.replaceTaskId(task, nextTaskId);
+            }
+            if (!reserveId(task.getId())) {
+                return 0;
+            }
+            if (isTaskTimeOverlappingAnother(task)) {
+                return 0;
+            }
+            tasks.put(task.getId(), task);
+            addToPrioritizedTasks(task);
+            return task.getId();
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    private int addEpic(Epic epic) {
+        scheduleLock.lock();
+        try {
+            if (epic.getId() == Task.DEFAULT_ID) {
+                epic = TasksHelper.replaceTaskId(epic, nextTaskId);
+            }
+            if (!reserveId(epic.getId())) {
+                return 0;
+            }
+            // таблица подзадач, сформированная в обход менеджера, не переносится
+            EpicAggregates aggregates = new EpicAggregates();
+            epicAggregates.put(epic.getId(), aggregates);
+            epics.put(epic.getId(), aggregates.applyTo(epic, PersistentIntMap.empty()));
+            return epic.getId();
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    private int addSubtask(Subtask subtask) {
+        ReentrantLock epicLock = getEpicLock(subtask.getEpicId());
+        epicLock.lock();
+        try {
+            Epic epic = epics.get(subtask.getEpicId());
+            scheduleLock.lock();
+            try {
+                if (subtask.getId() == Task.DEFAULT_ID) {
+                    subtask = TasksHelper.replaceTaskId(subtask, nextTaskId);
+                }
+                if (!reserveId(subtask.getId())) {
+                    return 0;
+                }
+                if (epic == null || isTaskTimeOverlappingAnother(subtask)) {
+                    return 0;
+                }
+                subtasks.put(subtask.getId(), subtask);
+                addToPrioritizedTasks(subtask);
+            } finally {
+                scheduleLock.unlock();
+            }
+            EpicAggregates aggregates = getEpicAggregates(epic);
+            aggregates.add(subtask);
+            epics.replace(epic.getId(), aggregates.applyTo(epic, getSubtasksMap(epic).with(subtask.getId(), subtask)));
+            return subtask.getId();
+        } finally {
+            epicLock.unlock();
+        }
+    }
+
+    /**
+     * Заменяет задачу, если новая задача не null, и если она передаётся с id существующей задачи
+     *
+     * @param task объект Task
+     * @return true, если подзадача добавлена, false, если нет
+     */
+    @Override
+    public boolean replaceTask(Task task) {
+        if (task == null) {
+            return false;
+        }
+        scheduleLock.lock();
+        try {
+            Task originTask = tasks.get(task.getId());
+            if (originTask == null || isTaskTimeOverlappingAnother(task)) {
+                return false;
+            }
+            tasks.replace(task.getId(), task);
+            removeFromPrioritizedTasks(originTask);
+            addToPrioritizedTasks(task);
+            return true;
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    /**
+     * Заменяет эпик так же, как родительский класс, под блокировкой полосы эпика
+     */
+    @Override
+    public boolean replaceEpic(Epic epic) {
+        if (epic == null) {
+            return false;
+        }
+        ReentrantLock epicLock = getEpicLock(epic.getId());
+        epicLock.lock();
+        try {
+            return super.replaceEpic(epic);
+        } finally {
+            epicLock.unlock();
+        }
+    }
+
+    /**
+     * Заменяет подзадачу, если новая подзадача не null, если она передаётся с id подзадачи, существующей в эпике
+     *
+     * @param subtask объект Subtask
+     * @return true, если подзадача добавлена, false, если нет
+     */
+    @Override
+    public boolean replaceSubtask(Subtask subtask) {
+        if (subtask == null) {
+            return false;
+        }
+        ReentrantLock epicLock = getEpicLock(subtask.getEpicId());
+        epicLock.lock();
+        try {
+            Epic epic = epics.get(subtask.getEpicId());
+            if (epic == null || !epic.getSubtasksMap().containsKey(subtask.getId())) {
+                return false;
+            }
+            Subtask originSubtask;
+            scheduleLock.lock();
+            try {
+                if (isTaskTimeOverlappingAnother(subtask)) {
+                    return false;
+                }
+                originSubtask = subtasks.get(subtask.getId());
+                subtasks.replace(subtask.getId(), subtask);
+                removeFromPrioritizedTasks(originSubtask);
+                addToPrioritizedTasks(subtask);
+            } finally {
+                scheduleLock.unlock();
+            }
+            EpicAggregates aggregates = getEpicAggregates(epic);
+            aggregates.replace(originSubtask, subtask);
+            epics.replace(epic.getId(), aggregates.applyTo(epic, getSubtasksMap(epic).with(subtask.getId(), subtask)));
+            return true;
+        } finally {
+            epicLock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет задачу, эпик, подзадачу с заданным id из коллекции, соответствующей их типу
+     *
+     * @param id id объекта (задачи, эпика, подзадачи)
+     */
+    @Override
+    public boolean removeTaskOfAnyTypeById(int id) {
+        if (tasks.containsKey(id)) {
+            return removeTask(id);
+        }
+        if (epics.containsKey(id)) {
+            return removeEpic(id);
+        }
+        Subtask subtask = subtasks.get(id);
+        if (subtask != null) {
+            return removeSubtask(subtask);
+        }
+        return false;
+    }
+
+    private boolean removeTask(int id) {
+        scheduleLock.lock();
+        try {
+            Task task = tasks.remove(id);
+            if (task == null) {
+                return false;
+            }
+            removeFromPrioritizedTasks(task);
+            historyManager.remove(id);
+            return true;
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    private boolean removeEpic(int id) {
+        ReentrantLock epicLock = getEpicLock(id);
+        epicLock.lock();
+        try {
+            Epic epic = epics.get(id);
+            if (epic == null) {
+                return false;
+            }
+            scheduleLock.lock();
+            try {
+                for (Integer subtaskId : epic.getSubtasksMap().keySet()) {
+                    Subtask subtask = subtasks.remove(subtaskId);
+                    if (subtask != null) {
+                        removeFromPrioritizedTasks(subtask);
+                    }
+                }
+            } finally {
+                scheduleLock.unlock();
+            }
+            epics.remove(id);
+            epicAggregates.remove(id);
+            removeTasksFromHistoryByIDSet(epic.getSubtasksMap().keySet());
+            historyManager.remove(id);
+            return true;
+        } finally {
+            epicLock.unlock();
+        }
+    }
+
+    private boolean removeSubtask(Subtask subtask) {
+        ReentrantLock epicLock = getEpicLock(subtask.getEpicId());
+        epicLock.lock();
+        try {
+            Epic epic = epics.get(subtask.getEpicId());
+            if (epic == null || !epic.getSubtasksMap().containsKey(subtask.getId())) {
+                return false; // подзадача удалена параллельно, пока ожидалась блокировка
+            }
+            Subtask originSubtask;
+            scheduleLock.lock();
+            try {
+                originSubtask = subtasks.remove(subtask.getId());
+                removeFromPrioritizedTasks(originSubtask);
+            } finally {
+                scheduleLock.unlock();
+            }
+            historyManager.remove(subtask.getId());
+            EpicAggregates aggregates = getEpicAggregates(epic);
+            aggregates.remove(originSubtask);
+            epics.replace(epic.getId(), aggregates.applyTo(epic, getSubtasksMap(epic).without(subtask.getId())));
+            return true;
+        } finally {
+            epicLock.unlock();
+        }
+    }
+
+    /**
+     * Проверяет, что id может быть присвоен новой задаче, и сдвигает счётчик id. Вызывается под блокировкой
+     * расписания
+     */
+    private boolean reserveId(int id) {
+        if (id <= 0) {
+            return false;
+        }
+        if (tasks.containsKey(id) || epics.containsKey(id) || subtasks.containsKey(id)) {
+            return false;
+        }
+        if (id >= nextTaskId) {
+            nextTaskId = id + 1;
+        }
+        return true;
+    }
+
+    private ReentrantLock getEpicLock(int epicId) {
+        return epicLocks[Math.floorMod(epicId, epicLocks.length)];
+    }
+
+    private void lockAllEpics() {
+        for (ReentrantLock lock : epicLocks) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAllEpics() {
+        for (int i = epicLocks.length - 1; i >= 0; i--) {
+            epicLocks[i].unlock();
+        }
+    }
+}
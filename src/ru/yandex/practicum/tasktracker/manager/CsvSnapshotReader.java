@@ -0,0 +1,150 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Потоковое чтение файла снимка формата csv: строки читаются по одной через буфер, и файл целиком в памяти
+ * не хранится. Контрольная сумма из последней строки файла (если она есть) считается по мере чтения данных
+ */
+public class CsvSnapshotReader implements Closeable {
+    private static final int TAIL_MAX_LENGTH = 64; // строка контрольной суммы умещается в конце файла такой длины
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final CRC32 crc32 = new CRC32();
+    private final BufferedReader reader;
+    private final String expectedChecksum; // null - файл записан без контрольной суммы
+
+    public CsvSnapshotReader(Path path, String checksumPrefix) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ChecksumTrailer trailer = readChecksumTrailer(channel, checksumPrefix);
+            expectedChecksum = trailer.getExpectedChecksum();
+            long dataLength = trailer.getDataLength();
+            InputStream input = new CheckedInputStream(
+                    new BoundedInputStream(Channels.newInputStream(channel), dataLength), crc32);
+            reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), BUFFER_SIZE);
+        } catch (IOException exception) {
+            channel.close();
+            throw exception;
+        }
+    }
+
+    /**
+     * Строка контрольной суммы в конце файла снимка: длина данных до неё и записанная сумма
+     */
+    public static class ChecksumTrailer {
+        private final long dataLength;
+        private final String expectedChecksum;
+
+        private ChecksumTrailer(long dataLength, String expectedChecksum) {
+            this.dataLength = dataLength;
+            this.expectedChecksum = expectedChecksum;
+        }
+
+        public long getDataLength() {
+            return dataLength;
+        }
+
+        /**
+         * Возвращает записанную контрольную сумму или null, если файл записан без неё
+         */
+        public String getExpectedChecksum() {
+            return expectedChecksum;
+        }
+    }
+
+    /**
+     * Ищет строку контрольной суммы в конце файла, не читая остальные данные
+     */
+    public static ChecksumTrailer readChecksumTrailer(FileChannel channel, String checksumPrefix)
+            throws IOException {
+        long size = channel.size();
+        int tailLength = (int) Math.min(size, TAIL_MAX_LENGTH);
+        ByteBuffer tail = ByteBuffer.allocate(tailLength);
+        while (tail.hasRemaining() && channel.read(tail, size - tailLength + tail.position()) >= 0) {
+            // дочитываем конец файла
+        }
+        // строка контрольной суммы состоит из символов ASCII, поэтому конец файла можно искать побайтно
+        String tailString = new String(tail.array(), 0, tail.position(), StandardCharsets.ISO_8859_1);
+        int trailerIndex = tailString.lastIndexOf("\n" + checksumPrefix);
+        if (trailerIndex < 0) {
+            return new ChecksumTrailer(size, null);
+        }
+        return new ChecksumTrailer(size - tailLength + trailerIndex,
+                tailString.substring(trailerIndex + 1 + checksumPrefix.length()).trim());
+    }
+
+    /**
+     * Возвращает true, если файл записан с контрольной суммой
+     */
+    public boolean isChecksumPresent() {
+        return expectedChecksum != null;
+    }
+
+    /**
+     * Возвращает очередную строку данных или null, если данные закончились
+     */
+    public String readLine() throws IOException {
+        return reader.readLine();
+    }
+
+    /**
+     * Дочитывает оставшиеся данные и сравнивает их контрольную сумму с записанной в файле
+     */
+    public boolean verifyChecksum() throws IOException {
+        while (reader.readLine() != null) {
+            // контрольная сумма учитывает все данные, в том числе непрочитанные строки
+        }
+        return Long.toHexString(crc32.getValue()).equals(expectedChecksum);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Поток, отдающий не более заданного числа байтов: данные снимка без строки контрольной суммы
+     */
+    private static class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream input, long length) {
+            super(input);
+            remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (count > 0) {
+                remaining -= count;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.TaskStatus;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.TreeMap;
+
+/**
+ * Накопленные свойства эпика по его подзадачам: количество подзадач в каждом статусе, суммарная продолжительность,
+ * времена начала и окончания подзадач (упорядоченные мультимножества). При добавлении, замене и удалении подзадачи
+ * свойства пересчитываются за O(log n) без обхода всех подзадач эпика
+ */
+public class EpicAggregates {
+    private final int[] statusCounts = new int[TaskStatus.values().length];
+    private int subtasksCount;
+    private long totalDuration;
+    // время -> количество подзадач с таким временем начала (окончания)
+    private final TreeMap<LocalDateTime, Integer> startTimes = new TreeMap<>();
+    private final TreeMap<LocalDateTime, Integer> endTimes = new TreeMap<>();
+
+    /**
+     * Создаёт свойства эпика по полному набору его подзадач
+     */
+    public static EpicAggregates of(Collection<Subtask> subtasks) {
+        EpicAggregates aggregates = new EpicAggregates();
+        for (Subtask subtask : subtasks) {
+            aggregates.add(subtask);
+        }
+        return aggregates;
+    }
+
+    public void add(Subtask subtask) {
+        statusCounts[subtask.getStatus().ordinal()]++;
+        subtasksCount++;
+        totalDuration += subtask.getDuration();
+        if (subtask.getStartTime() != null) {
+            startTimes.merge(subtask.getStartTime(), 1, Integer::sum);
+            endTimes.merge(subtask.getEndTime(), 1, Integer::sum);
+        }
+    }
+
+    public void remove(Subtask subtask) {
+        statusCounts[subtask.getStatus().ordinal()]--;
+        subtasksCount--;
+        totalDuration -= subtask.getDuration();
+        if (subtask.getStartTime() != null) {
+            decrement(startTimes, subtask.getStartTime());
+            decrement(endTimes, subtask.getEndTime());
+        }
+    }
+
+    public void replace(Subtask originSubtask, Subtask subtask) {
+        remove(originSubtask);
+        add(subtask);
+    }
+
+    /**
+     * Статус эпика: NEW, если подзадач нет или все они новые, DONE, если все подзадачи завершены,
+     * иначе IN_PROGRESS
+     */
+    public TaskStatus getStatus() {
+        if (subtasksCount == statusCounts[TaskStatus.NEW.ordinal()]) {
+            return TaskStatus.NEW;
+        }
+        if (subtasksCount == statusCounts[TaskStatus.DONE.ordinal()]) {
+            return TaskStatus.DONE;
+        }
+        return TaskStatus.IN_PROGRESS;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTimes.isEmpty() ? null : startTimes.firstKey();
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTimes.isEmpty() ? null : endTimes.lastKey();
+    }
+
+    public int getDuration() {
+        return (int) Math.min(totalDuration, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Возвращает эпик с теми же данными, что и переданный, с заданной неизменяемой таблицей подзадач
+     * и со свойствами, рассчитанными по накопленным значениям. Переданный эпик не изменяется
+     */
+    public Epic applyTo(Epic epic, PersistentIntMap<Subtask> subtasksMap) {
+        return new Epic(epic.getId(), epic.getName(), getStatus(), epic.getDescription(), getStartTime(),
+                getDuration(), getEndTime(), subtasksMap);
+    }
+
+    private static void decrement(TreeMap<LocalDateTime, Integer> times, LocalDateTime time) {
+        times.computeIfPresent(time, (key, count) -> (count > 1) ? count - 1 : null);
+    }
+}
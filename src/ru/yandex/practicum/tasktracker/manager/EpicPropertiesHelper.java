@@ -8,6 +8,10 @@ import java.time.LocalDateTime;
 
 public class EpicPropertiesHelper {
 
+    /**
+     * Рассчитывает свойства эпика полным обходом его подзадач. Менеджеры обновляют эпики по накопленным
+     * значениям ({@link EpicAggregates}), а полный пересчёт используется для проверки
+     */
     protected static Epic calculateAndSet(Epic epic) {
         Epic updatedEpic1 = setEpicStatusBySubtasks(epic);
         return setEpicTimesBySubtasks(updatedEpic1);
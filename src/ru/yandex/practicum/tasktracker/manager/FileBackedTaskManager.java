@@ -4,17 +4,31 @@ import ru.yandex.practicum.tasktracker.exeption.*;
 import ru.yandex.practicum.tasktracker.model.*;
 
 import java.io.File;
-import java.io.Writer;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
 public class FileBackedTaskManager extends InMemoryTaskManager {
     private static final String CSV_HEAD = "id,type,name,status,description,start,duration,epic";
@@ -23,111 +37,414 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
     private static final int DATA_FILE_MIN_LINES_COUNT = 2;
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
 
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final String CHECKSUM_PREFIX = "#crc32=";
+    private static final String WAL_FILE_SUFFIX = ".wal";
+    private static final int WAL_COMPACTION_THRESHOLD = 1000; // число записей журнала, после которого делается снимок
+    // Типы записей журнала упреждающей записи
+    private static final String WAL_ADD = "A";
+    private static final String WAL_REPLACE = "R";
+    private static final String WAL_REMOVE = "D";
+    private static final String WAL_REMOVE_ALL = "C";
+    private static final String WAL_VIEW = "V";
+
+    private static final long GROUP_COMMIT_DEFAULT_MAX_DELAY_MILLIS = 100;
+    // Файлы csv такого и большего размера загружаются через отображение в память
+    private static final long MAPPED_LOAD_MIN_FILE_SIZE = 1024 * 1024;
+
+    /**
+     * Способ сохранения данных: полная перезапись файла после каждого изменения, дописывание записи
+     * об изменении в журнал упреждающей записи с периодическим сохранением полного снимка (компактизацией)
+     * или запись снимка в фоновом потоке с объединением изменений, накопившихся за окно ожидания
+     */
+    public enum PersistenceMode {
+        SNAPSHOT,
+        WRITE_AHEAD_LOG,
+        GROUP_COMMIT
+    }
+
+    /**
+     * Формат файла снимка: текстовый csv или компактный двоичный (см. {@link BinarySnapshotCodec}).
+     * При загрузке формат определяется по содержимому файла, поэтому файл csv можно загрузить в менеджер,
+     * сохраняющий данные в двоичном формате
+     */
+    public enum SnapshotFormat {
+        CSV,
+        BINARY
+    }
+
     private File file;
+    private PersistenceMode persistenceMode;
+    private SnapshotFormat snapshotFormat;
+    private WriteAheadLog writeAheadLog;
+    private GroupCommitPersister groupCommitPersister;
+    private HistoryFlushPolicy historyFlushPolicy = HistoryFlushPolicy.everyView();
+    // Просмотры, ещё не сохранённые в файл (порядок - порядок последних просмотров)
+    private final Set<Integer> pendingViewIds = new LinkedHashSet<>();
+    private int pendingViewsCount;
+    private long lastHistoryFlushTime = System.currentTimeMillis();
+    // Счётчики изменений данных и изменений, вошедших в последний сохранённый снимок
+    private long modificationCount;
+    private long savedModificationCount;
 
     public FileBackedTaskManager(String source, boolean isSourceForReadData) {
+        this(source, isSourceForReadData, PersistenceMode.SNAPSHOT);
+    }
+
+    public FileBackedTaskManager(String source, boolean isSourceForReadData, PersistenceMode persistenceMode) {
+        this(source, isSourceForReadData, persistenceMode, SnapshotFormat.CSV);
+    }
+
+    public FileBackedTaskManager(String source, boolean isSourceForReadData, PersistenceMode persistenceMode,
+                                 SnapshotFormat snapshotFormat) {
+        this.persistenceMode = persistenceMode;
+        this.snapshotFormat = snapshotFormat;
         this.init(source, isSourceForReadData);
     }
 
     protected void init(String source, boolean isSourceForReadData) {
         this.file = new File(source);
-        if (isSourceForReadData && this.file.exists()) {
+        if (persistenceMode == PersistenceMode.WRITE_AHEAD_LOG) {
+            writeAheadLog = new WriteAheadLog(new File(source + WAL_FILE_SUFFIX).toPath());
+            if (!isSourceForReadData) {
+                compact(); // менеджер начинает работу с пустыми снимком и журналом
+            }
+        }
+        if (isSourceForReadData) {
             load();
         }
+        if (persistenceMode == PersistenceMode.GROUP_COMMIT) {
+            groupCommitPersister = new GroupCommitPersister(this::commitSnapshot, GROUP_COMMIT_DEFAULT_MAX_DELAY_MILLIS);
+        }
     }
 
     /**
      * Метод сохраняет задачи и историю просмотров в файл
      */
     public void save() throws ManagerSaveException {
-        String fileName = file.getName();
+        writeSnapshotAtomically(file.toPath(), getSnapshotData(), false);
+    }
+
+    /**
+     * Метод сохраняет задачи и историю просмотров в файл формата csv независимо от формата снимка менеджера
+     * (экспорт данных)
+     */
+    public void exportToCsv(String target) throws ManagerSaveException {
+        byte[] data;
+        synchronized (this) {
+            data = getCSVSnapshotData();
+        }
+        try {
+            writeSnapshotAtomically(Path.of(target), data, true);
+        } catch (InvalidPathException exception) {
+            throw new ManagerSaveException(String.format("Ошибка записи в файл %s.", target), exception);
+        }
+    }
+
+    /**
+     * Метод формирует содержимое файла снимка в формате менеджера
+     */
+    private byte[] getSnapshotData() {
+        if (snapshotFormat == SnapshotFormat.BINARY) {
+            List<Integer> historyIds = historyManager.getHistory().stream().map(Task::getId)
+                    .collect(Collectors.toList());
+            return BinarySnapshotCodec.encode(getAllTasksList(), historyIds);
+        }
+        return getCSVSnapshotData();
+    }
+
+    /**
+     * Метод формирует содержимое файла формата csv: задачи, строку истории просмотров и контрольную сумму
+     */
+    private byte[] getCSVSnapshotData() {
         StringBuilder stringBuilder = new StringBuilder(getCSVForAllTasks());
         stringBuilder.append("\n");
         stringBuilder.append(toString(this.historyManager));
-        try (Writer fileWriter = new FileWriter(fileName, StandardCharsets.UTF_8)) {
-            fileWriter.write(stringBuilder.toString());
+        String content = stringBuilder.toString();
+        String checksum = checksum(content.getBytes(StandardCharsets.UTF_8));
+        stringBuilder.append("\n").append(CHECKSUM_PREFIX).append(checksum).append("\n");
+        return stringBuilder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Метод записывает данные во временный файл рядом с основным, сбрасывает его на носитель и атомарно
+     * переименовывает в основной файл, поэтому при аварийном завершении в основном файле остаётся либо прежний,
+     * либо новый снимок целиком
+     *
+     * @param isDurable true, если на носитель нужно сбросить и само переименование (запись каталога)
+     */
+    private static void writeSnapshotAtomically(Path path, byte[] data, boolean isDurable)
+            throws ManagerSaveException {
+        try {
+            Path target = path.toAbsolutePath();
+            Path temp = target.resolveSibling(target.getFileName() + TEMP_FILE_SUFFIX);
+            try (FileOutputStream outputStream = new FileOutputStream(temp.toFile())) {
+                outputStream.write(data);
+                outputStream.getFD().sync();
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException exception) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (isDurable) {
+                syncDirectory(target.getParent());
+            }
+        } catch (IOException | InvalidPathException exception) {
+            throw new ManagerSaveException(String.format("Ошибка записи в файл %s.", path), exception);
+        }
+    }
+
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
         } catch (IOException exception) {
-            throw new ManagerSaveException(String.format("Ошибка записи в файл %s.", fileName), exception);
+            // не все файловые системы позволяют сбросить каталог на носитель - переименование уже выполнено
+        }
+    }
+
+    /**
+     * Метод возвращает контрольную сумму CRC32 данных в шестнадцатеричном виде
+     */
+    private static String checksum(byte[] data) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(data);
+        return Long.toHexString(crc32.getValue());
+    }
+
+    /**
+     * Метод записи снимка для фонового потока групповой фиксации: содержимое формируется под монитором
+     * менеджера, а запись в файл выполняется без блокировки, не задерживая изменения задач
+     */
+    private void commitSnapshot(boolean isDurable) throws ManagerSaveException {
+        byte[] data;
+        long version;
+        synchronized (this) {
+            data = getSnapshotData();
+            version = modificationCount;
+            clearPendingViews();
+        }
+        writeSnapshotAtomically(file.toPath(), data, isDurable);
+        synchronized (this) {
+            savedModificationCount = Math.max(savedModificationCount, version);
+        }
+    }
+
+    protected PersistenceMode getPersistenceMode() {
+        return persistenceMode;
+    }
+
+    /**
+     * Метод задаёт окно ожидания групповой фиксации (максимальное отставание данных в файле от данных в памяти)
+     */
+    public void setGroupCommitMaxDelay(long maxDelayMillis) {
+        if (groupCommitPersister != null) {
+            groupCommitPersister.setMaxDelayMillis(maxDelayMillis);
+        }
+    }
+
+    /**
+     * Метод сохраняет полный снимок данных в файл и очищает журнал упреждающей записи
+     */
+    public synchronized void compact() throws ManagerSaveException {
+        saveSnapshot();
+        if (writeAheadLog != null) {
+            writeAheadLog.truncate();
         }
     }
 
     /**
-     * Метод создаёт и возвращает менеджер, заполняя его данными из файла формата csv
+     * Метод задаёт правило сохранения истории просмотров (по умолчанию история сохраняется после каждого просмотра)
+     */
+    public void setHistoryFlushPolicy(HistoryFlushPolicy historyFlushPolicy) {
+        this.historyFlushPolicy = historyFlushPolicy;
+    }
+
+    /**
+     * Метод сохраняет накопленные, но ещё не записанные изменения. В режиме GROUP_COMMIT ожидает, пока фоновый
+     * поток запишет все изменения, сделанные до вызова, и сбросит файл на носитель. Не должен вызываться
+     * под монитором менеджера
+     */
+    public void flush() throws ManagerSaveException {
+        if (groupCommitPersister != null) {
+            synchronized (this) {
+                if (pendingViewsCount > 0) {
+                    groupCommitPersister.requestCommit();
+                }
+            }
+            groupCommitPersister.flush();
+            return;
+        }
+        synchronized (this) {
+            flushPendingChanges();
+        }
+    }
+
+    /**
+     * Метод сохраняет несохранённые изменения и освобождает файл журнала и фоновый поток. Вызывается при остановке
+     * приложения
+     */
+    public void close() throws ManagerSaveException {
+        flush();
+        if (groupCommitPersister != null) {
+            groupCommitPersister.close();
+        }
+        if (writeAheadLog != null) {
+            writeAheadLog.close();
+        }
+    }
+
+    /**
+     * Метод заполняет менеджер данными из файла снимка и применяет к ним записи журнала упреждающей записи
      */
     public void load() {
-        String csv;
+        if (file.exists()) {
+            loadSnapshot();
+        }
+        if (writeAheadLog != null) {
+            replayWriteAheadLog();
+        }
+    }
 
+    /**
+     * Метод заполняет менеджер данными из файла снимка, формат файла определяется по его содержимому
+     */
+    private void loadSnapshot() {
         try {
-            csv = Files.readString(file.toPath(), StandardCharsets.UTF_8);
-        } catch (IOException exception) {
+            if (BinarySnapshotCodec.isBinarySnapshot(file.toPath())) {
+                loadBinarySnapshot(mapFile(file.toPath()));
+            } else if (Files.size(file.toPath()) >= MAPPED_LOAD_MIN_FILE_SIZE) {
+                loadMappedCSVSnapshot();
+            } else {
+                loadCSVSnapshot();
+            }
+        } catch (IOException | UncheckedIOException exception) {
             System.out.printf("Ошибка чтения файла данных %s%n", file.toPath());
+            clearLoadedData();
+        }
+    }
+
+    /**
+     * Метод заполняет менеджер данными двоичного снимка. Контрольная сумма проверяется при разборе,
+     * поэтому повторная проверка пересечений задач не нужна
+     */
+    private void loadBinarySnapshot(ByteBuffer data) {
+        BinarySnapshotCodec.Snapshot snapshot;
+        try {
+            snapshot = BinarySnapshotCodec.decode(data);
+        } catch (ManagerLoadException exception) {
+            System.out.printf("Из-за ошибок не удалось загрузить данные из файла %s%n", file.toPath());
+            System.out.println(exception.getMessage());
             return;
         }
 
-        String[] lines = csv.split("\\n");
+        for (Task task : snapshot.getTasks()) {
+            putLoadedTask(task, true);
+        }
+        if (!linkLoadedSubtasks()) {
+            return;
+        }
+        for (int id : snapshot.getHistoryIds()) {
+            this.addTaskToHistory(id);
+        }
+    }
+
+    private static ByteBuffer mapFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Размер двоичного снимка превышает допустимый.");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
 
-        if (lines.length < DATA_FILE_MIN_LINES_COUNT) {
-            System.out.printf("Количество строк в файле %s меньше предусмотренного: %d < %d.",
-                    file.toPath(), lines.length, DATA_FILE_MIN_LINES_COUNT);
+    /**
+     * Метод заполняет менеджер данными большого файла формата csv: файл отображается в память и разбирается
+     * частями в общем пуле fork-join, затем задачи добавляются в менеджер в порядке записи в файле
+     */
+    private void loadMappedCSVSnapshot() throws IOException {
+        MappedCsvSnapshotParser.ParsedSnapshot snapshot;
+        try {
+            snapshot = MappedCsvSnapshotParser.parse(file.toPath(), CHECKSUM_PREFIX, ForkJoinPool.commonPool());
+        } catch (ManagerLoadException exception) {
+            System.out.printf("Из-за ошибок не удалось загрузить данные из файла %s%n", file.toPath());
+            System.out.println(exception.getMessage());
             return;
         }
 
-        int lineNumber;
-        for (lineNumber = 1; lineNumber < lines.length; lineNumber++) { // перебор строк начинается со второй строки
-            if (!lines[lineNumber].isEmpty()) {
+        for (Task task : snapshot.getTasks()) {
+            if (!putLoadedTask(task, snapshot.isChecksumVerified())) {
+                break;
+            }
+        }
+        if (linkLoadedSubtasks()) {
+            loadHistoryLine(snapshot.getHistoryLine());
+        }
+    }
+
+    /**
+     * Метод заполняет менеджер данными из файла формата csv. Файл читается построчно, задачи добавляются
+     * в менеджер по мере чтения, поэтому расход памяти не зависит от размера файла
+     */
+    private void loadCSVSnapshot() throws IOException {
+        String historyLine = null;
+
+        try (CsvSnapshotReader reader = new CsvSnapshotReader(file.toPath(), CHECKSUM_PREFIX)) {
+            // Файл, записанный с контрольной суммой, записан этим менеджером, поэтому повторная проверка
+            // пересечений задач не нужна. Сумма сверяется в конце чтения, при несовпадении данные отбрасываются
+            boolean isChecksumPresent = reader.isChecksumPresent();
+
+            String header = reader.readLine();
+            String line = (header != null) ? reader.readLine() : null;
+            if (line == null) {
+                System.out.printf("Количество строк в файле %s меньше предусмотренного: %d < %d.",
+                        file.toPath(), (header != null) ? 1 : 0, DATA_FILE_MIN_LINES_COUNT);
+                return;
+            }
+
+            while (line != null && !line.isEmpty()) { // перебор строк начинается со второй строки
                 Task task;
 
                 try { // строка парсится в задачу с отловом возможных ошибок
-                    task = this.fromString(lines[lineNumber]);
+                    task = parseTask(line);
                 } catch (ManagerLoadException exception) {
                     System.out.printf("Из-за ошибок не удалось загрузить данные из файла %s%n", file.toPath());
                     System.out.println(exception.getMessage());
-
-                    this.tasks.clear();
-                    this.epics.clear();
-                    this.subtasks.clear();
-
+                    clearLoadedData();
                     return; // завершаем работу метода, менеджер останется пустым
                 }
-                if (task.getClass() == Epic.class) {
-                    this.epics.put(task.getId(), (Epic) task);
-                } else if (task.getClass() == Subtask.class) {
-                    Subtask subtask = (Subtask) task;
-                    if (isTaskTimeOverlappingAnother(subtask)) {
-                        break;
-                    }
-                    Epic epic = epics.get(subtask.getEpicId());
-                    this.subtasks.put(subtask.getId(), subtask);
-                    epic.getSubtasksMap().put(subtask.getId(), subtask);
-                    this.prioritizedTasks.add(subtask);
-                } else {
-                    if (isTaskTimeOverlappingAnother(task)) {
-                        break;
-                    }
-                    this.tasks.put(task.getId(), task);
-                    this.prioritizedTasks.add(task);
+                if (!putLoadedTask(task, isChecksumPresent)) {
+                    break;
                 }
+                line = reader.readLine();
+            }
 
-                if (task.getId() >= this.nextTaskId) {
-                    this.nextTaskId = task.getId() + 1;
-                }
-            } else {
-                break;
+            if (line != null) {
+                historyLine = reader.readLine();
             }
-        }
 
-        for (int id : epics.keySet()) {
-            Epic updatedEpic = EpicPropertiesHelper.calculateAndSet(epics.get(id));
-            epics.replace(id, updatedEpic);
+            if (isChecksumPresent && !reader.verifyChecksum()) {
+                System.out.printf("Контрольная сумма файла %s не совпадает, данные не будут загружены.%n",
+                        file.toPath());
+                clearLoadedData();
+                return;
+            }
         }
 
-        int historyLineNumber = lineNumber + 1;
+        if (linkLoadedSubtasks()) {
+            loadHistoryLine(historyLine);
+        }
+    }
 
-        if (historyLineNumber < lines.length) {
+    /**
+     * Метод заполняет историю просмотров по строке csv-формата (null - строки истории нет)
+     */
+    private void loadHistoryLine(String historyLine) {
+        if (historyLine != null) {
             List<Integer> historyTasksId;
 
             try { // строка истории парсится в список с отловом возможных ошибок
-                historyTasksId = historyFromString(lines[historyLineNumber]);
+                historyTasksId = historyFromString(historyLine);
             } catch (ManagerLoadException exception) {
                 System.out.printf("Возникли ошибки при чтении файла %s%n", file.toPath());
                 System.out.println(exception.getMessage());
@@ -143,15 +460,265 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
     }
 
     /**
-     * Метод формирует и возвращает строку с данными всех задач менеджера в формате csv, первая строка содержит
-     * заголовки полей
+     * Метод удаляет из менеджера частично загруженные данные
      */
-    private String getCSVForAllTasks() {
+    private void clearLoadedData() {
+        this.tasks.clear();
+        this.epics.clear();
+        this.subtasks.clear();
+        clearPrioritizedTasks();
+        this.epicAggregates.clear();
+        this.nextTaskId = 1;
+    }
+
+    /**
+     * Метод помещает загруженную задачу в менеджер. Задача, пересекающаяся по времени с уже загруженными,
+     * не добавляется (если данные не проверены контрольной суммой). Подзадачи связываются с эпиками позже,
+     * в методе linkLoadedSubtasks, поэтому подзадача может быть записана в файле раньше своего эпика
+     *
+     * @return false, если задача не добавлена из-за пересечения
+     */
+    private boolean putLoadedTask(Task task, boolean isTrusted) {
+        if (task.getClass() == Epic.class) {
+            this.epics.put(task.getId(), (Epic) task);
+        } else if (task.getClass() == Subtask.class) {
+            Subtask subtask = (Subtask) task;
+            if (!isTrusted && isTaskTimeOverlappingAnother(subtask)) {
+                return false;
+            }
+            this.subtasks.put(subtask.getId(), subtask);
+            addToPrioritizedTasks(subtask);
+        } else {
+            if (!isTrusted && isTaskTimeOverlappingAnother(task)) {
+                return false;
+            }
+            this.tasks.put(task.getId(), task);
+            addToPrioritizedTasks(task);
+        }
+
+        if (task.getId() >= this.nextTaskId) {
+            this.nextTaskId = task.getId() + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Метод связывает загруженные подзадачи с эпиками и рассчитывает свойства эпиков. Подзадачи группируются
+     * по эпикам, а эпики рассчитываются параллельно в общем пуле fork-join
+     *
+     * @return false, если какая-либо подзадача ссылается на несуществующий эпик
+     */
+    private boolean linkLoadedSubtasks() {
+        Map<Integer, List<Subtask>> subtasksByEpicId = this.subtasks.values().parallelStream()
+                .collect(Collectors.groupingByConcurrent(Subtask::getEpicId));
+        for (Map.Entry<Integer, List<Subtask>> entry : subtasksByEpicId.entrySet()) {
+            if (!this.epics.containsKey(entry.getKey())) {
+                System.out.printf("Из-за ошибок не удалось загрузить данные из файла %s%n", file.toPath());
+                System.out.printf("Подзадача %d ссылается на несуществующий эпик.%n",
+                        entry.getValue().get(0).getId());
+                clearLoadedData();
+                return false;
+            }
+        }
+        List<EpicAggregates> loadedAggregates = this.epics.values().parallelStream()
+                .map(epic -> EpicAggregates.of(subtasksByEpicId.getOrDefault(epic.getId(), List.of())))
+                .collect(Collectors.toList());
+        List<Epic> loadedEpics = new ArrayList<>(this.epics.values()); // тот же порядок, что и у свойств
+        this.epicAggregates.clear();
+        for (int i = 0; i < loadedEpics.size(); i++) {
+            Epic epic = loadedEpics.get(i);
+            EpicAggregates aggregates = loadedAggregates.get(i);
+            Map<Integer, Subtask> epicSubtasks = new HashMap<>();
+            for (Subtask subtask : subtasksByEpicId.getOrDefault(epic.getId(), List.of())) {
+                epicSubtasks.put(subtask.getId(), subtask);
+            }
+            this.epics.put(epic.getId(), aggregates.applyTo(epic, PersistentIntMap.of(epicSubtasks)));
+            this.epicAggregates.put(epic.getId(), aggregates);
+        }
+        return true;
+    }
+
+    /**
+     * Метод применяет к данным менеджера записи журнала упреждающей записи. Оборванный конец журнала
+     * отбрасывается при чтении (см. {@link WriteAheadLog#readRecords()}); если целую запись применить не удалось,
+     * применение останавливается, а загруженные данные сохраняются снимком с очисткой журнала, чтобы следующие
+     * записи не оказались в журнале после неприменимой записи
+     */
+    private void replayWriteAheadLog() {
+        List<String> records;
+        try {
+            records = writeAheadLog.readRecords();
+        } catch (ManagerLoadException exception) {
+            System.out.println(exception.getMessage());
+            return;
+        }
+        for (String record : records) {
+            try {
+                applyLogRecord(record);
+            } catch (ManagerLoadException | IndexOutOfBoundsException exception) {
+                System.out.printf("Повреждённая запись журнала %s, применение журнала остановлено:%n%s%n",
+                        file.toPath() + WAL_FILE_SUFFIX, record);
+                compact();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Метод применяет к менеджеру одну запись журнала в обход сохранения (методами родительского класса)
+     */
+    private void applyLogRecord(String record) throws ManagerLoadException {
+        int separatorIndex = record.indexOf(',');
+        String operation = record.substring(0, separatorIndex);
+        String value = record.substring(separatorIndex + 1);
+        switch (operation) {
+            case WAL_ADD:
+                super.addTaskOfAnyType(fromString(value));
+                break;
+            case WAL_REPLACE:
+                Task task = fromString(value);
+                if (task.getClass() == Epic.class) {
+                    super.replaceEpic((Epic) task);
+                } else if (task.getClass() == Subtask.class) {
+                    super.replaceSubtask((Subtask) task);
+                } else {
+                    super.replaceTask(task);
+                }
+                break;
+            case WAL_REMOVE:
+                super.removeTaskOfAnyTypeById(parseLogRecordId(value, record));
+                break;
+            case WAL_REMOVE_ALL:
+                if (TaskType.TASK.name().equals(value)) {
+                    super.removeAllTasks();
+                } else if (TaskType.EPIC.name().equals(value)) {
+                    super.removeAllEpics();
+                } else if (TaskType.SUBTASK.name().equals(value)) {
+                    super.removeAllSubtasks();
+                }
+                break;
+            case WAL_VIEW:
+                addTaskToHistory(parseLogRecordId(value, record));
+                break;
+            default:
+                throw new ManagerLoadException(String.format("Неизвестный тип записи журнала:%n%s", record));
+        }
+    }
+
+    private static int parseLogRecordId(String value, String record) throws ManagerLoadException {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException exception) {
+            throw new ManagerLoadException(String.format("Ошибка в формате записи журнала:%n%s", record), exception);
+        }
+    }
+
+    /**
+     * Метод сохраняет изменение задач: в режиме SNAPSHOT перезаписывает файл целиком, в режиме WRITE_AHEAD_LOG
+     * дописывает запись в журнал и при накоплении записей выполняет компактизацию.
+     * Неуспешные операции (logRecord = null) ничего не изменили и не сохраняются
+     */
+    private void persistChange(String logRecord) throws ManagerSaveException {
+        if (logRecord == null) {
+            return;
+        }
+        modificationCount++;
+        if (groupCommitPersister != null) {
+            groupCommitPersister.requestCommit();
+            return;
+        }
+        if (writeAheadLog == null) {
+            saveSnapshot();
+            return;
+        }
+        flushPendingViewsToLog(); // отложенные просмотры должны попасть в журнал раньше изменения
+        writeAheadLog.append(logRecord);
+        if (writeAheadLog.getRecordsCount() >= WAL_COMPACTION_THRESHOLD) {
+            compact();
+        }
+    }
+
+    /**
+     * Метод учитывает просмотр задачи и сохраняет историю, если этого требует правило сохранения истории
+     */
+    private void persistView(Task task) throws ManagerSaveException {
+        if (task == null) {
+            return;
+        }
+        modificationCount++;
+        pendingViewIds.remove(task.getId());
+        pendingViewIds.add(task.getId());
+        pendingViewsCount++;
+        if (historyFlushPolicy.shouldFlush(pendingViewsCount, System.currentTimeMillis() - lastHistoryFlushTime)) {
+            flushPendingChanges();
+        }
+    }
+
+    private void flushPendingChanges() throws ManagerSaveException {
+        if (groupCommitPersister != null) {
+            groupCommitPersister.requestCommit();
+        } else if (writeAheadLog != null) {
+            flushPendingViewsToLog();
+        } else if (modificationCount != savedModificationCount) {
+            saveSnapshot();
+        }
+    }
+
+    private void flushPendingViewsToLog() throws ManagerSaveException {
+        for (int id : pendingViewIds) {
+            writeAheadLog.append(logRecord(WAL_VIEW, String.valueOf(id)));
+        }
+        clearPendingViews();
+        if (writeAheadLog.getRecordsCount() >= WAL_COMPACTION_THRESHOLD) {
+            compact();
+        }
+    }
+
+    private void saveSnapshot() throws ManagerSaveException {
+        save();
+        savedModificationCount = modificationCount;
+        clearPendingViews();
+    }
+
+    private void clearPendingViews() {
+        pendingViewIds.clear();
+        pendingViewsCount = 0;
+        lastHistoryFlushTime = System.currentTimeMillis();
+    }
+
+    private static String logRecord(String operation, String value) {
+        return operation + "," + value;
+    }
+
+    /**
+     * Метод возвращает задачу любого типа по id без добавления её в историю просмотров
+     */
+    private Task findTaskOfAnyType(int id) {
+        if (this.tasks.containsKey(id)) {
+            return this.tasks.get(id);
+        } else if (this.epics.containsKey(id)) {
+            return this.epics.get(id);
+        }
+        return this.subtasks.get(id);
+    }
+
+    /**
+     * Метод возвращает список всех задач менеджера: задачи, эпики, подзадачи (эпики раньше своих подзадач)
+     */
+    private List<Task> getAllTasksList() {
         List<Task> tasks = new ArrayList<>(getTasks());
         tasks.addAll(getEpics());
         tasks.addAll(getSubtasks());
+        return tasks;
+    }
+
+    /**
+     * Метод формирует и возвращает строку с данными всех задач менеджера в формате csv, первая строка содержит
+     * заголовки полей
+     */
+    private String getCSVForAllTasks() {
         StringBuilder stringBuilder = new StringBuilder(CSV_HEAD).append("\n");
-        for (Task task : tasks) {
+        for (Task task : getAllTasksList()) {
             stringBuilder.append(toString(task)).append("\n");
         }
         return stringBuilder.toString();
@@ -186,6 +753,19 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
      * Метод создаёт и возвращает задачу (эпик, подзадачу) на основании данных, переданных в строке csv-формата
      */
     private Task fromString(String value) throws ManagerLoadException {
+        Task task = parseTask(value);
+        if (task.getClass() == Subtask.class && !this.epics.containsKey(((Subtask) task).getEpicId())) {
+            // Исключение будет обработано в методе load
+            throw new ManagerLoadException(
+                    String.format("Подзадача ссылается на несуществующий эпик в строке:%n%s", value));
+        }
+        return task;
+    }
+
+    /**
+     * Метод создаёт задачу по строке csv-формата без проверки ссылок на другие задачи
+     */
+    static Task parseTask(String value) throws ManagerLoadException {
         int id;
         TaskType type;
         TaskStatus status;
@@ -193,56 +773,76 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
         int duration;
         int epicId;
 
-        String[] fields = value.split(",", -1);
+        // Границы полей находятся без разбиения строки на массив: fieldEnds[i] - индекс запятой после поля i
+        int[] fieldEnds = new int[TASK_FIELDS_COUNT];
+        int fieldsCount = 0;
+        int fieldStart = 0;
+        while (true) {
+            int comma = value.indexOf(',', fieldStart);
+            if (fieldsCount < TASK_FIELDS_COUNT) {
+                fieldEnds[fieldsCount] = (comma >= 0) ? comma : value.length();
+            }
+            fieldsCount++;
+            if (comma < 0) {
+                break;
+            }
+            fieldStart = comma + 1;
+        }
 
-        if (fields.length != TASK_FIELDS_COUNT) {
+        if (fieldsCount != TASK_FIELDS_COUNT) {
             throw new ManagerLoadException(String.format(
-                    "Некорректное число полей данных задачи ( = %d) в строке:%n%s", fields.length, value));
+                    "Некорректное число полей данных задачи ( = %d) в строке:%n%s", fieldsCount, value));
         }
 
         try {
-            id = Integer.parseInt(fields[0]);
-            type = TaskType.valueOf(fields[1]);
-            status = TaskStatus.valueOf(fields[3]);
-            startTime = (!fields[5].equals("null")) ? LocalDateTime.parse(fields[5], FORMATTER) : null;
-            duration = Integer.parseInt(fields[6]);
-            epicId = (type == TaskType.SUBTASK) ? Integer.parseInt(fields[7]) : 0;
-        } catch (IllegalArgumentException exception) {
+            id = Integer.parseInt(value, 0, fieldEnds[0], 10);
+            type = TaskType.valueOf(getField(value, fieldEnds, 1));
+            status = TaskStatus.valueOf(getField(value, fieldEnds, 3));
+            String start = getField(value, fieldEnds, 5);
+            startTime = (!start.equals("null")) ? LocalDateTime.parse(start, FORMATTER) : null;
+            duration = Integer.parseInt(value, fieldEnds[5] + 1, fieldEnds[6], 10);
+            epicId = (type == TaskType.SUBTASK) ? Integer.parseInt(value, fieldEnds[6] + 1, fieldEnds[7], 10) : 0;
+        } catch (IllegalArgumentException | DateTimeParseException exception) {
             throw new ManagerLoadException(String.format("Ошибка в формате данных в строке:%n%s", value), exception);
         }
 
-        String name = fields[2];
-        String description = fields[4];
+        String name = getField(value, fieldEnds, 2);
+        String description = getField(value, fieldEnds, 4);
 
         if (type == TaskType.EPIC) {
             return new Epic(id, name, status, description, null, 0, null);
         } else if (type == TaskType.SUBTASK) {
-            Epic epic = this.epics.getOrDefault(epicId, null);
-            if (epic == null) {
-                // Исключение будет обработано в методе load
-                throw new ManagerLoadException(
-                        String.format("Подзадача ссылается на несуществующий эпик в строке:%n%s", value));
-            }
             return new Subtask(id, name, status, description, startTime, duration, epicId);
         } else {
             return new Task(id, name, status, description, startTime, duration);
         }
     }
 
+    private static String getField(String value, int[] fieldEnds, int index) {
+        return value.substring((index == 0) ? 0 : fieldEnds[index - 1] + 1, fieldEnds[index]);
+    }
+
     /**
      * Метод создаёт и возвращает список с id задач из истории просмотра на основании данных, переданных
      * в строке csv-формата
      */
     private static List<Integer> historyFromString(String value) throws ManagerLoadException {
         List<Integer> historyTasksId = new ArrayList<>();
-        String[] history = value.split(",");
-        for (String id : history) {
+        int fieldStart = 0;
+        while (fieldStart <= value.length()) {
+            int comma = value.indexOf(',', fieldStart);
+            int fieldEnd = (comma >= 0) ? comma : value.length();
             try {
-                historyTasksId.add(Integer.valueOf(id));
+                historyTasksId.add(Integer.parseInt(value, fieldStart, fieldEnd, 10));
             } catch (NumberFormatException exception) {
-                throw new ManagerLoadException(
-                        String.format("Идентификатор задачи в истории просмотров - не целое число: %s", id), exception);
+                throw new ManagerLoadException(String.format(
+                        "Идентификатор задачи в истории просмотров - не целое число: %s",
+                        value.substring(fieldStart, fieldEnd)), exception);
+            }
+            if (comma < 0) {
+                break;
             }
+            fieldStart = comma + 1;
         }
         return historyTasksId;
     }
@@ -261,76 +861,76 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
     }
 
     @Override
-    public void removeAllTasks() throws ManagerSaveException {
+    public synchronized void removeAllTasks() throws ManagerSaveException {
         super.removeAllTasks();
-        save();
+        persistChange(logRecord(WAL_REMOVE_ALL, TaskType.TASK.name()));
     }
 
     @Override
-    public void removeAllEpics() throws ManagerSaveException {
+    public synchronized void removeAllEpics() throws ManagerSaveException {
         super.removeAllEpics();
-        save();
+        persistChange(logRecord(WAL_REMOVE_ALL, TaskType.EPIC.name()));
     }
 
     @Override
-    public void removeAllSubtasks() throws ManagerSaveException {
+    public synchronized void removeAllSubtasks() throws ManagerSaveException {
         super.removeAllSubtasks();
-        save();
+        persistChange(logRecord(WAL_REMOVE_ALL, TaskType.SUBTASK.name()));
     }
 
     @Override
-    public int addTaskOfAnyType(Task task) throws ManagerSaveException {
+    public synchronized int addTaskOfAnyType(Task task) throws ManagerSaveException {
         int id = super.addTaskOfAnyType(task);
-        save();
+        persistChange((id != 0) ? logRecord(WAL_ADD, toString(findTaskOfAnyType(id))) : null);
         return id;
     }
 
     @Override
-    public boolean replaceTask(Task task) throws ManagerSaveException {
+    public synchronized boolean replaceTask(Task task) throws ManagerSaveException {
         boolean isSuccessfullyReplacing = super.replaceTask(task);
-        save();
+        persistChange(isSuccessfullyReplacing ? logRecord(WAL_REPLACE, toString(task)) : null);
         return isSuccessfullyReplacing;
     }
 
     @Override
-    public boolean replaceEpic(Epic epic) throws ManagerSaveException {
+    public synchronized boolean replaceEpic(Epic epic) throws ManagerSaveException {
         boolean isSuccessfullyReplacing = super.replaceEpic(epic);
-        save();
+        persistChange(isSuccessfullyReplacing ? logRecord(WAL_REPLACE, toString(epic)) : null);
         return isSuccessfullyReplacing;
     }
 
     @Override
-    public boolean replaceSubtask(Subtask subtask) throws ManagerSaveException {
+    public synchronized boolean replaceSubtask(Subtask subtask) throws ManagerSaveException {
         boolean isSuccessfullyReplacing = super.replaceSubtask(subtask);
-        save();
+        persistChange(isSuccessfullyReplacing ? logRecord(WAL_REPLACE, toString(subtask)) : null);
         return isSuccessfullyReplacing;
     }
 
     @Override
-    public boolean removeTaskOfAnyTypeById(int id) throws ManagerSaveException {
+    public synchronized boolean removeTaskOfAnyTypeById(int id) throws ManagerSaveException {
         boolean isSuccessfullyRemoving = super.removeTaskOfAnyTypeById(id);
-        save();
+        persistChange(isSuccessfullyRemoving ? logRecord(WAL_REMOVE, String.valueOf(id)) : null);
         return isSuccessfullyRemoving;
     }
 
     @Override
-    public Task getTask(int id) throws ManagerSaveException {
+    public synchronized Task getTask(int id) throws ManagerSaveException {
         Task task = super.getTask(id);
-        save();
+        persistView(task);
         return task;
     }
 
     @Override
-    public Epic getEpic(int id) throws ManagerSaveException {
+    public synchronized Epic getEpic(int id) throws ManagerSaveException {
         Epic epic = super.getEpic(id);
-        save();
+        persistView(epic);
         return epic;
     }
 
     @Override
-    public Subtask getSubtask(int id) throws ManagerSaveException {
+    public synchronized Subtask getSubtask(int id) throws ManagerSaveException {
         Subtask subtask = super.getSubtask(id);
-        save();
+        persistView(subtask);
         return subtask;
     }
 }
\ No newline at end of file
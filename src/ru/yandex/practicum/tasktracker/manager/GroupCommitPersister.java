@@ -0,0 +1,152 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import ru.yandex.practicum.tasktracker.exeption.ManagerSaveException;
+
+/**
+ * Фоновое сохранение с групповой фиксацией: запросы на сохранение, поступившие в течение окна ожидания,
+ * объединяются в одну запись снимка. Данные на диске отстают от данных в памяти не более чем на окно ожидания
+ * (плюс время самой записи)
+ */
+public class GroupCommitPersister {
+
+    /**
+     * Действие, выполняющее запись снимка
+     */
+    public interface CommitAction {
+        /**
+         * @param isDurable true, если запись нужно принудительно сбросить на носитель (fsync)
+         */
+        void commit(boolean isDurable) throws ManagerSaveException;
+    }
+
+    private final CommitAction commitAction;
+    private final Thread thread;
+    private volatile long maxDelayMillis;
+    // Поля ниже защищены монитором объекта
+    private long requestedVersion;
+    private long committedVersion;
+    private long durableVersion; // последняя версия, сброшенная на носитель
+    private long firstPendingRequestTime;
+    private boolean isDurableCommitRequested;
+    private boolean isStopped;
+    private ManagerSaveException lastError;
+
+    public GroupCommitPersister(CommitAction commitAction, long maxDelayMillis) {
+        this.commitAction = commitAction;
+        this.maxDelayMillis = maxDelayMillis;
+        thread = new Thread(this::run, "group-commit-persister");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void setMaxDelayMillis(long maxDelayMillis) {
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Сообщает о новом изменении, которое должно попасть в одну из следующих записей снимка. Не блокирует
+     * вызывающий поток на время записи
+     */
+    public synchronized void requestCommit() {
+        if (requestedVersion == committedVersion) {
+            firstPendingRequestTime = System.currentTimeMillis();
+        }
+        requestedVersion++;
+        notifyAll();
+    }
+
+    /**
+     * Ожидает, пока все изменения, о которых сообщено до вызова, будут записаны и сброшены на носитель
+     *
+     * @throws ManagerSaveException если последняя запись завершилась ошибкой
+     */
+    public synchronized void flush() throws ManagerSaveException {
+        long targetVersion = requestedVersion;
+        if (durableVersion < targetVersion) {
+            isDurableCommitRequested = true;
+            notifyAll();
+        }
+        while (durableVersion < targetVersion && lastError == null && !isStopped) {
+            try {
+                wait();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new ManagerSaveException("Ожидание записи снимка прервано.", exception);
+            }
+        }
+        if (lastError != null) {
+            ManagerSaveException error = lastError;
+            lastError = null;
+            throw error;
+        }
+    }
+
+    /**
+     * Записывает накопленные изменения и останавливает фоновый поток
+     */
+    public void close() throws ManagerSaveException {
+        try {
+            flush();
+        } finally {
+            synchronized (this) {
+                isStopped = true;
+                notifyAll();
+            }
+        }
+    }
+
+    private boolean hasPendingCommit() {
+        return requestedVersion > committedVersion || (isDurableCommitRequested && durableVersion < requestedVersion);
+    }
+
+    private void run() {
+        while (true) {
+            long targetVersion;
+            boolean isDurable;
+            synchronized (this) {
+                try {
+                    while (!isStopped && !hasPendingCommit()) {
+                        wait();
+                    }
+                    // окно ожидания: копим изменения, пока не истечёт срок или кто-то не ждёт записи в flush()
+                    long deadline = firstPendingRequestTime + maxDelayMillis;
+                    long now = System.currentTimeMillis();
+                    while (!isStopped && !isDurableCommitRequested && now < deadline) {
+                        wait(deadline - now);
+                        now = System.currentTimeMillis();
+                    }
+                } catch (InterruptedException exception) {
+                    return;
+                }
+                if (isStopped) {
+                    return;
+                }
+                targetVersion = requestedVersion;
+                isDurable = isDurableCommitRequested;
+                isDurableCommitRequested = false;
+            }
+            ManagerSaveException error = null;
+            try {
+                commitAction.commit(isDurable);
+            } catch (ManagerSaveException exception) {
+                error = exception;
+                System.out.println(exception.getMessage());
+            }
+            synchronized (this) {
+                committedVersion = targetVersion;
+                if (error != null) {
+                    lastError = error;
+                } else if (isDurable) {
+                    durableVersion = targetVersion;
+                }
+                if (durableVersion >= requestedVersion) {
+                    isDurableCommitRequested = false;
+                }
+                if (requestedVersion > committedVersion) {
+                    firstPendingRequestTime = System.currentTimeMillis();
+                }
+                notifyAll();
+            }
+        }
+    }
+}
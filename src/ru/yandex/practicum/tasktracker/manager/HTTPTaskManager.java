@@ -5,54 +5,453 @@ import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
 import ru.yandex.practicum.tasktracker.exeption.ManagerSaveException;
 import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.Subtask;
 import ru.yandex.practicum.tasktracker.model.Task;
 import ru.yandex.practicum.tasktracker.server.KVTaskClient;
 
-import java.util.HashMap;
+import java.util.*;
+import java.util.stream.Collectors;
 
+/**
+ * Менеджер, сохраняющий данные на KV-сервере. Способ сохранения задаётся режимом {@link PersistenceMode}:
+ * в режиме SNAPSHOT после каждого изменения на сервер передаются все задачи, эпики и история (ключи tasks, epics,
+ * history). В режимах WRITE_AHEAD_LOG и GROUP_COMMIT передаются только пакеты изменений: изменённые со времени
+ * предыдущего пакета задачи, id удалённых задач и просмотренные задачи. В режиме WRITE_AHEAD_LOG пакет передаётся
+ * после каждого изменения, в режиме GROUP_COMMIT изменения, накопившиеся за окно ожидания, передаются одним
+ * пакетом в фоновом потоке. При загрузке пакеты применяются к последнему полному снимку; когда пакетов
+ * накапливается много, передаётся новый снимок (компактизация)
+ */
 public class HTTPTaskManager extends FileBackedTaskManager {
+    // Ключи режима пакетов изменений. Снимок записывается попеременно в два слота, а ключ manifest указывает
+    // действующий слот и число пакетов, поэтому прерванная передача снимка не портит действующие данные
+    private static final String MANIFEST_KEY = "delta.manifest";
+    private static final int MAX_BATCHES_COUNT = 100; // число пакетов, после которого передаётся снимок
+    private static final long DELTA_SYNC_DEFAULT_MAX_DELAY_MILLIS = 100;
 
+    // Поля инициализируются в init(), который вызывается из конструктора родительского класса,
+    // поэтому у них не должно быть инициализаторов в объявлении
     private KVTaskClient client;
     private Gson gson;
+    private boolean isDeltaSync;
+    private GroupCommitPersister deltaSyncPersister; // только в режиме GROUP_COMMIT
+    // Изменения со времени последнего пакета (защищены монитором менеджера)
+    private Set<Integer> changedIds;
+    private Set<Integer> removedIds;
+    private Set<Integer> viewedIds; // в порядке последнего просмотра
+    private boolean isSnapshotRequired;
+    // Состояние данных на сервере (защищено монитором менеджера)
+    private int deltaSlot;
+    private int batchesCount;
+
+    /**
+     * Содержимое ключа manifest: действующий слот снимка и число переданных после снимка пакетов
+     */
+    private static class Manifest {
+        private final int slot;
+        private final int batches;
+
+        private Manifest(int slot, int batches) {
+            this.slot = slot;
+            this.batches = batches;
+        }
+    }
+
+    /**
+     * Пакет изменений. При применении сначала удаляются задачи removedIds, затем записываются задачи tasks
+     * (эпики - без подзадач), затем просмотренные задачи переносятся в конец истории
+     */
+    private static class ChangeBatch {
+        private List<Integer> removedIds;
+        private List<Task> tasks;
+        private List<Integer> viewedIds;
+    }
 
     public HTTPTaskManager(String source, boolean isSourceForReadData) {
-        super(source, isSourceForReadData);
+        this(source, isSourceForReadData, PersistenceMode.SNAPSHOT);
+    }
+
+    public HTTPTaskManager(String source, boolean isSourceForReadData, PersistenceMode persistenceMode) {
+        super(source, isSourceForReadData, persistenceMode);
     }
 
     @Override
     protected void init(String source, boolean isSourceForReadData) {
         client = new KVTaskClient(source);
         gson = Managers.getGson();
+        isDeltaSync = getPersistenceMode() != PersistenceMode.SNAPSHOT;
+        changedIds = new LinkedHashSet<>();
+        removedIds = new LinkedHashSet<>();
+        viewedIds = new LinkedHashSet<>();
+        if (!isDeltaSync) {
+            if (isSourceForReadData) {
+                load();
+            }
+            return;
+        }
+
+        Manifest manifest = loadManifest();
+        deltaSlot = (manifest != null) ? manifest.slot : 1; // первый снимок будет записан в слот 0
+        batchesCount = (manifest != null) ? manifest.batches : 0;
         if (isSourceForReadData) {
             load();
         }
+        if (!isSourceForReadData || manifest == null) {
+            // менеджер начинает работу с полным снимком, к которому будут применяться пакеты
+            isSnapshotRequired = true;
+            commitChanges(true);
+        }
+        if (getPersistenceMode() == PersistenceMode.GROUP_COMMIT) {
+            deltaSyncPersister = new GroupCommitPersister(this::commitChanges, DELTA_SYNC_DEFAULT_MAX_DELAY_MILLIS);
+        }
     }
 
+    /**
+     * В режиме SNAPSHOT передаёт на сервер все данные. В режиме WRITE_AHEAD_LOG передаёт пакет изменений,
+     * в режиме GROUP_COMMIT - запрашивает передачу пакета фоновым потоком
+     */
     @Override
     public void save() throws ManagerSaveException {
-        client.put("tasks", gson.toJson(tasks));
-        client.put("epics", gson.toJson(epics));
-        client.put("history", gson.toJson(getHistory().stream().map(Task::getId).toArray()));
+        if (!isDeltaSync) {
+            client.putAll(Map.of("tasks", gson.toJson(tasks), "epics", gson.toJson(epics),
+                    "history", gson.toJson(getHistoryIds())));
+        } else if (deltaSyncPersister != null) {
+            deltaSyncPersister.requestCommit();
+        } else {
+            commitChanges(true);
+        }
     }
 
     @Override
     public void load() {
-        prioritizedTasks.clear();
+        Manifest manifest = isDeltaSync ? loadManifest() : null;
+        if (manifest == null) { // данные, сохранённые в режиме SNAPSHOT
+            completeLoading(loadSnapshot(client.loadAll(List.of("tasks", "epics", "history"))));
+            return;
+        }
+        // снимок и пакеты загружаются одним запросом
+        List<String> keys = new ArrayList<>(List.of(getSlotKey(manifest.slot, "tasks"),
+                getSlotKey(manifest.slot, "epics"), getSlotKey(manifest.slot, "history")));
+        for (int i = 1; i <= manifest.batches; i++) {
+            keys.add(getBatchKey(manifest.slot, i));
+        }
+        List<String> values = client.loadAll(keys);
+        LinkedHashSet<Integer> history = new LinkedHashSet<>(loadSnapshot(values.subList(0, 3)));
+        for (String json : values.subList(3, values.size())) {
+            applyBatch(gson.fromJson(json, ChangeBatch.class), history);
+        }
+        completeLoading(history);
+    }
+
+    /**
+     * Передаёт на сервер полный снимок и сбрасывает накопленные пакеты изменений
+     */
+    @Override
+    public void compact() throws ManagerSaveException {
+        if (!isDeltaSync) {
+            super.compact();
+            return;
+        }
+        synchronized (this) {
+            isSnapshotRequired = true;
+            if (deltaSyncPersister == null) {
+                commitChanges(true);
+                return;
+            }
+        }
+        deltaSyncPersister.requestCommit();
+        deltaSyncPersister.flush();
+    }
 
+    /**
+     * Передаёт накопленные изменения; в режиме GROUP_COMMIT ожидает окончания передачи
+     */
+    @Override
+    public void flush() throws ManagerSaveException {
+        super.flush();
+        if (deltaSyncPersister != null) {
+            deltaSyncPersister.flush();
+        }
+    }
+
+    @Override
+    public void close() throws ManagerSaveException {
+        try {
+            super.close();
+        } finally {
+            if (deltaSyncPersister != null) {
+                deltaSyncPersister.close();
+            }
+        }
+    }
+
+    @Override
+    public void setGroupCommitMaxDelay(long maxDelayMillis) {
+        if (deltaSyncPersister != null) {
+            deltaSyncPersister.setMaxDelayMillis(maxDelayMillis);
+        }
+    }
+
+    /**
+     * Передаёт пакет накопленных изменений (или полный снимок, если он нужен) и обновляет manifest.
+     * Данные для передачи собираются под монитором менеджера, а сама передача выполняется без его захвата.
+     * В режиме GROUP_COMMIT метод вызывается только фоновым потоком, поэтому изменения менеджера во время
+     * передачи не ждут ответа сервера. В режиме WRITE_AHEAD_LOG метод вызывается из изменяющих методов, которые
+     * держат монитор, поэтому монитор удерживается и на время передачи: изменение считается сохранённым только
+     * после ответа сервера, а пакеты передаются по порядку
+     */
+    private void commitChanges(boolean isDurable) throws ManagerSaveException {
+        Map<String, String> values = new LinkedHashMap<>(); // ключи в порядке сохранения
+        int slot;
+        int batches;
+        synchronized (this) {
+            if (isSnapshotRequired || batchesCount >= MAX_BATCHES_COUNT) {
+                slot = 1 - deltaSlot;
+                batches = 0;
+                values.put(getSlotKey(slot, "tasks"), gson.toJson(tasks));
+                values.put(getSlotKey(slot, "epics"), gson.toJson(epics));
+                values.put(getSlotKey(slot, "history"), gson.toJson(getHistoryIds()));
+                clearChanges();
+                isSnapshotRequired = false;
+            } else if (!changedIds.isEmpty() || !removedIds.isEmpty() || !viewedIds.isEmpty()) {
+                slot = deltaSlot;
+                batches = batchesCount + 1;
+                values.put(getBatchKey(slot, batches), gson.toJson(takeChanges()));
+            } else {
+                return;
+            }
+        }
+        // manifest сохраняется последним, после данных, на которые он указывает
+        values.put(MANIFEST_KEY, gson.toJson(new Manifest(slot, batches)));
+        try {
+            client.putAll(values);
+        } catch (RuntimeException exception) {
+            synchronized (this) {
+                isSnapshotRequired = true; // изменения уже изъяты из пакета, их передаст следующий снимок
+            }
+            throw new ManagerSaveException("Ошибка передачи изменений на KV-сервер.", exception);
+        }
+        synchronized (this) {
+            deltaSlot = slot;
+            batchesCount = batches;
+        }
+    }
+
+    /**
+     * Формирует пакет из накопленных изменений и очищает их
+     */
+    private ChangeBatch takeChanges() {
+        ChangeBatch batch = new ChangeBatch();
+        batch.removedIds = new ArrayList<>(removedIds);
+        batch.tasks = new ArrayList<>();
+        for (int id : changedIds) {
+            if (tasks.containsKey(id)) {
+                batch.tasks.add(tasks.get(id));
+            } else if (subtasks.containsKey(id)) {
+                batch.tasks.add(subtasks.get(id));
+            } else if (epics.containsKey(id)) {
+                Epic epic = epics.get(id); // подзадачи эпика передаются отдельно
+                batch.tasks.add(new Epic(epic.getId(), epic.getName(), epic.getStatus(), epic.getDescription(),
+                        epic.getStartTime(), epic.getDuration(), epic.getEndTime()));
+            }
+        }
+        batch.viewedIds = viewedIds.stream().filter(this::containsTask).collect(Collectors.toList());
+        clearChanges();
+        return batch;
+    }
+
+    private void clearChanges() {
+        changedIds.clear();
+        removedIds.clear();
+        viewedIds.clear();
+    }
+
+    /**
+     * Заполняет задачи и эпики (вместе с их подзадачами) из снимка
+     *
+     * @param values значения ключей снимка tasks, epics и history
+     * @return id задач истории просмотров
+     */
+    private List<Integer> loadSnapshot(List<String> values) {
+        clearPrioritizedTasks();
         tasks.clear();
-        tasks.putAll(gson.fromJson(client.load("tasks"), new TypeToken<HashMap<Integer, Task>>() {
+        tasks.putAll(gson.fromJson(values.get(0), new TypeToken<HashMap<Integer, Task>>() {
         }.getType()));
-        prioritizedTasks.addAll(tasks.values());
-
         epics.clear();
-        epics.putAll(gson.fromJson(client.load("epics"), new TypeToken<HashMap<Integer, Epic>>() {
+        epics.putAll(gson.fromJson(values.get(1), new TypeToken<HashMap<Integer, Epic>>() {
         }.getType()));
-
         subtasks.clear();
         epics.values().stream().map(Epic::getSubtasksMap).forEach(subtasks::putAll);
-        prioritizedTasks.addAll(subtasks.values());
 
-        JsonParser.parseString(client.load("history")).getAsJsonArray()
-                .forEach(x -> addTaskToHistory(x.getAsInt()));
+        List<Integer> historyIds = new ArrayList<>();
+        JsonParser.parseString(values.get(2)).getAsJsonArray().forEach(x -> historyIds.add(x.getAsInt()));
+        return historyIds;
+    }
+
+    private void applyBatch(ChangeBatch batch, Set<Integer> history) {
+        for (int id : batch.removedIds) {
+            tasks.remove(id);
+            epics.remove(id);
+            subtasks.remove(id);
+            history.remove(id);
+        }
+        for (Task task : batch.tasks) {
+            if (task.getClass() == Epic.class) {
+                epics.put(task.getId(), (Epic) task);
+            } else if (task.getClass() == Subtask.class) {
+                subtasks.put(task.getId(), (Subtask) task);
+            } else {
+                tasks.put(task.getId(), task);
+            }
+        }
+        for (int id : batch.viewedIds) {
+            history.remove(id);
+            history.add(id);
+        }
+    }
+
+    /**
+     * Связывает подзадачи с эпиками (подзадачи удалённых эпиков отбрасываются), рассчитывает свойства эпиков,
+     * заполняет приоритезированный список и историю
+     */
+    private void completeLoading(Collection<Integer> historyIds) {
+        subtasks.values().removeIf(subtask -> !epics.containsKey(subtask.getEpicId()));
+        Map<Integer, Map<Integer, Subtask>> subtasksByEpicId = new HashMap<>();
+        subtasks.values().forEach(subtask -> subtasksByEpicId.computeIfAbsent(subtask.getEpicId(),
+                id -> new HashMap<>()).put(subtask.getId(), subtask));
+        epicAggregates.clear();
+        epics.replaceAll((id, epic) -> {
+            Map<Integer, Subtask> epicSubtasks = subtasksByEpicId.getOrDefault(id, new HashMap<>());
+            EpicAggregates aggregates = EpicAggregates.of(epicSubtasks.values());
+            epicAggregates.put(id, aggregates);
+            return aggregates.applyTo(epic, PersistentIntMap.of(epicSubtasks));
+        });
+
+        tasks.values().forEach(this::addToPrioritizedTasks);
+        subtasks.values().forEach(this::addToPrioritizedTasks);
+        historyIds.forEach(this::addTaskToHistory);
+
+        // очередной id - следующий за наибольшим из загруженных
+        nextTaskId = 1 + Math.max(tasks.isEmpty() ? 0 : tasks.lastKey(),
+                Math.max(epics.isEmpty() ? 0 : epics.lastKey(), subtasks.isEmpty() ? 0 : subtasks.lastKey()));
+    }
+
+    private Manifest loadManifest() {
+        String json = client.loadIfExists(MANIFEST_KEY);
+        return (json != null) ? gson.fromJson(json, Manifest.class) : null;
+    }
+
+    private List<Integer> getHistoryIds() {
+        return getHistory().stream().map(Task::getId).collect(Collectors.toList());
+    }
+
+    private boolean containsTask(int id) {
+        return tasks.containsKey(id) || epics.containsKey(id) || subtasks.containsKey(id);
+    }
+
+    private static String getSlotKey(int slot, String name) {
+        return "delta." + slot + "." + name;
+    }
+
+    private static String getBatchKey(int slot, int number) {
+        return getSlotKey(slot, "batch." + number);
+    }
+
+    // Изменения отмечаются до вызова родительского метода, который сохраняет их
+
+    private void markChanged(int id) {
+        if (isDeltaSync) {
+            changedIds.add(id);
+        }
+    }
+
+    private void markRemoved(Collection<Integer> ids) {
+        if (isDeltaSync) {
+            removedIds.addAll(ids);
+        }
+    }
+
+    private void markViewed(int id) {
+        if (isDeltaSync && containsTask(id)) {
+            viewedIds.remove(id);
+            viewedIds.add(id);
+        }
+    }
+
+    @Override
+    public synchronized void removeAllTasks() throws ManagerSaveException {
+        markRemoved(tasks.keySet());
+        super.removeAllTasks();
+    }
+
+    @Override
+    public synchronized void removeAllEpics() throws ManagerSaveException {
+        markRemoved(epics.keySet());
+        markRemoved(subtasks.keySet());
+        super.removeAllEpics();
+    }
+
+    @Override
+    public synchronized void removeAllSubtasks() throws ManagerSaveException {
+        markRemoved(subtasks.keySet());
+        super.removeAllSubtasks();
+    }
+
+    @Override
+    public synchronized int addTaskOfAnyType(Task task) throws ManagerSaveException {
+        if (task != null) {
+            markChanged((task.getId() == Task.DEFAULT_ID) ? nextTaskId : task.getId());
+        }
+        return super.addTaskOfAnyType(task);
+    }
+
+    @Override
+    public synchronized boolean replaceTask(Task task) throws ManagerSaveException {
+        if (task != null) {
+            markChanged(task.getId());
+        }
+        return super.replaceTask(task);
+    }
+
+    @Override
+    public synchronized boolean replaceEpic(Epic epic) throws ManagerSaveException {
+        if (epic != null) {
+            markChanged(epic.getId());
+        }
+        return super.replaceEpic(epic);
+    }
+
+    @Override
+    public synchronized boolean replaceSubtask(Subtask subtask) throws ManagerSaveException {
+        if (subtask != null) {
+            markChanged(subtask.getId());
+        }
+        return super.replaceSubtask(subtask);
+    }
+
+    @Override
+    public synchronized boolean removeTaskOfAnyTypeById(int id) throws ManagerSaveException {
+        if (epics.containsKey(id)) {
+            markRemoved(epics.get(id).getSubtasksMap().keySet());
+        }
+        markRemoved(List.of(id));
+        return super.removeTaskOfAnyTypeById(id);
+    }
+
+    @Override
+    public synchronized Task getTask(int id) throws ManagerSaveException {
+        markViewed(id);
+        return super.getTask(id);
+    }
+
+    @Override
+    public synchronized Epic getEpic(int id) throws ManagerSaveException {
+        markViewed(id);
+        return super.getEpic(id);
+    }
+
+    @Override
+    public synchronized Subtask getSubtask(int id) throws ManagerSaveException {
+        markViewed(id);
+        return super.getSubtask(id);
     }
 }
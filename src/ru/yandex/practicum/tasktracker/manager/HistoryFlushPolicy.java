@@ -0,0 +1,52 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+/**
+ * Правило сохранения истории просмотров: просмотр задачи изменяет только историю, поэтому запись на диск
+ * можно отложить до накопления заданного числа просмотров, истечения заданного интервала или закрытия менеджера.
+ * Интервал проверяется при очередном просмотре; накопленные просмотры в любом случае сохраняются вместе
+ * со следующим изменением задач или при закрытии менеджера
+ */
+public class HistoryFlushPolicy {
+    private final int viewsThreshold; // 0 - число просмотров не ограничено
+    private final long intervalMillis; // 0 - интервал не ограничен
+
+    private HistoryFlushPolicy(int viewsThreshold, long intervalMillis) {
+        this.viewsThreshold = Math.max(viewsThreshold, 0);
+        this.intervalMillis = Math.max(intervalMillis, 0);
+    }
+
+    /**
+     * История сохраняется после каждого просмотра
+     */
+    public static HistoryFlushPolicy everyView() {
+        return new HistoryFlushPolicy(1, 0);
+    }
+
+    /**
+     * История сохраняется после накопления заданного числа просмотров
+     */
+    public static HistoryFlushPolicy everyViews(int viewsCount) {
+        return new HistoryFlushPolicy(Math.max(viewsCount, 1), 0);
+    }
+
+    /**
+     * История сохраняется не чаще, чем один раз за заданный интервал
+     */
+    public static HistoryFlushPolicy everyMillis(long intervalMillis) {
+        return new HistoryFlushPolicy(0, Math.max(intervalMillis, 1));
+    }
+
+    /**
+     * История сохраняется только вместе с изменениями задач и при закрытии менеджера
+     */
+    public static HistoryFlushPolicy onShutdown() {
+        return new HistoryFlushPolicy(0, 0);
+    }
+
+    boolean shouldFlush(int pendingViewsCount, long millisSinceLastFlush) {
+        if (viewsThreshold > 0 && pendingViewsCount >= viewsThreshold) {
+            return true;
+        }
+        return intervalMillis > 0 && millisSinceLastFlush >= intervalMillis;
+    }
+}
@@ -2,26 +2,56 @@ package ru.yandex.practicum.tasktracker.manager;
 
 import ru.yandex.practicum.tasktracker.model.*;
 
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
+/**
+ * Менеджер задач, хранящий данные в памяти. Объекты задач и эпиков не изменяются: при изменении подзадач эпик
+ * создаётся заново с новыми рассчитанными свойствами и заменяется целиком, поэтому эпики, уже возвращённые
+ * клиентам или хранящиеся в истории просмотров, не меняются. Таблица подзадач эпика неизменяемая
+ * ({@link PersistentIntMap}): новая таблица отличается от прежней несколькими узлами и создаётся за O(log n)
+ * без копирования подзадач эпика
+ */
 public class InMemoryTaskManager implements TaskManager {
+    private static final int MAX_PAGE_PREALLOCATION = 1024;
+    protected static final Comparator<Task> PRIORITY_COMPARATOR = Comparator.comparing(
+            Task::getStartTime,
+            Comparator.nullsLast(Comparator.naturalOrder())
+    ).thenComparing(Task::getId);
+
     protected int nextTaskId; // очередной (ещё не присвоенный) id задачи
-    final protected Map<Integer, Task> tasks;
-    final protected Map<Integer, Epic> epics;
-    final protected Map<Integer, Subtask> subtasks;
-    final protected TreeSet<Task> prioritizedTasks;
+    // Таблицы упорядочены по id, чтобы постраничная выдача продолжалась с места курсора без обхода предыдущих
+    final protected NavigableMap<Integer, Task> tasks;
+    final protected NavigableMap<Integer, Epic> epics;
+    final protected NavigableMap<Integer, Subtask> subtasks;
+    final protected NavigableSet<Task> prioritizedTasks;
     final protected HistoryManager historyManager;
+    // Накопленные свойства эпиков (создаются при первом изменении подзадач эпика)
+    final protected Map<Integer, EpicAggregates> epicAggregates;
+    // Индекс интервалов времени задач из списка приоритетов (для проверки пересечений и запросов по времени)
+    final protected TaskIntervalIndex intervalIndex;
 
     public InMemoryTaskManager() {
+        this(new TreeMap<>(), new TreeMap<>(), new TreeMap<>(), new TreeSet<>(PRIORITY_COMPARATOR),
+                Managers.getDefaultHistory(), new HashMap<>());
+    }
+
+    /**
+     * Конструктор для наследников, которым нужны другие реализации коллекций (например, потокобезопасные)
+     */
+    protected InMemoryTaskManager(NavigableMap<Integer, Task> tasks, NavigableMap<Integer, Epic> epics,
+                                  NavigableMap<Integer, Subtask> subtasks, NavigableSet<Task> prioritizedTasks,
+                                  HistoryManager historyManager, Map<Integer, EpicAggregates> epicAggregates) {
         nextTaskId = 1; // нумерация задач будет начинаться с 1
-        tasks = new HashMap<>();
-        epics = new HashMap<>();
-        subtasks = new HashMap<>();
-        prioritizedTasks = new TreeSet<>(Comparator.comparing(
-                Task::getStartTime,
-                Comparator.nullsLast(Comparator.naturalOrder())
-        ).thenComparing(Task::getId));
-        historyManager = Managers.getDefaultHistory();
+        this.tasks = tasks;
+        this.epics = epics;
+        this.subtasks = subtasks;
+        this.prioritizedTasks = prioritizedTasks;
+        this.historyManager = historyManager;
+        this.epicAggregates = epicAggregates;
+        this.intervalIndex = new TaskIntervalIndex();
     }
 
     /**
@@ -85,6 +115,7 @@ public class InMemoryTaskManager implements TaskManager {
         removeAnyTypeTaskCollectionFromPrioritizedTasks(subtasks.values());
         subtasks.clear();
         epics.clear();
+        epicAggregates.clear();
     }
 
     /**
@@ -92,17 +123,14 @@ public class InMemoryTaskManager implements TaskManager {
      */
     @Override
     public void removeAllSubtasks() {
-        for (Epic epic : epics.values()) {
-            epic.getSubtasksMap().clear();
-            Epic updatedEpic = EpicPropertiesHelper.calculateAndSet(epic);
-            epics.replace(updatedEpic.getId(), updatedEpic);
-        }
+        epicAggregates.clear();
+        epics.replaceAll((id, epic) -> new EpicAggregates().applyTo(epic, PersistentIntMap.empty()));
         removeTasksFromHistoryByIDSet(subtasks.keySet()); // удаление всех подзадач из истории просмотров
         removeAnyTypeTaskCollectionFromPrioritizedTasks(subtasks.values());
         subtasks.clear();
     }
 
-    private void removeTasksFromHistoryByIDSet(Set<Integer> idSet) {
+    protected void removeTasksFromHistoryByIDSet(Set<Integer> idSet) {
         for (Integer id : idSet) {
             historyManager.remove(id);
         }
@@ -162,9 +190,10 @@ public class InMemoryTaskManager implements TaskManager {
 
         if (task.getClass() == Epic.class) {
             Epic epic = (Epic) task;
-            epic = EpicPropertiesHelper.calculateAndSet(epic);
-            epic.getSubtasksMap().clear(); // очищается таблица подзадач, сформированный в обход менеджера
-            epics.put(epic.getId(), epic);
+            // таблица подзадач, сформированная в обход менеджера, не переносится
+            EpicAggregates aggregates = new EpicAggregates();
+            epics.put(epic.getId(), aggregates.applyTo(epic, PersistentIntMap.empty()));
+            epicAggregates.put(epic.getId(), aggregates);
         } else if (task.getClass() == Subtask.class) {
             Subtask subtask = (Subtask) task;
             Epic epic = epics.get(subtask.getEpicId());
@@ -177,17 +206,17 @@ public class InMemoryTaskManager implements TaskManager {
             if (isTaskTimeOverlappingAnother(subtask)) {
                 return 0;
             }
+            EpicAggregates aggregates = getEpicAggregates(epic);
             subtasks.put(subtask.getId(), subtask);
-            prioritizedTasks.add(subtask);
-            epic.getSubtasksMap().put(subtask.getId(), subtask);
-            Epic updatedEpic = EpicPropertiesHelper.calculateAndSet(epic);
-            epics.replace(updatedEpic.getId(), updatedEpic);
+            addToPrioritizedTasks(subtask);
+            aggregates.add(subtask);
+            epics.replace(epic.getId(), aggregates.applyTo(epic, getSubtasksMap(epic).with(subtask.getId(), subtask)));
         } else {
             if (isTaskTimeOverlappingAnother(task)) {
                 return 0;
             }
             tasks.put(task.getId(), task);
-            prioritizedTasks.add(task);
+            addToPrioritizedTasks(task);
         }
         return task.getId();
     }
@@ -211,14 +240,15 @@ public class InMemoryTaskManager implements TaskManager {
         }
         Task originTask = tasks.get(task.getId());
         tasks.replace(task.getId(), task);
-        prioritizedTasks.remove(originTask);
-        prioritizedTasks.add(task);
+        removeFromPrioritizedTasks(originTask);
+        addToPrioritizedTasks(task);
         return true;
     }
 
     /**
-     * Заменяет эпик, если новый эпик не null, и если он передаётся с id существующего эпика (подзадачи эпика
-     * при этом сохраняются)
+     * Заменяет эпик, если новый эпик не null, и если он передаётся с id существующего эпика. Из переданного эпика
+     * берутся только имя и описание: подзадачи эпика сохраняются, а статус и время рассчитываются по подзадачам.
+     * Переданный объект не изменяется
      *
      * @param epic объект Epic
      * @return true, если эпик добавлен, false, если нет
@@ -226,10 +256,8 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public boolean replaceEpic(Epic epic) {
         if (epic != null && epics.containsKey(epic.getId())) {
-            epic.getSubtasksMap().clear();
-            epic.getSubtasksMap().putAll(epics.get(epic.getId()).getSubtasksMap());
-            epics.replace(epic.getId(), epic);
-
+            Epic originEpic = epics.get(epic.getId());
+            epics.replace(epic.getId(), getEpicAggregates(originEpic).applyTo(epic, getSubtasksMap(originEpic)));
             return true;
         } else {
             return false;
@@ -257,13 +285,14 @@ public class InMemoryTaskManager implements TaskManager {
         if (isTaskTimeOverlappingAnother(subtask)) {
             return false;
         }
+        EpicAggregates aggregates = getEpicAggregates(epic);
         Subtask originSubtask = subtasks.get(subtask.getId());
         subtasks.replace(subtask.getId(), subtask); // замена в таблице подзадач
-        epic.getSubtasksMap().replace(subtask.getId(), subtask); // замена в таблице подзадач эпика
-        prioritizedTasks.remove(originSubtask);
-        prioritizedTasks.add(subtask);
-        Epic updatedEpic = EpicPropertiesHelper.calculateAndSet(epic);
-        epics.replace(updatedEpic.getId(), updatedEpic);
+        removeFromPrioritizedTasks(originSubtask);
+        addToPrioritizedTasks(subtask);
+        aggregates.replace(originSubtask, subtask);
+        // замена в таблице подзадач эпика
+        epics.replace(epic.getId(), aggregates.applyTo(epic, getSubtasksMap(epic).with(subtask.getId(), subtask)));
         return true;
     }
 
@@ -275,7 +304,7 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public boolean removeTaskOfAnyTypeById(int id) {
         if (tasks.containsKey(id)) {
-            prioritizedTasks.remove(tasks.get(id));
+            removeFromPrioritizedTasks(tasks.get(id));
             historyManager.remove(id);
             tasks.remove(id);
             return true;
@@ -285,21 +314,22 @@ public class InMemoryTaskManager implements TaskManager {
             removeTasksFromHistoryByIDSet(epics.get(id).getSubtasksMap().keySet());
             // удаление всех подзадач эпика из таблицы подзадач
             for (Integer subtaskId : epics.get(id).getSubtasksMap().keySet()) {
-                prioritizedTasks.remove(subtasks.get(subtaskId));
+                removeFromPrioritizedTasks(subtasks.get(subtaskId));
                 subtasks.remove(subtaskId);
             }
             historyManager.remove(id);
             epics.remove(id); // удаление эпика
+            epicAggregates.remove(id);
             return true;
         }
         if (subtasks.containsKey(id)) {
             Epic epic = epics.get(subtasks.get(id).getEpicId());
-            epic.getSubtasksMap().remove(id); // удаление подзадачи из таблицы подзадач эпика
-            prioritizedTasks.remove(subtasks.get(id));
+            EpicAggregates aggregates = getEpicAggregates(epic);
+            removeFromPrioritizedTasks(subtasks.get(id));
             historyManager.remove(id);
-            subtasks.remove(id); // удаление подзадачи из таблицы подзадач
-            Epic updatedEpic = EpicPropertiesHelper.calculateAndSet(epic);
-            epics.replace(updatedEpic.getId(), updatedEpic);
+            aggregates.remove(subtasks.remove(id)); // удаление подзадачи из таблицы подзадач
+            // удаление подзадачи из таблицы подзадач эпика
+            epics.replace(epic.getId(), aggregates.applyTo(epic, getSubtasksMap(epic).without(id)));
             return true;
         }
         return false;
@@ -318,48 +348,244 @@ public class InMemoryTaskManager implements TaskManager {
         return new ArrayList<>(prioritizedTasks);
     }
 
-    protected <T extends Task> T getAnyTypeTask(int id, Map<Integer, T> tasks) {
-        T task = tasks.getOrDefault(id, null);
-        if (task != null) {
-            historyManager.add(task);
+    /**
+     * Возвращает страницу задач в порядке id. Курсор - id последней задачи предыдущей страницы (null - первая
+     * страница), поэтому выдача не сбивается при добавлении и удалении задач между запросами
+     *
+     * @throws IllegalArgumentException если курсор некорректен или limit меньше 1
+     */
+    @Override
+    public TasksPage<Task> getTasksPage(String cursor, int limit) {
+        return getPageById(tasks, cursor, limit);
+    }
+
+    /**
+     * Возвращает страницу эпиков в порядке id (курсор - как в getTasksPage)
+     */
+    @Override
+    public TasksPage<Epic> getEpicsPage(String cursor, int limit) {
+        return getPageById(epics, cursor, limit);
+    }
+
+    /**
+     * Возвращает страницу подзадач в порядке id (курсор - как в getTasksPage)
+     */
+    @Override
+    public TasksPage<Subtask> getSubtasksPage(String cursor, int limit) {
+        return getPageById(subtasks, cursor, limit);
+    }
+
+    /**
+     * Возвращает страницу списка приоритетов. Курсор - время начала и id последней задачи предыдущей страницы
+     * через запятую (например, "2022-06-01T10:30,5"; для задачи без времени начала - ",7"), null - первая страница
+     *
+     * @throws IllegalArgumentException если курсор некорректен или limit меньше 1
+     */
+    @Override
+    public TasksPage<Task> getPrioritizedTasksPage(String cursor, int limit) {
+        checkPageLimit(limit);
+        Collection<Task> tail = prioritizedTasks;
+        if (cursor != null) {
+            int separatorIndex = cursor.lastIndexOf(',');
+            if (separatorIndex < 0) {
+                throw new IllegalArgumentException("Некорректный курсор: " + cursor);
+            }
+            try {
+                LocalDateTime startTime = (separatorIndex > 0)
+                        ? LocalDateTime.parse(cursor.substring(0, separatorIndex)) : null;
+                int id = Integer.parseInt(cursor.substring(separatorIndex + 1));
+                tail = prioritizedTasks.tailSet(new Task(id, null, null, null, startTime, 0), false);
+            } catch (DateTimeParseException exception) {
+                throw new IllegalArgumentException("Некорректный курсор: " + cursor, exception);
+            }
         }
-        return task;
+        List<Task> items = takePage(tail, limit);
+        String nextCursor = null;
+        if (items.size() > limit) {
+            items.remove(limit);
+            Task lastTask = items.get(limit - 1);
+            nextCursor = ((lastTask.getStartTime() != null) ? lastTask.getStartTime().toString() : "")
+                    + "," + lastTask.getId();
+        }
+        return new TasksPage<>(items, nextCursor);
+    }
+
+    /**
+     * Возвращает задачи и подзадачи, пересекающиеся по времени с интервалом [from, to), в порядке времени начала.
+     * Граница интервала, равная null, означает отсутствие ограничения с этой стороны
+     */
+    @Override
+    public List<Task> getTasksInRange(LocalDateTime from, LocalDateTime to) {
+        return intervalIndex.findOverlapping((from != null) ? from : LocalDateTime.MIN,
+                (to != null) ? to : LocalDateTime.MAX);
     }
 
-    private <T extends Task> void removeAnyTypeTaskCollectionFromPrioritizedTasks(Collection<T> tasks) {
+    /**
+     * Ищет свободные от задач и подзадач интервалы внутри [from, to) продолжительностью не менее minDuration минут.
+     * Просматриваются только задачи, пересекающиеся с [from, to), и поиск прекращается после limit найденных
+     * интервалов. Задача нулевой продолжительности делит свободный интервал на два
+     *
+     * @return свободные интервалы в порядке времени начала (пустой список при некорректных параметрах)
+     */
+    @Override
+    public List<TimeSlot> findFreeSlots(LocalDateTime from, LocalDateTime to, int minDuration, int limit) {
+        List<TimeSlot> slots = new ArrayList<>();
+        if (from == null || to == null || !from.isBefore(to) || limit <= 0) {
+            return slots;
+        }
+        LocalDateTime[] freeFrom = {from}; // начало текущего свободного интервала
+        intervalIndex.forEachOverlapping(from, to, task -> {
+            addFreeSlot(slots, freeFrom[0], task.getStartTime(), minDuration);
+            if (task.getEndTime().isAfter(freeFrom[0])) {
+                freeFrom[0] = task.getEndTime();
+            }
+            return slots.size() < limit;
+        });
+        if (slots.size() < limit) {
+            addFreeSlot(slots, freeFrom[0], to, minDuration);
+        }
+        return slots;
+    }
+
+    /**
+     * Размещает задачи и подзадачи без времени начала в самое раннее свободное время внутри [from, to) и добавляет
+     * их в менеджер. Расписание интервала читается из индекса один раз, размещение выполняется планировщиком
+     * TaskScheduler без повторных попыток добавления. Подзадачи несуществующих эпиков пропускаются
+     *
+     * @param workdayStart начало рабочего времени (null - задачи размещаются в любое время суток)
+     * @param workdayEnd   конец рабочего времени
+     * @return добавленные задачи с назначенным временем начала
+     */
+    @Override
+    public List<Task> scheduleTasks(List<? extends Task> tasks, LocalDateTime from, LocalDateTime to,
+                                    LocalTime workdayStart, LocalTime workdayEnd) {
+        List<Task> scheduledTasks = new ArrayList<>();
+        if (tasks == null || from == null || to == null || !from.isBefore(to)) {
+            return scheduledTasks;
+        }
+        List<Task> candidates = new ArrayList<>();
         for (Task task : tasks) {
-            prioritizedTasks.remove(task);
+            if (task != null && (task.getClass() == Task.class
+                    || (task.getClass() == Subtask.class && epics.containsKey(((Subtask) task).getEpicId())))) {
+                candidates.add(task);
+            }
         }
+        TaskScheduler scheduler = new TaskScheduler(getTasksInRange(from, to), from, to, workdayStart, workdayEnd);
+        for (Task task : scheduler.plan(candidates)) {
+            int id = addTaskOfAnyType(task);
+            if (id != 0) {
+                scheduledTasks.add(this.tasks.containsKey(id) ? this.tasks.get(id) : subtasks.get(id));
+            }
+        }
+        return scheduledTasks;
     }
 
-    protected boolean isTaskTimeOverlappingAnother(Task task) {
-        if (task.getStartTime() == null) {
-            return false;
+    private static <T extends Task> TasksPage<T> getPageById(NavigableMap<Integer, T> tasks, String cursor,
+                                                             int limit) {
+        checkPageLimit(limit);
+        Map<Integer, T> tail = tasks;
+        if (cursor != null) {
+            tail = tasks.tailMap(Integer.parseInt(cursor), false); // NumberFormatException - IllegalArgumentException
+        }
+        List<T> items = takePage(tail.values(), limit);
+        String nextCursor = null;
+        if (items.size() > limit) {
+            items.remove(limit);
+            nextCursor = String.valueOf(items.get(limit - 1).getId());
         }
+        return new TasksPage<>(items, nextCursor);
+    }
 
-        Task floorPriorityTask = prioritizedTasks.floor(task);
-        if (floorPriorityTask != null && floorPriorityTask.getId() == task.getId()) {
-            floorPriorityTask = prioritizedTasks.lower(floorPriorityTask);
+    /**
+     * Возвращает первые limit + 1 элементов коллекции (лишний элемент показывает, что есть следующая страница)
+     */
+    private static <T> List<T> takePage(Collection<T> tail, int limit) {
+        List<T> items = new ArrayList<>(Math.min(limit, MAX_PAGE_PREALLOCATION) + 1);
+        Iterator<T> iterator = tail.iterator();
+        while (items.size() <= limit && iterator.hasNext()) {
+            items.add(iterator.next());
         }
+        return items;
+    }
 
-        Task ceilingPriorityTask = prioritizedTasks.ceiling(task);
-        if (ceilingPriorityTask != null && ceilingPriorityTask.getId() == task.getId()) {
-            ceilingPriorityTask = prioritizedTasks.higher(ceilingPriorityTask);
+    private static void checkPageLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Размер страницы должен быть больше 0: " + limit);
         }
+    }
 
-        if (floorPriorityTask != null
-                && floorPriorityTask.getEndTime().isAfter(task.getStartTime())
-        ) {
-            return true;
+    private static void addFreeSlot(List<TimeSlot> slots, LocalDateTime start, LocalDateTime end, int minDuration) {
+        if (start.isBefore(end) && !start.plusMinutes(Math.max(minDuration, 0)).isAfter(end)) {
+            slots.add(new TimeSlot(start, end));
         }
+    }
 
-        if (ceilingPriorityTask != null
-                && ceilingPriorityTask.getStartTime() != null
-                && ceilingPriorityTask.getStartTime().isBefore(task.getEndTime())
-        ) {
-            return true;
+    /**
+     * Проверяет свойства всех эпиков полным пересчётом по подзадачам. В обычной работе свойства эпиков
+     * обновляются по накопленным значениям, а этот метод служит для проверки (в тестах и при отладке)
+     *
+     * @return true, если свойства всех эпиков совпадают с рассчитанными заново
+     */
+    public boolean verifyEpics() {
+        for (Epic epic : epics.values()) {
+            Epic recalculatedEpic = EpicPropertiesHelper.calculateAndSet(epic);
+            if (recalculatedEpic.getStatus() != epic.getStatus()
+                    || recalculatedEpic.getDuration() != epic.getDuration()
+                    || !Objects.equals(recalculatedEpic.getStartTime(), epic.getStartTime())
+                    || !Objects.equals(recalculatedEpic.getEndTime(), epic.getEndTime())) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        return false;
+    /**
+     * Возвращает накопленные свойства эпика, при отсутствии создаёт их по текущим подзадачам эпика (например,
+     * после загрузки данных). Вызывается до изменения таблицы подзадач эпика
+     */
+    protected EpicAggregates getEpicAggregates(Epic epic) {
+        return epicAggregates.computeIfAbsent(epic.getId(),
+                id -> EpicAggregates.of(epic.getSubtasksMap().values()));
+    }
+
+    /**
+     * Возвращает неизменяемую таблицу подзадач эпика. Эпики менеджера хранят таблицы PersistentIntMap,
+     * поэтому копирование выполняется, только если эпик помещён в менеджер в обход его методов
+     */
+    protected static PersistentIntMap<Subtask> getSubtasksMap(Epic epic) {
+        return PersistentIntMap.of(epic.getSubtasksMap());
+    }
+
+    protected <T extends Task> T getAnyTypeTask(int id, Map<Integer, T> tasks) {
+        T task = tasks.getOrDefault(id, null);
+        if (task != null) {
+            historyManager.add(task);
+        }
+        return task;
+    }
+
+    protected <T extends Task> void removeAnyTypeTaskCollectionFromPrioritizedTasks(Collection<T> tasks) {
+        for (Task task : tasks) {
+            removeFromPrioritizedTasks(task);
+        }
+    }
+
+    protected void addToPrioritizedTasks(Task task) {
+        prioritizedTasks.add(task);
+        intervalIndex.add(task);
+    }
+
+    protected void removeFromPrioritizedTasks(Task task) {
+        prioritizedTasks.remove(task);
+        intervalIndex.remove(task);
+    }
+
+    protected void clearPrioritizedTasks() {
+        prioritizedTasks.clear();
+        intervalIndex.clear();
+    }
+
+    protected boolean isTaskTimeOverlappingAnother(Task task) {
+        return intervalIndex.isOverlappingAnother(task);
     }
-}
\ No newline at end of file
+}
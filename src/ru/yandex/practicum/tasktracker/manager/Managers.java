@@ -3,6 +3,7 @@ package ru.yandex.practicum.tasktracker.manager;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import ru.yandex.practicum.tasktracker.server.LocalDateTimeAdapter;
+import ru.yandex.practicum.tasktracker.server.TaskTypeAdapterFactory;
 
 import java.time.LocalDateTime;
 
@@ -14,14 +15,27 @@ public class Managers {
         return new HTTPTaskManager(DEFAULT_URL, false);
     }
 
+    /**
+     * Возвращает менеджер, сохраняющий данные в файл выбранным способом и в выбранном формате снимка
+     */
+    public static FileBackedTaskManager getFileBacked(String source, boolean isSourceForReadData,
+                                                      FileBackedTaskManager.PersistenceMode persistenceMode,
+                                                      FileBackedTaskManager.SnapshotFormat snapshotFormat) {
+        return new FileBackedTaskManager(source, isSourceForReadData, persistenceMode, snapshotFormat);
+    }
+
     public static HistoryManager getDefaultHistory() {
         return new InMemoryHistoryManager();
     }
 
+    /**
+     * Возвращает Gson с потоковыми адаптерами для задач всех типов и даты и времени
+     */
     public static Gson getGson() {
         GsonBuilder gsonBuilder = new GsonBuilder()
                 .serializeNulls()
-                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter());
+                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+                .registerTypeAdapterFactory(new TaskTypeAdapterFactory());
         return gsonBuilder.create();
     }
 }
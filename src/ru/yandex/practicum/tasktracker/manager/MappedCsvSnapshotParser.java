@@ -0,0 +1,266 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import ru.yandex.practicum.tasktracker.exeption.ManagerLoadException;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32;
+
+/**
+ * Разбор файла снимка формата csv, отображённого в память. Область задач делится на части по границам строк,
+ * каждая часть отображается отдельно (поэтому размер файла не ограничен размером одного отображения), части
+ * разбираются задачами пула fork-join, а контрольная сумма считается одновременно с разбором.
+ * Порядок записей в файле не важен: подзадачи связываются с эпиками уже после разбора
+ */
+public class MappedCsvSnapshotParser {
+    private static final int MIN_CHUNK_SIZE = 256 * 1024; // более мелкие части не окупают запуск в отдельном потоке
+    private static final int MAX_CHUNK_SIZE = 256 * 1024 * 1024;
+    private static final int BOUNDARY_SEARCH_BUFFER_SIZE = 4096;
+
+    /**
+     * Результат разбора: задачи в порядке записи в файле и строка истории просмотров (null - строки нет)
+     */
+    public static class ParsedSnapshot {
+        private final List<Task> tasks;
+        private final String historyLine;
+        private final boolean isChecksumVerified;
+
+        private ParsedSnapshot(List<Task> tasks, String historyLine, boolean isChecksumVerified) {
+            this.tasks = tasks;
+            this.historyLine = historyLine;
+            this.isChecksumVerified = isChecksumVerified;
+        }
+
+        public List<Task> getTasks() {
+            return tasks;
+        }
+
+        public String getHistoryLine() {
+            return historyLine;
+        }
+
+        public boolean isChecksumVerified() {
+            return isChecksumVerified;
+        }
+    }
+
+    /**
+     * Результат разбора одной части: задачи до конца части, пустой строки (конец списка задач) или ошибки
+     */
+    private static class ChunkResult {
+        private final List<Task> tasks = new ArrayList<>();
+        private long emptyLinePosition = -1;
+        private ManagerLoadException error;
+    }
+
+    /**
+     * Задача разбора частей с номерами [from, to): диапазон делится пополам, пока не останется одна часть
+     */
+    private static class ChunksParseTask extends RecursiveTask<List<ChunkResult>> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long[] boundaries;
+        private final int from;
+        private final int to;
+
+        ChunksParseTask(FileChannel channel, long[] boundaries, int from, int to) {
+            this.channel = channel;
+            this.boundaries = boundaries;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<ChunkResult> compute() {
+            if (to - from == 1) {
+                List<ChunkResult> results = new ArrayList<>();
+                results.add(parseChunk(channel, boundaries[from], boundaries[to]));
+                return results;
+            }
+            int middle = (from + to) >>> 1;
+            ChunksParseTask right = new ChunksParseTask(channel, boundaries, middle, to);
+            right.fork();
+            List<ChunkResult> results = new ChunksParseTask(channel, boundaries, from, middle).compute();
+            results.addAll(right.join());
+            return results;
+        }
+    }
+
+    /**
+     * Разбирает файл снимка. Количество частей определяется уровнем параллелизма пула
+     *
+     * @throws ManagerLoadException если в данных задач есть ошибка или не совпала контрольная сумма
+     */
+    public static ParsedSnapshot parse(Path path, String checksumPrefix, ForkJoinPool pool)
+            throws IOException, ManagerLoadException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            CsvSnapshotReader.ChecksumTrailer trailer = CsvSnapshotReader.readChecksumTrailer(channel, checksumPrefix);
+            long dataLength = trailer.getDataLength();
+            boolean isChecksumPresent = trailer.getExpectedChecksum() != null;
+            ForkJoinTask<String> checksumTask = null;
+            if (isChecksumPresent) {
+                checksumTask = pool.submit(() -> checksum(channel, dataLength));
+            }
+
+            long tasksStart = findLineEnd(channel, 0, dataLength) + 1; // первая строка - заголовок
+            if (tasksStart > dataLength) {
+                throw new ManagerLoadException("Файл не содержит данных задач.");
+            }
+
+            long[] boundaries = splitIntoChunks(channel, tasksStart, dataLength, pool.getParallelism());
+            List<ChunkResult> results = pool.invoke(new ChunksParseTask(channel, boundaries, 0, boundaries.length - 1));
+
+            if (checksumTask != null && !trailer.getExpectedChecksum().equals(checksumTask.join())) {
+                throw new ManagerLoadException("Контрольная сумма файла не совпадает.");
+            }
+
+            // Части объединяются по порядку до первой пустой строки, после которой идёт строка истории
+            List<Task> tasks = new ArrayList<>();
+            for (ChunkResult result : results) {
+                tasks.addAll(result.tasks);
+                if (result.error != null) {
+                    throw result.error;
+                }
+                if (result.emptyLinePosition >= 0) {
+                    String historyLine = readHistoryLine(channel, result.emptyLinePosition + 1, dataLength);
+                    return new ParsedSnapshot(tasks, historyLine, isChecksumPresent);
+                }
+            }
+            return new ParsedSnapshot(tasks, null, isChecksumPresent);
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) exception.getCause()).getCause();
+            }
+            throw exception;
+        }
+    }
+
+    /**
+     * Делит область [start, end) на части, каждая из которых начинается с начала строки
+     */
+    private static long[] splitIntoChunks(FileChannel channel, long start, long end, int parallelism)
+            throws IOException {
+        long length = end - start;
+        int chunksCount = (int) Math.max(1, Math.min(parallelism, length / MIN_CHUNK_SIZE));
+        chunksCount = (int) Math.max(chunksCount, (length + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(start);
+        for (int i = 1; i < chunksCount; i++) {
+            long boundary = findLineEnd(channel, start + length * i / chunksCount, end) + 1;
+            if (boundary < end && boundary > boundaries.get(boundaries.size() - 1)) {
+                boundaries.add(boundary);
+            }
+        }
+        boundaries.add(end);
+        return boundaries.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Возвращает позицию символа перевода строки, начиная с заданной позиции (или end, если его нет)
+     */
+    private static long findLineEnd(FileChannel channel, long position, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_SEARCH_BUFFER_SIZE);
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int count = channel.read(buffer, position);
+            if (count <= 0) {
+                break;
+            }
+            for (int i = 0; i < count; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i;
+                }
+            }
+            position += count;
+        }
+        return end;
+    }
+
+    private static ChunkResult parseChunk(FileChannel channel, long start, long end) {
+        ChunkResult result = new ChunkResult();
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        byte[] lineBytes = new byte[256];
+        int lineStart = 0;
+        int limit = buffer.limit();
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int length = lineEnd - lineStart;
+            if (length > 0 && buffer.get(lineEnd - 1) == '\r') {
+                length--;
+            }
+            if (length == 0) {
+                result.emptyLinePosition = start + lineEnd;
+                return result;
+            }
+            if (length > lineBytes.length) {
+                lineBytes = new byte[Math.max(length, lineBytes.length * 2)];
+            }
+            buffer.position(lineStart);
+            buffer.get(lineBytes, 0, length);
+            String line = new String(lineBytes, 0, length, StandardCharsets.UTF_8);
+            try {
+                result.tasks.add(FileBackedTaskManager.parseTask(line));
+            } catch (ManagerLoadException exception) {
+                result.error = exception;
+                return result;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return result;
+    }
+
+    private static String readHistoryLine(FileChannel channel, long start, long end) throws IOException {
+        if (start >= end) {
+            return null;
+        }
+        long lineEnd = findLineEnd(channel, start, end);
+        ByteBuffer buffer = ByteBuffer.allocate((int) (lineEnd - start));
+        while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) > 0) {
+            // дочитываем строку истории
+        }
+        String line = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    /**
+     * Считает контрольную сумму первых length байтов файла по отображённым в память частям
+     */
+    private static String checksum(FileChannel channel, long length) {
+        CRC32 crc32 = new CRC32();
+        try {
+            for (long position = 0; position < length; position += MAX_CHUNK_SIZE) {
+                crc32.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAX_CHUNK_SIZE, length - position)));
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        return Long.toHexString(crc32.getValue());
+    }
+}
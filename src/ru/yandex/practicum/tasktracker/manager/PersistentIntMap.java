@@ -0,0 +1,219 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import java.util.*;
+
+/**
+ * Неизменяемая таблица с ключами int (сбалансированное AVL-дерево). Методы with и without возвращают новую таблицу
+ * за O(log n): копируются только узлы на пути к ключу, остальные узлы общие со старой таблицей, поэтому старая
+ * таблица остаётся прежней и её можно читать без блокировок. Элементы обходятся в порядке возрастания ключей
+ */
+public final class PersistentIntMap<V> extends AbstractMap<Integer, V> {
+    private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(null);
+
+    private final TreeNode<V> root;
+
+    private static final class TreeNode<V> {
+        private final int key;
+        private final V value;
+        private final TreeNode<V> left;
+        private final TreeNode<V> right;
+        private final int height;
+        private final int size;
+
+        private TreeNode(int key, V value, TreeNode<V> left, TreeNode<V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            height = 1 + Math.max(height(left), height(right));
+            size = 1 + size(left) + size(right);
+        }
+    }
+
+    private PersistentIntMap(TreeNode<V> root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    /**
+     * Возвращает таблицу с теми же элементами, что и переданная. Неизменяемая таблица возвращается как есть,
+     * остальные копируются за O(n log n) (сортировка ключей), дерево строится сразу сбалансированным
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentIntMap<V> of(Map<Integer, V> map) {
+        if (map instanceof PersistentIntMap) {
+            return (PersistentIntMap<V>) map;
+        }
+        Entry<Integer, V>[] entries = map.entrySet().toArray(new Entry[0]);
+        Arrays.sort(entries, Comparator.comparingInt(Entry::getKey));
+        return entries.length == 0 ? empty() : new PersistentIntMap<>(build(entries, 0, entries.length));
+    }
+
+    /**
+     * Возвращает таблицу, в которой ключу key соответствует value
+     */
+    public PersistentIntMap<V> with(int key, V value) {
+        return new PersistentIntMap<>(put(root, key, value));
+    }
+
+    /**
+     * Возвращает таблицу без ключа key (или эту же таблицу, если ключа в ней нет)
+     */
+    public PersistentIntMap<V> without(int key) {
+        TreeNode<V> newRoot = remove(root, key);
+        return (newRoot == root) ? this : new PersistentIntMap<>(newRoot);
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return (key instanceof Integer) && find((Integer) key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        TreeNode<V> node = (key instanceof Integer) ? find((Integer) key) : null;
+        return (node != null) ? node.value : null;
+    }
+
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Integer, V>> iterator() {
+                return new EntryIterator<>(root);
+            }
+
+            @Override
+            public int size() {
+                return PersistentIntMap.this.size();
+            }
+        };
+    }
+
+    private TreeNode<V> find(int key) {
+        TreeNode<V> node = root;
+        while (node != null && node.key != key) {
+            node = (key < node.key) ? node.left : node.right;
+        }
+        return node;
+    }
+
+    private static <V> TreeNode<V> build(Entry<Integer, V>[] entries, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        return new TreeNode<>(entries[middle].getKey(), entries[middle].getValue(), build(entries, from, middle),
+                build(entries, middle + 1, to));
+    }
+
+    private static <V> TreeNode<V> put(TreeNode<V> node, int key, V value) {
+        if (node == null) {
+            return new TreeNode<>(key, value, null, null);
+        }
+        if (key < node.key) {
+            return balance(node.key, node.value, put(node.left, key, value), node.right);
+        } else if (key > node.key) {
+            return balance(node.key, node.value, node.left, put(node.right, key, value));
+        }
+        return new TreeNode<>(key, value, node.left, node.right);
+    }
+
+    private static <V> TreeNode<V> remove(TreeNode<V> node, int key) {
+        if (node == null) {
+            return null;
+        }
+        if (key < node.key) {
+            TreeNode<V> left = remove(node.left, key);
+            return (left == node.left) ? node : balance(node.key, node.value, left, node.right);
+        } else if (key > node.key) {
+            TreeNode<V> right = remove(node.right, key);
+            return (right == node.right) ? node : balance(node.key, node.value, node.left, right);
+        }
+        if (node.left == null) {
+            return node.right;
+        } else if (node.right == null) {
+            return node.left;
+        }
+        TreeNode<V> next = node.right; // следующий по порядку узел занимает место удаляемого
+        while (next.left != null) {
+            next = next.left;
+        }
+        return balance(next.key, next.value, node.left, remove(node.right, next.key));
+    }
+
+    /**
+     * Создаёт узел с заданными поддеревьями, восстанавливая баланс поворотами (высоты поддеревьев отличаются
+     * не больше чем на 2)
+     */
+    private static <V> TreeNode<V> balance(int key, V value, TreeNode<V> left, TreeNode<V> right) {
+        int difference = height(left) - height(right);
+        if (difference > 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new TreeNode<>(left.key, left.value, left.left, new TreeNode<>(key, value, left.right, right));
+            }
+            TreeNode<V> middle = left.right;
+            return new TreeNode<>(middle.key, middle.value, new TreeNode<>(left.key, left.value, left.left,
+                    middle.left), new TreeNode<>(key, value, middle.right, right));
+        } else if (difference < -1) {
+            if (height(right.right) >= height(right.left)) {
+                return new TreeNode<>(right.key, right.value, new TreeNode<>(key, value, left, right.left),
+                        right.right);
+            }
+            TreeNode<V> middle = right.left;
+            return new TreeNode<>(middle.key, middle.value, new TreeNode<>(key, value, left, middle.left),
+                    new TreeNode<>(right.key, right.value, middle.right, right.right));
+        }
+        return new TreeNode<>(key, value, left, right);
+    }
+
+    private static int height(TreeNode<?> node) {
+        return (node != null) ? node.height : 0;
+    }
+
+    private static int size(TreeNode<?> node) {
+        return (node != null) ? node.size : 0;
+    }
+
+    /**
+     * Обход дерева в порядке возрастания ключей
+     */
+    private static final class EntryIterator<V> implements Iterator<Entry<Integer, V>> {
+        private final Deque<TreeNode<V>> path = new ArrayDeque<>();
+
+        private EntryIterator(TreeNode<V> root) {
+            pushLeft(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !path.isEmpty();
+        }
+
+        @Override
+        public Entry<Integer, V> next() {
+            if (path.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            TreeNode<V> node = path.pop();
+            pushLeft(node.right);
+            return new SimpleImmutableEntry<>(node.key, node.value);
+        }
+
+        private void pushLeft(TreeNode<V> node) {
+            while (node != null) {
+                path.push(node);
+                node = node.left;
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import ru.yandex.practicum.tasktracker.model.Task;
+
+import java.util.List;
+
+/**
+ * Потокобезопасная обёртка над менеджером истории: все обращения к связному списку истории выполняются
+ * под общим монитором
+ */
+public class SynchronizedHistoryManager implements HistoryManager {
+    private final HistoryManager historyManager;
+
+    public SynchronizedHistoryManager(HistoryManager historyManager) {
+        this.historyManager = historyManager;
+    }
+
+    @Override
+    public synchronized void add(Task task) {
+        historyManager.add(task);
+    }
+
+    @Override
+    public synchronized void remove(int id) {
+        historyManager.remove(id);
+    }
+
+    @Override
+    public synchronized List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+}
@@ -0,0 +1,236 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import ru.yandex.practicum.tasktracker.model.Task;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Индекс интервалов времени задач: сбалансированное (AVL) дерево, упорядоченное по времени начала и id задачи,
+ * в каждом узле которого хранится наибольшее время окончания задач его поддерева. Поиск задач, пересекающихся
+ * с интервалом, пропускает поддеревья, все задачи которых закончились до начала интервала или начинаются после
+ * его конца, поэтому занимает O(log n + k), где k - количество найденных задач.
+ * Задачи без времени начала в индекс не попадают. Индекс не потокобезопасен
+ */
+public class TaskIntervalIndex {
+    private Node root;
+    private int size;
+
+    private static class Node {
+        private final Task task;
+        private final LocalDateTime startTime;
+        private final LocalDateTime endTime;
+        private LocalDateTime maxEndTime; // наибольшее время окончания в поддереве
+        private int height;
+        private Node left;
+        private Node right;
+
+        private Node(Task task) {
+            this.task = task;
+            startTime = task.getStartTime();
+            endTime = task.getEndTime();
+            maxEndTime = endTime;
+            height = 1;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    /**
+     * Добавляет задачу в индекс (задача без времени начала не добавляется). Задача с тем же id и временем начала
+     * заменяется
+     */
+    public void add(Task task) {
+        if (task.getStartTime() != null) {
+            root = insert(root, task);
+        }
+    }
+
+    /**
+     * Удаляет задачу из индекса по её id и времени начала
+     */
+    public void remove(Task task) {
+        if (task != null && task.getStartTime() != null) {
+            root = delete(root, task.getStartTime(), task.getId());
+        }
+    }
+
+    /**
+     * Возвращает задачи, пересекающиеся с интервалом [from, to), в порядке времени начала. Задача нулевой
+     * продолжительности считается попавшей в интервал, если её время начала лежит в интервале
+     */
+    public List<Task> findOverlapping(LocalDateTime from, LocalDateTime to) {
+        List<Task> result = new ArrayList<>();
+        forEachOverlapping(from, to, result::add);
+        return result;
+    }
+
+    /**
+     * Передаёт задачи, пересекающиеся с интервалом [from, to), в порядке времени начала. Обход прекращается,
+     * как только action вернёт false, поэтому стоимость зависит только от количества просмотренных задач
+     */
+    public void forEachOverlapping(LocalDateTime from, LocalDateTime to, Predicate<Task> action) {
+        if (from.isBefore(to)) {
+            visit(root, from, to, Task.DEFAULT_ID, true, action);
+        }
+    }
+
+    /**
+     * Проверяет, пересекается ли задача по времени с какой-либо другой задачей индекса (задача с тем же id,
+     * то есть заменяемая, не учитывается). Время задачи - полуинтервал [start, end), поэтому задачи, одна из
+     * которых начинается в момент окончания другой, не пересекаются, а задача нулевой продолжительности
+     * (пустой полуинтервал) не пересекается ни с какой задачей
+     */
+    public boolean isOverlappingAnother(Task task) {
+        if (task.getStartTime() == null || !task.getStartTime().isBefore(task.getEndTime())) {
+            return false;
+        }
+        return visit(root, task.getStartTime(), task.getEndTime(), task.getId(), false, overlappingTask -> false);
+    }
+
+    /**
+     * Обходит поддерево в порядке времени начала, передавая в action задачи, пересекающиеся с [from, to)
+     *
+     * @param isPointIncluded учитывать задачи нулевой продолжительности, начинающиеся в интервале (для запросов
+     *                        по времени; при проверке пересечений такие задачи не учитываются)
+     * @return true, если action вернул false и обход прекращён
+     */
+    private static boolean visit(Node node, LocalDateTime from, LocalDateTime to, int excludedId,
+                                 boolean isPointIncluded, Predicate<Task> action) {
+        if (node == null || node.maxEndTime.isBefore(from)) {
+            return false; // все задачи поддерева закончились до начала интервала
+        }
+        if (visit(node.left, from, to, excludedId, isPointIncluded, action)) {
+            return true;
+        }
+        if (!node.startTime.isBefore(to)) {
+            return false; // эта задача и задачи правого поддерева начинаются не раньше конца интервала
+        }
+        boolean isOverlapping = isPointIncluded
+                ? node.endTime.isAfter(from) || node.startTime.equals(from)
+                : node.endTime.isAfter(from) && node.endTime.isAfter(node.startTime);
+        if (node.task.getId() != excludedId && isOverlapping && !action.test(node.task)) {
+            return true;
+        }
+        return visit(node.right, from, to, excludedId, isPointIncluded, action);
+    }
+
+    private static int compare(LocalDateTime startTime, int id, Node node) {
+        int result = startTime.compareTo(node.startTime);
+        return (result != 0) ? result : Integer.compare(id, node.task.getId());
+    }
+
+    private Node insert(Node node, Task task) {
+        if (node == null) {
+            size++;
+            return new Node(task);
+        }
+        int comparison = compare(task.getStartTime(), task.getId(), node);
+        if (comparison == 0) {
+            Node replacement = new Node(task);
+            replacement.left = node.left;
+            replacement.right = node.right;
+            return update(replacement);
+        }
+        if (comparison < 0) {
+            node.left = insert(node.left, task);
+        } else {
+            node.right = insert(node.right, task);
+        }
+        return balance(node);
+    }
+
+    private Node delete(Node node, LocalDateTime startTime, int id) {
+        if (node == null) {
+            return null;
+        }
+        int comparison = compare(startTime, id, node);
+        if (comparison < 0) {
+            node.left = delete(node.left, startTime, id);
+        } else if (comparison > 0) {
+            node.right = delete(node.right, startTime, id);
+        } else {
+            size--;
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = deleteMin(node.right);
+            successor.left = node.left;
+            node = successor;
+        }
+        return balance(node);
+    }
+
+    private Node deleteMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = deleteMin(node.left);
+        return balance(node);
+    }
+
+    private static int height(Node node) {
+        return (node != null) ? node.height : 0;
+    }
+
+    private static Node update(Node node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        LocalDateTime maxEndTime = node.endTime;
+        if (node.left != null && node.left.maxEndTime.isAfter(maxEndTime)) {
+            maxEndTime = node.left.maxEndTime;
+        }
+        if (node.right != null && node.right.maxEndTime.isAfter(maxEndTime)) {
+            maxEndTime = node.right.maxEndTime;
+        }
+        node.maxEndTime = maxEndTime;
+        return node;
+    }
+
+    private static Node balance(Node node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = update(node);
+        return update(left);
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = update(node);
+        return update(right);
+    }
+}
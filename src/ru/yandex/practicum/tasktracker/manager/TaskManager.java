@@ -3,7 +3,10 @@ package ru.yandex.practicum.tasktracker.manager;
 import ru.yandex.practicum.tasktracker.model.Epic;
 import ru.yandex.practicum.tasktracker.model.Subtask;
 import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TimeSlot;
 
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -44,4 +47,19 @@ public interface TaskManager {
     List<Task> getHistory();
 
     List<Task> getPrioritizedTasks();
+
+    TasksPage<Task> getTasksPage(String cursor, int limit);
+
+    TasksPage<Epic> getEpicsPage(String cursor, int limit);
+
+    TasksPage<Subtask> getSubtasksPage(String cursor, int limit);
+
+    TasksPage<Task> getPrioritizedTasksPage(String cursor, int limit);
+
+    List<Task> getTasksInRange(LocalDateTime from, LocalDateTime to);
+
+    List<TimeSlot> findFreeSlots(LocalDateTime from, LocalDateTime to, int minDuration, int limit);
+
+    List<Task> scheduleTasks(List<? extends Task> tasks, LocalDateTime from, LocalDateTime to,
+                             LocalTime workdayStart, LocalTime workdayEnd);
 }
\ No newline at end of file
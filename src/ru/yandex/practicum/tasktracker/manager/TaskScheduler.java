@@ -0,0 +1,138 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import ru.yandex.practicum.tasktracker.model.Subtask;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * Планировщик задач без времени начала. Свободное время интервала планирования строится за один проход
+ * по упорядоченному по времени начала расписанию, после чего задачи пакета размещаются по очереди в самый ранний
+ * подходящий свободный интервал (first fit), который затем уменьшается на время задачи.
+ * Подзадачи одного эпика размещаются друг за другом в порядке пакета: каждая следующая подзадача начинается
+ * не раньше окончания предыдущей. Если задано рабочее время, задача целиком размещается внутри рабочего
+ * времени одного дня
+ */
+public class TaskScheduler {
+    private final LocalTime workdayStart;
+    private final LocalTime workdayEnd;
+    // свободные интервалы: начало -> конец
+    private final TreeMap<LocalDateTime, LocalDateTime> freeSlots = new TreeMap<>();
+    // id эпика -> время окончания последней размещённой подзадачи
+    private final Map<Integer, LocalDateTime> epicEndTimes = new HashMap<>();
+
+    /**
+     * @param schedule     задачи, пересекающиеся с интервалом планирования, в порядке времени начала
+     * @param workdayStart начало рабочего времени (null - без ограничения рабочим временем)
+     * @param workdayEnd   конец рабочего времени, должен быть позже начала
+     */
+    public TaskScheduler(List<Task> schedule, LocalDateTime from, LocalDateTime to,
+                         LocalTime workdayStart, LocalTime workdayEnd) {
+        boolean isWorkdaySet = workdayStart != null && workdayEnd != null && workdayStart.isBefore(workdayEnd);
+        this.workdayStart = isWorkdaySet ? workdayStart : null;
+        this.workdayEnd = isWorkdaySet ? workdayEnd : null;
+
+        LocalDateTime freeFrom = from;
+        for (Task task : schedule) {
+            if (task.getStartTime().isAfter(freeFrom)) {
+                freeSlots.put(freeFrom, task.getStartTime());
+            }
+            if (task.getEndTime().isAfter(freeFrom)) {
+                freeFrom = task.getEndTime();
+            }
+        }
+        if (freeFrom.isBefore(to)) {
+            freeSlots.put(freeFrom, to);
+        }
+    }
+
+    /**
+     * Размещает задачи пакета. Задачи с уже заданным временем начала или нулевой продолжительностью и задачи,
+     * для которых не нашлось свободного времени, пропускаются
+     *
+     * @return размещённые задачи (копии задач пакета с назначенным временем начала) в порядке пакета
+     */
+    public List<Task> plan(List<? extends Task> tasks) {
+        List<Task> plannedTasks = new ArrayList<>();
+        for (Task task : tasks) {
+            if (task == null || task.getStartTime() != null || task.getDuration() <= 0) {
+                continue;
+            }
+            LocalDateTime notBefore = freeSlots.isEmpty() ? null : freeSlots.firstKey();
+            if (task.getClass() == Subtask.class) {
+                LocalDateTime epicEndTime = epicEndTimes.get(((Subtask) task).getEpicId());
+                if (epicEndTime != null && (notBefore == null || epicEndTime.isAfter(notBefore))) {
+                    notBefore = epicEndTime;
+                }
+            }
+            LocalDateTime startTime = (notBefore != null) ? place(notBefore, task.getDuration()) : null;
+            if (startTime == null) {
+                continue;
+            }
+            Task plannedTask = TasksHelper.replaceStartTime(task, startTime);
+            if (task.getClass() == Subtask.class) {
+                epicEndTimes.put(((Subtask) task).getEpicId(), plannedTask.getEndTime());
+            }
+            plannedTasks.add(plannedTask);
+        }
+        return plannedTasks;
+    }
+
+    /**
+     * Ищет самое раннее время начала не раньше notBefore, с которого задача заданной продолжительности умещается
+     * в свободный интервал (и в рабочее время), и занимает это время
+     *
+     * @return время начала или null, если места не нашлось
+     */
+    private LocalDateTime place(LocalDateTime notBefore, int duration) {
+        Map.Entry<LocalDateTime, LocalDateTime> slot = freeSlots.floorEntry(notBefore);
+        if (slot == null || !slot.getValue().isAfter(notBefore)) {
+            slot = freeSlots.higherEntry(notBefore);
+        }
+        while (slot != null) {
+            LocalDateTime slotStart = slot.getKey();
+            LocalDateTime slotEnd = slot.getValue();
+            LocalDateTime startTime = alignToWorkday(slotStart.isAfter(notBefore) ? slotStart : notBefore, duration);
+            if (startTime != null && !startTime.plusMinutes(duration).isAfter(slotEnd)) {
+                occupy(slotStart, slotEnd, startTime, startTime.plusMinutes(duration));
+                return startTime;
+            }
+            slot = freeSlots.higherEntry(slotStart);
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает самое раннее время не раньше time, с которого задача умещается в рабочее время одного дня
+     * (null, если задача длиннее рабочего дня)
+     */
+    private LocalDateTime alignToWorkday(LocalDateTime time, int duration) {
+        if (workdayStart == null) {
+            return time;
+        }
+        LocalDateTime dayStart = time.toLocalDate().atTime(workdayStart);
+        LocalDateTime dayEnd = time.toLocalDate().atTime(workdayEnd);
+        if (dayStart.plusMinutes(duration).isAfter(dayEnd)) {
+            return null;
+        }
+        if (time.isBefore(dayStart)) {
+            return dayStart;
+        }
+        if (time.plusMinutes(duration).isAfter(dayEnd)) {
+            return dayStart.plusDays(1);
+        }
+        return time;
+    }
+
+    private void occupy(LocalDateTime slotStart, LocalDateTime slotEnd, LocalDateTime start, LocalDateTime end) {
+        freeSlots.remove(slotStart);
+        if (slotStart.isBefore(start)) {
+            freeSlots.put(slotStart, start);
+        }
+        if (end.isBefore(slotEnd)) {
+            freeSlots.put(end, slotEnd);
+        }
+    }
+}
@@ -4,6 +4,8 @@ import ru.yandex.practicum.tasktracker.model.Epic;
 import ru.yandex.practicum.tasktracker.model.Subtask;
 import ru.yandex.practicum.tasktracker.model.Task;
 
+import java.time.LocalDateTime;
+
 public class TasksHelper {
     /**
      * Заменяет id задачи на заданный. Используется для замены в передаваемой в менеджер задаче id «по-умолчанию»
@@ -11,6 +13,12 @@ public class TasksHelper {
      */
 
     public static Task replaceTaskId(Task task, int id) {
+        // эпик или подзадача, переданные как Task, пересобираются с сохранением своего типа
+        if (task.getClass() == Epic.class) {
+            return replaceTaskId((Epic) task, id);
+        } else if (task.getClass() == Subtask.class) {
+            return replaceTaskId((Subtask) task, id);
+        }
         return new Task(id, task.getName(), task.getStatus(), task.getDescription(),
                 task.getStartTime(), task.getDuration());
     }
@@ -24,4 +32,17 @@ public class TasksHelper {
         return new Subtask(id, subtask.getName(), subtask.getStatus(), subtask.getDescription(),
                 subtask.getStartTime(), subtask.getDuration(), subtask.getEpicId());
     }
+
+    /**
+     * Возвращает копию задачи или подзадачи с заданным временем начала (тип копии соответствует типу задачи)
+     */
+    public static Task replaceStartTime(Task task, LocalDateTime startTime) {
+        if (task.getClass() == Subtask.class) {
+            Subtask subtask = (Subtask) task;
+            return new Subtask(subtask.getId(), subtask.getName(), subtask.getStatus(), subtask.getDescription(),
+                    startTime, subtask.getDuration(), subtask.getEpicId());
+        }
+        return new Task(task.getId(), task.getName(), task.getStatus(), task.getDescription(),
+                startTime, task.getDuration());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import ru.yandex.practicum.tasktracker.model.Task;
+
+import java.util.List;
+
+/**
+ * Страница списка задач: элементы страницы и курсор для запроса следующей страницы
+ * (null, если страница последняя)
+ */
+public class TasksPage<T extends Task> {
+    private final List<T> items;
+    private final String nextCursor;
+
+    public TasksPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,138 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import ru.yandex.practicum.tasktracker.exeption.ManagerLoadException;
+import ru.yandex.practicum.tasktracker.exeption.ManagerSaveException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал упреждающей записи: файл, в конец которого дописываются записи об изменениях менеджера.
+ * Стоимость записи не зависит от количества хранимых задач.
+ * <p>
+ * Запись: длина и контрольная сумма CRC32 текста записи (по 4 байта), затем текст в UTF-8. Оборванная или
+ * повреждённая запись и всё, что записано после неё, при чтении журнала отбрасываются и обрезаются в файле,
+ * поэтому следующие записи дописываются после последней целой записи
+ */
+public class WriteAheadLog {
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    private final Path path;
+    private DataOutputStream output;
+    private int recordsCount;
+
+    public WriteAheadLog(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Дописывает запись в конец журнала и сбрасывает буфер, чтобы запись не потерялась при аварийном завершении
+     */
+    public void append(String record) throws ManagerSaveException {
+        byte[] data = record.getBytes(StandardCharsets.UTF_8);
+        try {
+            if (output == null) {
+                output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+            }
+            output.writeInt(data.length);
+            output.writeInt(getChecksum(data));
+            output.write(data);
+            output.flush();
+            recordsCount++;
+        } catch (IOException exception) {
+            throw new ManagerSaveException(String.format("Ошибка записи в журнал %s.", path), exception);
+        }
+    }
+
+    /**
+     * Возвращает все целые записи журнала (или пустой список, если журнала ещё нет). Если конец журнала оборван
+     * или повреждён, файл обрезается по последней целой записи
+     */
+    public List<String> readRecords() throws ManagerLoadException {
+        List<String> records = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return records;
+        }
+        close(); // дописывание продолжится после обрезки файла
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            int validSize = 0; // размер начала журнала, занятого целыми записями
+            while (buffer.remaining() >= HEADER_SIZE) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    break;
+                }
+                byte[] data = new byte[length];
+                buffer.get(data);
+                if (checksum != getChecksum(data)) {
+                    break;
+                }
+                records.add(new String(data, StandardCharsets.UTF_8));
+                validSize = buffer.position();
+            }
+            if (validSize < buffer.limit()) {
+                System.out.printf("Повреждённый конец журнала %s обрезан (%d байт)%n", path,
+                        buffer.limit() - validSize);
+                truncateTo(validSize);
+            }
+        } catch (IOException exception) {
+            throw new ManagerLoadException(String.format("Ошибка чтения журнала %s.", path), exception);
+        }
+        recordsCount = records.size();
+        return records;
+    }
+
+    /**
+     * Очищает журнал (после того как его содержимое вошло в снимок данных)
+     */
+    public void truncate() throws ManagerSaveException {
+        close();
+        try {
+            Files.write(path, new byte[0]);
+        } catch (IOException exception) {
+            throw new ManagerSaveException(String.format("Ошибка очистки журнала %s.", path), exception);
+        }
+        recordsCount = 0;
+    }
+
+    public int getRecordsCount() {
+        return recordsCount;
+    }
+
+    public void close() {
+        if (output == null) {
+            return;
+        }
+        try {
+            output.close();
+        } catch (IOException exception) {
+            System.out.printf("Ошибка при закрытии журнала %s%n", path);
+        }
+        output = null;
+    }
+
+    private void truncateTo(long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+            channel.force(false);
+        }
+    }
+
+    private static int getChecksum(byte[] data) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(data);
+        return (int) crc32.getValue();
+    }
+}
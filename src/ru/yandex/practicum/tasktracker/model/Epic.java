@@ -10,8 +10,17 @@ public class Epic extends Task {
 
     public Epic(int id, String name, TaskStatus status, String description,
                 LocalDateTime startTime, int duration, LocalDateTime endTime) {
+        this(id, name, status, description, startTime, duration, endTime, new HashMap<>());
+    }
+
+    /**
+     * Создаёт эпик с заданной таблицей подзадач. Таблица передаётся эпику без копирования, поэтому после вызова
+     * её нельзя изменять
+     */
+    public Epic(int id, String name, TaskStatus status, String description, LocalDateTime startTime, int duration,
+                LocalDateTime endTime, Map<Integer, Subtask> subtasksMap) {
         super(id, name, status, description, startTime, duration);
-        subtasksMap = new HashMap<>();
+        this.subtasksMap = subtasksMap;
         this.endTime = endTime;
     }
 
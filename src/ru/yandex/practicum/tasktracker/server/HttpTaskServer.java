@@ -2,38 +2,111 @@ package ru.yandex.practicum.tasktracker.server;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonWriter;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
+import ru.yandex.practicum.tasktracker.manager.ConcurrentTaskManager;
+import ru.yandex.practicum.tasktracker.manager.FileBackedTaskManager;
 import ru.yandex.practicum.tasktracker.manager.Managers;
 import ru.yandex.practicum.tasktracker.manager.TaskManager;
+import ru.yandex.practicum.tasktracker.manager.TasksPage;
 import ru.yandex.practicum.tasktracker.model.Epic;
 import ru.yandex.practicum.tasktracker.model.Subtask;
 import ru.yandex.practicum.tasktracker.model.Task;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Method;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.OptionalInt;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class HttpTaskServer {
     private static final int PORT = 8080;
+    private static final int STOP_TIMEOUT_SECONDS = 5;
+    private static final Pattern ID_QUERY_PATTERN = Pattern.compile("id=(-?\\d+)");
+    private static final int DEFAULT_SLOTS_LIMIT = 10;
+    private static final int DEFAULT_PAGE_LIMIT = 100;
+    private static final int RESPONSE_BUFFER_SIZE = 16 * 1024;
+    private static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
     private final HttpServer server;
-    private final TaskManager taskManager = Managers.getDefault();
+    private final TaskManager taskManager;
+    private final boolean isTaskManagerThreadSafe;
+    private final ExecutorService executor;
     private final Gson gson;
-    private SimpleEntry<Integer, String> responseKV;
-    private String method;
-    private OptionalInt id;
-    private String body;
 
+    /**
+     * Режим обработки запросов: в потоке-диспетчере HttpServer (запросы выполняются строго по очереди),
+     * в пуле потоков фиксированного размера или в отдельном потоке на каждый запрос (виртуальном, если JVM
+     * их поддерживает)
+     */
+    public enum ExecutorMode {
+        DISPATCHER,
+        FIXED_POOL,
+        THREAD_PER_REQUEST
+    }
+
+    /**
+     * Тело ответа в формате JSON, записываемое непосредственно в поток ответа
+     */
+    private interface JsonBody {
+        void writeTo(JsonWriter writer) throws IOException;
+    }
+
+    /**
+     * Данные одного запроса. Создаются для каждого запроса, поэтому обработчики не разделяют изменяемое состояние
+     * и могут выполняться параллельно
+     */
+    private static class RequestContext {
+        private final String method;
+        private final OptionalInt id;
+        private final String body;
+        private final Map<String, String> parameters;
+        private SimpleEntry<Integer, String> responseKV;
+        private JsonBody jsonBody; // если задано, отправляется вместо responseKV с кодом 200
+
+        private RequestContext(String method, OptionalInt id, String body, Map<String, String> parameters) {
+            this.method = method;
+            this.id = id;
+            this.body = body;
+            this.parameters = parameters;
+            responseKV = new SimpleEntry<>(404, "Запрашиваемое действие или объект не найдены.");
+        }
+    }
+
+    /**
+     * Запускает KV-сервер и сервер задач. Если задано свойство kvserver.dir, KV-сервер хранит данные
+     * в этом каталоге ({@link LogKVStorage}), иначе - в памяти. Режим обработки запросов KV-сервера задаётся
+     * свойствами kvserver.executor ({@link ExecutorMode}, по умолчанию FIXED_POOL, чтобы запросы нескольких
+     * менеджеров не ждали друг друга) и kvserver.threads (количество потоков для FIXED_POOL, по умолчанию
+     * по числу ядер)
+     */
     public static void main(String[] args) {
+        enableTcpNoDelay();
         try {
-            KVServer kvServer = new KVServer();
+            String kvDirectory = System.getProperty("kvserver.dir");
+            KVStorage kvStorage = (kvDirectory != null) ? new LogKVStorage(Path.of(kvDirectory))
+                    : new InMemoryKVStorage();
+            ExecutorMode kvExecutorMode = ExecutorMode.valueOf(System.getProperty("kvserver.executor",
+                    ExecutorMode.FIXED_POOL.name()));
+            KVServer kvServer = new KVServer(kvStorage, kvExecutorMode, Integer.getInteger("kvserver.threads", 0));
             kvServer.start();
             HttpTaskServer server = new HttpTaskServer();
             server.start();
@@ -42,7 +115,35 @@ public class HttpTaskServer {
         }
     }
 
+    /**
+     * Включает TCP_NODELAY для сокетов всех серверов HttpServer в этой JVM, если свойство
+     * sun.net.httpserver.nodelay не задано явно (например, флагом -D). Без него ответ, записанный несколькими
+     * частями (заголовки, затем тело), ждёт подтверждения первой части клиентом - около 40 мс на каждый запрос
+     * к серверу задач и к KV-серверу.
+     * <p>
+     * Свойство общее для всей JVM и читается JDK один раз, при создании первого HttpServer, поэтому метод
+     * вызывается только из точек запуска приложения (main), до создания серверов
+     */
+    public static void enableTcpNoDelay() {
+        if (System.getProperty(NODELAY_PROPERTY) == null) {
+            System.setProperty(NODELAY_PROPERTY, "true");
+        }
+    }
+
     public HttpTaskServer() throws IOException {
+        this(Managers.getDefault(), ExecutorMode.DISPATCHER, 0);
+    }
+
+    /**
+     * Создаёт сервер для заданного менеджера и режима обработки запросов. Если менеджер не потокобезопасный,
+     * обращения к нему выполняются под общим монитором, а параллельно выполняются только чтение запроса
+     * и сериализация и отправка ответа
+     *
+     * @param threadsCount количество потоков для режима FIXED_POOL (при значении меньше 1 - по числу ядер)
+     */
+    public HttpTaskServer(TaskManager taskManager, ExecutorMode executorMode, int threadsCount) throws IOException {
+        this.taskManager = taskManager;
+        isTaskManagerThreadSafe = taskManager instanceof ConcurrentTaskManager;
         server = HttpServer.create(new InetSocketAddress(PORT), 0);
 
         server.createContext("/tasks/subtask/epic/", this::mapEpicSubtasksRequest);
@@ -50,8 +151,12 @@ public class HttpTaskServer {
         server.createContext("/tasks/epic/", this::mapEpicRequest);
         server.createContext("/tasks/subtask/", this::mapSubtaskRequest);
         server.createContext("/tasks/history", this::mapHistoryRequest);
+        server.createContext("/tasks/slots", this::mapSlotsRequest);
         server.createContext("/tasks/", this::mapPriorityRequest);
 
+        executor = createExecutor(executorMode, threadsCount);
+        server.setExecutor(executor);
+
         gson = Managers.getGson();
     }
 
@@ -62,140 +167,292 @@ public class HttpTaskServer {
 
     public void stop() {
         server.stop(0);
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (taskManager instanceof FileBackedTaskManager) {
+            // сохранение отложенных изменений; close() сам синхронизируется с менеджером и может ожидать
+            // фоновую запись, поэтому вызывается не под монитором менеджера
+            ((FileBackedTaskManager) taskManager).close();
+        }
     }
 
     public void mapTaskRequest(HttpExchange httpExchange) throws IOException {
-        initMapRequestsProperties(httpExchange);
-        switch (method) {
-            case "GET":
-                if (id.isPresent()) {
-                    Task task = taskManager.getTask(id.getAsInt());
-                    responseKV = (task != null)
-                            ? new SimpleEntry<>(200, gson.toJson(task))
-                            : new SimpleEntry<>(404, "Запрашиваемый объект не найден.");
-                } else {
-                    responseKV = new SimpleEntry<>(200, gson.toJson(taskManager.getTasks()));
-                }
-                break;
-            case "POST":
-                responseKV = postTask(body, Task.class);
-                break;
-            case "DELETE":
-                if (id.isPresent()) {
-                    responseKV = (taskManager.removeTaskOfAnyTypeById(id.getAsInt()))
-                            ? new SimpleEntry<>(201, "Задача удалена.")
-                            : new SimpleEntry<>(404, "Запрашиваемый объект не найден.");
-                } else {
-                    taskManager.removeAllTasks();
-                    responseKV = new SimpleEntry<>(201, "Все задачи удалены.");
-                }
-                break;
-        }
-        sendResponse(httpExchange);
+        RequestContext context = readRequest(httpExchange);
+        executeOnTaskManager(() -> {
+            switch (context.method) {
+                case "GET":
+                    if (context.id.isPresent()) {
+                        Task task = taskManager.getTask(context.id.getAsInt());
+                        context.responseKV = (task != null)
+                                ? new SimpleEntry<>(200, gson.toJson(task))
+                                : new SimpleEntry<>(404, "Запрашиваемый объект не найден.");
+                    } else if (isPageRequested(context)) {
+                        setPage(context, taskManager::getTasksPage);
+                    } else {
+                        setJsonList(context, taskManager.getTasks());
+                    }
+                    break;
+                case "POST":
+                    context.responseKV = postTask(context.body, Task.class);
+                    break;
+                case "DELETE":
+                    if (context.id.isPresent()) {
+                        context.responseKV = (taskManager.removeTaskOfAnyTypeById(context.id.getAsInt()))
+                                ? new SimpleEntry<>(201, "Задача удалена.")
+                                : new SimpleEntry<>(404, "Запрашиваемый объект не найден.");
+                    } else {
+                        taskManager.removeAllTasks();
+                        context.responseKV = new SimpleEntry<>(201, "Все задачи удалены.");
+                    }
+                    break;
+            }
+        });
+        sendResponse(httpExchange, context);
     }
 
     public void mapEpicRequest(HttpExchange httpExchange) throws IOException {
-        initMapRequestsProperties(httpExchange);
-        switch (method) {
-            case "GET":
-                if (id.isPresent()) {
-                    Epic epic = taskManager.getEpic(id.getAsInt());
-                    responseKV = (epic != null)
-                            ? new SimpleEntry<>(200, gson.toJson(epic))
-                            : new SimpleEntry<>(404, "Запрашиваемый объект не найден.");
-                } else {
-                    responseKV = new SimpleEntry<>(200, gson.toJson(taskManager.getEpics()));
-                }
-                break;
-            case "POST":
-                responseKV = postTask(body, Epic.class);
-                break;
-            case "DELETE":
-                if (id.isPresent()) {
-                    responseKV = (taskManager.removeTaskOfAnyTypeById(id.getAsInt()))
-                            ? new SimpleEntry<>(201, "Эпик удалён.")
-                            : new SimpleEntry<>(404, "Запрашиваемый объект не найден.");
-                } else {
-                    taskManager.removeAllEpics();
-                    responseKV = new SimpleEntry<>(201, "Все эпики удалены.");
-                }
-                break;
-        }
-        sendResponse(httpExchange);
+        RequestContext context = readRequest(httpExchange);
+        executeOnTaskManager(() -> {
+            switch (context.method) {
+                case "GET":
+                    if (context.id.isPresent()) {
+                        Epic epic = taskManager.getEpic(context.id.getAsInt());
+                        context.responseKV = (epic != null)
+                                ? new SimpleEntry<>(200, gson.toJson(epic))
+                                : new SimpleEntry<>(404, "Запрашиваемый объект не найден.");
+                    } else if (isPageRequested(context)) {
+                        setPage(context, taskManager::getEpicsPage);
+                    } else {
+                        setJsonList(context, taskManager.getEpics());
+                    }
+                    break;
+                case "POST":
+                    context.responseKV = postTask(context.body, Epic.class);
+                    break;
+                case "DELETE":
+                    if (context.id.isPresent()) {
+                        context.responseKV = (taskManager.removeTaskOfAnyTypeById(context.id.getAsInt()))
+                                ? new SimpleEntry<>(201, "Эпик удалён.")
+                                : new SimpleEntry<>(404, "Запрашиваемый объект не найден.");
+                    } else {
+                        taskManager.removeAllEpics();
+                        context.responseKV = new SimpleEntry<>(201, "Все эпики удалены.");
+                    }
+                    break;
+            }
+        });
+        sendResponse(httpExchange, context);
     }
 
     public void mapSubtaskRequest(HttpExchange httpExchange) throws IOException {
-        initMapRequestsProperties(httpExchange);
-        switch (method) {
-            case "GET":
-                if (id.isPresent()) {
-                    Subtask subtask = taskManager.getSubtask(id.getAsInt());
-                    responseKV = (subtask != null) ? new SimpleEntry<>(200, gson.toJson(subtask))
-                            : new SimpleEntry<>(404, "Запрашиваемый объект не найден.");
-                } else {
-                    responseKV = new SimpleEntry<>(200, gson.toJson(taskManager.getSubtasks()));
-                }
-                break;
-            case "POST":
-                responseKV = postTask(body, Subtask.class);
-                break;
-            case "DELETE":
-                if (id.isPresent()) {
-                    responseKV = (taskManager.removeTaskOfAnyTypeById(id.getAsInt()))
-                            ? new SimpleEntry<>(201, "Подзадача удалена.")
-                            : new SimpleEntry<>(404, "Запрашиваемый объект не найден.");
-                } else {
-                    taskManager.removeAllSubtasks();
-                    responseKV = new SimpleEntry<>(201, "Все подзадачи удалены.");
-                }
-                break;
-        }
-        sendResponse(httpExchange);
+        RequestContext context = readRequest(httpExchange);
+        executeOnTaskManager(() -> {
+            switch (context.method) {
+                case "GET":
+                    if (context.id.isPresent()) {
+                        Subtask subtask = taskManager.getSubtask(context.id.getAsInt());
+                        context.responseKV = (subtask != null) ? new SimpleEntry<>(200, gson.toJson(subtask))
+                                : new SimpleEntry<>(404, "Запрашиваемый объект не найден.");
+                    } else if (isPageRequested(context)) {
+                        setPage(context, taskManager::getSubtasksPage);
+                    } else {
+                        setJsonList(context, taskManager.getSubtasks());
+                    }
+                    break;
+                case "POST":
+                    context.responseKV = postTask(context.body, Subtask.class);
+                    break;
+                case "DELETE":
+                    if (context.id.isPresent()) {
+                        context.responseKV = (taskManager.removeTaskOfAnyTypeById(context.id.getAsInt()))
+                                ? new SimpleEntry<>(201, "Подзадача удалена.")
+                                : new SimpleEntry<>(404, "Запрашиваемый объект не найден.");
+                    } else {
+                        taskManager.removeAllSubtasks();
+                        context.responseKV = new SimpleEntry<>(201, "Все подзадачи удалены.");
+                    }
+                    break;
+            }
+        });
+        sendResponse(httpExchange, context);
     }
 
     public void mapEpicSubtasksRequest(HttpExchange httpExchange) throws IOException {
-        initMapRequestsProperties(httpExchange);
-        if (method.equals("GET") && id.isPresent()) {
-            List<Subtask> subtasks = taskManager.getEpicSubtasks(id.getAsInt());
-            responseKV = (subtasks != null)
-                    ? new SimpleEntry<>(200, gson.toJson(subtasks))
-                    : new SimpleEntry<>(404, "Запрашиваемые объекты не найдены.");
-        }
-        sendResponse(httpExchange);
+        RequestContext context = readRequest(httpExchange);
+        executeOnTaskManager(() -> {
+            if (context.method.equals("GET") && context.id.isPresent()) {
+                List<Subtask> subtasks = taskManager.getEpicSubtasks(context.id.getAsInt());
+                if (subtasks != null) {
+                    setJsonList(context, subtasks);
+                } else {
+                    context.responseKV = new SimpleEntry<>(404, "Запрашиваемые объекты не найдены.");
+                }
+            }
+        });
+        sendResponse(httpExchange, context);
     }
 
     public void mapHistoryRequest(HttpExchange httpExchange) throws IOException {
-        initMapRequestsProperties(httpExchange);
-        if (method.equals("GET")) {
-            responseKV = new SimpleEntry<>(200, gson.toJson(taskManager.getHistory()));
+        RequestContext context = readRequest(httpExchange);
+        executeOnTaskManager(() -> {
+            if (context.method.equals("GET")) {
+                setJsonList(context, taskManager.getHistory());
+            }
+        });
+        sendResponse(httpExchange, context);
+    }
+
+    /**
+     * Поиск свободных интервалов: GET /tasks/slots?from=...&to=...&duration=...&limit=..., где from и to - время
+     * в формате ISO (например, 2022-06-01T10:00), duration - минимальная продолжительность интервала в минутах
+     * (по умолчанию 0), limit - наибольшее количество интервалов в ответе (по умолчанию 10)
+     */
+    public void mapSlotsRequest(HttpExchange httpExchange) throws IOException {
+        RequestContext context = readRequest(httpExchange);
+        if (context.method.equals("GET") && httpExchange.getRequestURI().getPath().equals("/tasks/slots")) {
+            Map<String, String> parameters = context.parameters;
+            try {
+                LocalDateTime from = LocalDateTime.parse(parameters.getOrDefault("from", ""));
+                LocalDateTime to = LocalDateTime.parse(parameters.getOrDefault("to", ""));
+                int minDuration = Integer.parseInt(parameters.getOrDefault("duration", "0"));
+                int limit = Integer.parseInt(parameters.getOrDefault("limit", String.valueOf(DEFAULT_SLOTS_LIMIT)));
+                executeOnTaskManager(() -> context.responseKV = new SimpleEntry<>(200,
+                        gson.toJson(taskManager.findFreeSlots(from, to, minDuration, limit))));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                context.responseKV = new SimpleEntry<>(400, "Некорректные параметры поиска свободного времени.");
+            }
         }
-        sendResponse(httpExchange);
+        sendResponse(httpExchange, context);
     }
 
     public void mapPriorityRequest(HttpExchange httpExchange) throws IOException {
-        initMapRequestsProperties(httpExchange);
-        if (method.equals("GET")
-                && httpExchange.getRequestURI().getPath().equals("/tasks/")
-                && httpExchange.getRequestURI().getQuery() == null) {
-            responseKV = new SimpleEntry<>(200, gson.toJson(taskManager.getPrioritizedTasks()));
+        RequestContext context = readRequest(httpExchange);
+        executeOnTaskManager(() -> {
+            if (context.method.equals("GET") && httpExchange.getRequestURI().getPath().equals("/tasks/")) {
+                if (isPageRequested(context)) {
+                    setPage(context, taskManager::getPrioritizedTasksPage);
+                } else if (httpExchange.getRequestURI().getQuery() == null) {
+                    setJsonList(context, taskManager.getPrioritizedTasks());
+                }
+            }
+        });
+        sendResponse(httpExchange, context);
+    }
+
+    /**
+     * Постраничная выдача запрашивается параметрами cursor (курсор из поля nextCursor предыдущей страницы)
+     * и limit (размер страницы, по умолчанию 100). Без них список возвращается целиком
+     */
+    private static boolean isPageRequested(RequestContext context) {
+        return context.parameters.containsKey("cursor") || context.parameters.containsKey("limit");
+    }
+
+    /**
+     * Задаёт ответ со списком, который будет сериализован поэлементно при отправке
+     */
+    private void setJsonList(RequestContext context, List<? extends Task> items) {
+        context.jsonBody = writer -> {
+            writer.beginArray();
+            for (Task item : items) {
+                gson.toJson(item, item.getClass(), writer);
+            }
+            writer.endArray();
+        };
+    }
+
+    private void setPage(RequestContext context, BiFunction<String, Integer, TasksPage<?>> pageSource) {
+        try {
+            int limit = Integer.parseInt(context.parameters.getOrDefault("limit", String.valueOf(DEFAULT_PAGE_LIMIT)));
+            TasksPage<?> page = pageSource.apply(context.parameters.get("cursor"), limit);
+            context.jsonBody = writer -> gson.toJson(page, TasksPage.class, writer);
+        } catch (IllegalArgumentException e) {
+            context.responseKV = new SimpleEntry<>(400, "Некорректные параметры постраничной выдачи.");
         }
-        sendResponse(httpExchange);
     }
 
-    private void initMapRequestsProperties(HttpExchange httpExchange) throws IOException {
-        responseKV = new SimpleEntry<>(404, "Запрашиваемое действие или объект не найдены.");
-        method = httpExchange.getRequestMethod();
-        id = getIdFromQuery(httpExchange.getRequestURI().getQuery());
+    private static RequestContext readRequest(HttpExchange httpExchange) throws IOException {
         InputStream inputStream = httpExchange.getRequestBody();
-        body = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        String query = httpExchange.getRequestURI().getQuery();
+        return new RequestContext(httpExchange.getRequestMethod(), getIdFromQuery(query),
+                new String(inputStream.readAllBytes(), StandardCharsets.UTF_8), getQueryParameters(query));
     }
 
-    private void sendResponse(HttpExchange httpExchange) throws IOException {
+    /**
+     * Отправляет ответ. Ответ со списком записывается в поток ответа по мере сериализации (с передачей частями,
+     * chunked), поэтому время до первого байта и расход памяти не зависят от размера списка. Список получен
+     * от менеджера заранее (для непотокобезопасного менеджера - под монитором) и состоит из неизменяемых задач,
+     * поэтому сериализуется без блокировок, и медленный клиент не задерживает другие запросы
+     */
+    private void sendResponse(HttpExchange httpExchange, RequestContext context) throws IOException {
+        if (context.jsonBody != null) {
+            httpExchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            httpExchange.sendResponseHeaders(200, 0);
+            try (JsonWriter writer = createJsonWriter(httpExchange.getResponseBody())) {
+                context.jsonBody.writeTo(writer);
+            }
+            return;
+        }
+        SimpleEntry<Integer, String> responseKV = context.responseKV;
         String contentType = (responseKV.getKey() == 200) ? "application/json" : "text/plain";
-        httpExchange.getResponseHeaders().set("Content-Type", contentType);
-        httpExchange.sendResponseHeaders(responseKV.getKey(), 0);
+        httpExchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        byte[] response = responseKV.getValue().getBytes(StandardCharsets.UTF_8);
+        httpExchange.sendResponseHeaders(responseKV.getKey(), response.length);
         try (OutputStream os = httpExchange.getResponseBody()) {
-            os.write(responseKV.getValue().getBytes());
+            os.write(response);
+        }
+    }
+
+    private static JsonWriter createJsonWriter(OutputStream outputStream) {
+        return new JsonWriter(new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8),
+                RESPONSE_BUFFER_SIZE));
+    }
+
+    /**
+     * Выполняет обращение к менеджеру: для непотокобезопасного менеджера - под монитором менеджера
+     */
+    private void executeOnTaskManager(Runnable action) {
+        if (isTaskManagerThreadSafe) {
+            action.run();
+        } else {
+            synchronized (taskManager) {
+                action.run();
+            }
+        }
+    }
+
+    /**
+     * Создаёт исполнитель обработчиков HttpServer для режима (используется также {@link KVServer})
+     *
+     * @return исполнитель или null, если запросы обрабатываются в потоке-диспетчере
+     */
+    static ExecutorService createExecutor(ExecutorMode executorMode, int threadsCount) {
+        switch (executorMode) {
+            case FIXED_POOL:
+                return Executors.newFixedThreadPool((threadsCount > 0)
+                        ? threadsCount : Runtime.getRuntime().availableProcessors());
+            case THREAD_PER_REQUEST:
+                return createThreadPerTaskExecutor();
+            default:
+                return null; // запросы обрабатываются в потоке-диспетчере HttpServer
+        }
+    }
+
+    /**
+     * Возвращает исполнитель с виртуальным потоком на каждую задачу, если он доступен в текущей JVM (Java 21+),
+     * иначе - кеширующий пул обычных потоков
+     */
+    private static ExecutorService createThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
         }
     }
 
@@ -203,8 +460,7 @@ public class HttpTaskServer {
         if (query == null || query.isBlank()) {
             return OptionalInt.empty();
         }
-        Pattern pattern = Pattern.compile("id=(-?\\d+)");
-        Matcher matcher = pattern.matcher(query);
+        Matcher matcher = ID_QUERY_PATTERN.matcher(query);
         if (matcher.find()) {
             int id = Integer.parseInt(matcher.group(1));
             return OptionalInt.of(id);
@@ -213,6 +469,28 @@ public class HttpTaskServer {
         }
     }
 
+    /**
+     * Разбирает параметры запроса вида name=value&name=value (значения декодируются из URL-кодировки)
+     */
+    private static Map<String, String> getQueryParameters(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null || query.isBlank()) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int separatorIndex = parameter.indexOf('=');
+            if (separatorIndex > 0) {
+                try {
+                    parameters.put(parameter.substring(0, separatorIndex),
+                            URLDecoder.decode(parameter.substring(separatorIndex + 1), StandardCharsets.UTF_8));
+                } catch (IllegalArgumentException e) {
+                    // параметр с некорректной URL-кодировкой пропускается
+                }
+            }
+        }
+        return parameters;
+    }
+
     private <T extends Task> SimpleEntry<Integer, String> postTask(String json, Class<T> taskClass) {
         T task;
 
@@ -225,6 +503,10 @@ public class HttpTaskServer {
         } catch (JsonSyntaxException e) {
             return new SimpleEntry<>(400, "Ошибка десериализации.");
         }
+        // на запрос Task адаптер возвращает объект любого типа из поля type, а эндпойнт принимает только свой тип
+        if (task != null && task.getClass() != taskClass) {
+            return new SimpleEntry<>(400, "Тип объекта не соответствует эндпойнту.");
+        }
 
         if (taskManager.addTaskOfAnyType(task) != 0) {
             return new SimpleEntry<>(201, "Задача, эпик или подзадача успешно добавлена.");
@@ -0,0 +1,92 @@
+package ru.yandex.practicum.tasktracker.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Хранилище в памяти; данные теряются при остановке KV-сервера. Чтение и запись одного ключа выполняются
+ * без блокировок. Изменения и чтения нескольких ключей блокируют только полосы (stripes) своих ключей:
+ * putAll - на запись, getAll - на чтение, поэтому getAll не видит изменение putAll частично, а обращения
+ * к разным ключам не ждут друг друга
+ */
+public class InMemoryKVStorage implements KVStorage {
+    private static final int STRIPES_COUNT = 64; // степень двойки
+
+    private final Map<String, String> data = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock[] stripes = new ReentrantReadWriteLock[STRIPES_COUNT];
+
+    public InMemoryKVStorage() {
+        for (int i = 0; i < STRIPES_COUNT; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    @Override
+    public String get(String key) {
+        return data.get(key);
+    }
+
+    @Override
+    public List<String> getAll(List<String> keys) {
+        List<Lock> locks = lockStripes(keys, false);
+        try {
+            List<String> values = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                values.add(data.get(key));
+            }
+            return values;
+        } finally {
+            locks.forEach(Lock::unlock);
+        }
+    }
+
+    @Override
+    public void put(String key, String value) {
+        data.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<String, String> entries) {
+        List<Lock> locks = lockStripes(entries.keySet(), true);
+        try {
+            data.putAll(entries);
+        } finally {
+            locks.forEach(Lock::unlock);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Блокирует полосы ключей в порядке возрастания номеров, поэтому одновременные вызовы не взаимоблокируются
+     *
+     * @return захваченные блокировки
+     */
+    private List<Lock> lockStripes(Collection<String> keys, boolean isWrite) {
+        boolean[] isStripeUsed = new boolean[STRIPES_COUNT];
+        for (String key : keys) {
+            isStripeUsed[getStripe(key)] = true;
+        }
+        List<Lock> locks = new ArrayList<>();
+        for (int i = 0; i < STRIPES_COUNT; i++) {
+            if (isStripeUsed[i]) {
+                Lock lock = isWrite ? stripes[i].writeLock() : stripes[i].readLock();
+                lock.lock();
+                locks.add(lock);
+            }
+        }
+        return locks;
+    }
+
+    private static int getStripe(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES_COUNT - 1);
+    }
+}
@@ -0,0 +1,113 @@
+package ru.yandex.practicum.tasktracker.server;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Формат тел запросов /mset и /mget KV-сервера: число элементов (int, 4 байта), затем элементы. Строка
+ * записывается длиной в байтах (int) и байтами UTF-8; длина -1 обозначает отсутствующее значение (null).
+ * Тело /mset - пары ключ-значение, тело запроса /mget - ключи, тело ответа /mget - значения в порядке ключей.
+ * Длины записаны заранее, поэтому тело читается без разбора и экранирования, а значения - JSON любого вида
+ */
+final class KVFrames {
+    static final String CONTENT_TYPE = "application/octet-stream";
+    private static final int MAX_INITIAL_CAPACITY = 1024; // число элементов в заголовке не проверено
+
+    private KVFrames() {
+    }
+
+    static byte[] encodeEntries(Map<String, String> entries) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(entries.size());
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+        } catch (IOException e) { // ByteArrayOutputStream не выбрасывает IOException
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return пары ключ-значение в порядке следования в теле
+     * @throws EOFException если тело обрывается раньше, чем указано длинами
+     */
+    static LinkedHashMap<String, String> decodeEntries(InputStream body) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(body));
+        int count = readCount(in);
+        LinkedHashMap<String, String> entries = new LinkedHashMap<>(Math.min(count, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < count; i++) {
+            String key = readString(in);
+            entries.put(key, readString(in));
+        }
+        return entries;
+    }
+
+    static byte[] encodeStrings(List<String> strings) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(strings.size());
+            for (String string : strings) {
+                writeString(out, string);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws EOFException если тело обрывается раньше, чем указано длинами
+     */
+    static List<String> decodeStrings(InputStream body) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(body));
+        int count = readCount(in);
+        List<String> strings = new ArrayList<>(Math.min(count, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < count; i++) {
+            strings.add(readString(in));
+        }
+        return strings;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Отрицательное число элементов: " + count);
+        }
+        return count;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        } else if (length < -1) {
+            throw new IOException("Некорректная длина строки: " + length);
+        }
+        // readNBytes читает частями, поэтому ошибочная длина не приводит к выделению огромного массива
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException("Тело запроса обрывается внутри строки");
+        }
+        return new String(bytes, UTF_8);
+    }
+}
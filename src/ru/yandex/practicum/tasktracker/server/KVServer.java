@@ -4,27 +4,154 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
+import ru.yandex.practicum.tasktracker.exeption.KVStorageException;
 
 /**
  * Постман: https://www.getpostman.com/collections/a83b61d9e1c81c10575c
+ * <p>
+ * Помимо /save/{key} и /load/{key} сервер принимает POST-запросы /mset и /mget для нескольких ключей
+ * за один запрос; формат тел описан в {@link KVFrames}.
+ * <p>
+ * Данные хранятся в {@link KVStorage}: по умолчанию в памяти, а с {@link LogKVStorage} - на диске, и тогда
+ * сохраняются после перезапуска сервера. При ошибке хранилища сервер отвечает кодом 500.
+ * <p>
+ * Обработчики не имеют общего изменяемого состояния, кроме потокобезопасного хранилища, поэтому запросы
+ * могут обрабатываться параллельно в пуле потоков (см. {@link HttpTaskServer.ExecutorMode})
  */
 public class KVServer {
     public static final int PORT = 8078;
+    private static final int STOP_TIMEOUT_SECONDS = 5;
     private final String apiToken;
     private final HttpServer server;
-    private final Map<String, String> data = new HashMap<>();
+    private final KVStorage storage;
+    private final ExecutorService executor;
 
     public KVServer() throws IOException {
+        this(new InMemoryKVStorage());
+    }
+
+    /**
+     * @param storage хранилище данных; закрывается при остановке сервера
+     */
+    public KVServer(KVStorage storage) throws IOException {
+        this(storage, HttpTaskServer.ExecutorMode.DISPATCHER, 0);
+    }
+
+    /**
+     * @param storage      хранилище данных; закрывается при остановке сервера
+     * @param threadsCount количество потоков для режима FIXED_POOL (при значении меньше 1 - по числу ядер)
+     */
+    public KVServer(KVStorage storage, HttpTaskServer.ExecutorMode executorMode, int threadsCount)
+            throws IOException {
+        this.storage = storage;
         apiToken = generateApiToken();
         server = HttpServer.create(new InetSocketAddress("localhost", PORT), 0);
+        executor = HttpTaskServer.createExecutor(executorMode, threadsCount);
+        server.setExecutor(executor);
         server.createContext("/register", this::register);
         server.createContext("/save", this::save);
         server.createContext("/load", this::load);
+        server.createContext("/mset", this::multiSave);
+        server.createContext("/mget", this::multiLoad);
+    }
+
+    /**
+     * Сохраняет пары ключ-значение из тела запроса. Если хотя бы одна пара некорректна, не сохраняется ни одна;
+     * пары сохраняются в порядке следования в теле
+     */
+    private void multiSave(HttpExchange h) throws IOException {
+        try {
+            System.out.println("\n/mset");
+            if (!hasAuth(h)) {
+                System.out.println("Запрос неавторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
+                h.sendResponseHeaders(403, 0);
+                return;
+            }
+            if ("POST".equals(h.getRequestMethod())) {
+                Map<String, String> entries;
+                try {
+                    entries = KVFrames.decodeEntries(h.getRequestBody());
+                } catch (IOException e) {
+                    System.out.println("Тело запроса не соответствует формату: " + e.getMessage());
+                    h.sendResponseHeaders(400, 0);
+                    return;
+                }
+                for (Map.Entry<String, String> entry : entries.entrySet()) {
+                    if (entry.getKey() == null || entry.getKey().isEmpty()
+                            || entry.getValue() == null || entry.getValue().isEmpty()) {
+                        System.out.println("Key или value для сохранения пустой.");
+                        h.sendResponseHeaders(400, 0);
+                        return;
+                    }
+                }
+                try {
+                    storage.putAll(entries);
+                } catch (KVStorageException e) {
+                    sendStorageError(h, e);
+                    return;
+                }
+                System.out.println("Значения для " + entries.size() + " ключей успешно обновлены!");
+                h.sendResponseHeaders(200, 0);
+            } else {
+                System.out.println("/mset ждёт POST-запрос, а получил: " + h.getRequestMethod());
+                h.sendResponseHeaders(405, 0);
+            }
+        } finally {
+            h.close();
+        }
+    }
+
+    /**
+     * Отправляет значения ключей из тела запроса в том же порядке; для отсутствующего ключа передаётся null
+     */
+    private void multiLoad(HttpExchange h) throws IOException {
+        try {
+            System.out.println("\n/mget");
+            if (!hasAuth(h)) {
+                System.out.println("Запрос неавторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
+                h.sendResponseHeaders(403, 0);
+                return;
+            }
+            if ("POST".equals(h.getRequestMethod())) {
+                List<String> keys;
+                try {
+                    keys = KVFrames.decodeStrings(h.getRequestBody());
+                } catch (IOException e) {
+                    System.out.println("Тело запроса не соответствует формату: " + e.getMessage());
+                    h.sendResponseHeaders(400, 0);
+                    return;
+                }
+                if (keys.contains(null)) {
+                    System.out.println("Key для загрузки пустой.");
+                    h.sendResponseHeaders(400, 0);
+                    return;
+                }
+                List<String> values;
+                try {
+                    values = storage.getAll(keys);
+                } catch (KVStorageException e) {
+                    sendStorageError(h, e);
+                    return;
+                }
+                byte[] resp = KVFrames.encodeStrings(values);
+                h.getResponseHeaders().add("Content-Type", KVFrames.CONTENT_TYPE);
+                h.sendResponseHeaders(200, resp.length);
+                h.getResponseBody().write(resp);
+                System.out.println("Значения для " + keys.size() + " ключей успешно отправлены.");
+            } else {
+                System.out.println("/mget ждёт POST-запрос, а получил: " + h.getRequestMethod());
+                h.sendResponseHeaders(405, 0);
+            }
+        } finally {
+            h.close();
+        }
     }
 
     private void load(HttpExchange h) throws IOException {
@@ -42,12 +169,19 @@ public class KVServer {
                     h.sendResponseHeaders(400, 0);
                     return;
                 }
-                if (!data.containsKey(key)) {
+                String value;
+                try {
+                    value = storage.get(key);
+                } catch (KVStorageException e) {
+                    sendStorageError(h, e);
+                    return;
+                }
+                if (value == null) {
                     System.out.println("Key не найден.");
                     h.sendResponseHeaders(404, 0);
                     return;
                 }
-                sendText(h, data.get(key));
+                sendText(h, value);
                 System.out.println("Значение для ключа " + key + " успешно отправлено.");
             } else {
                 System.out.println("/load ждёт GET-запрос, а получил: " + h.getRequestMethod());
@@ -79,7 +213,12 @@ public class KVServer {
                     h.sendResponseHeaders(400, 0);
                     return;
                 }
-                data.put(key, value);
+                try {
+                    storage.put(key, value);
+                } catch (KVStorageException e) {
+                    sendStorageError(h, e);
+                    return;
+                }
                 System.out.println("Значение для ключа " + key + " успешно обновлено!");
                 h.sendResponseHeaders(200, 0);
             } else {
@@ -114,6 +253,15 @@ public class KVServer {
 
     public void stop() {
         server.stop(0);
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        storage.close();
     }
 
     private String generateApiToken() {
@@ -129,6 +277,11 @@ public class KVServer {
         return new String(h.getRequestBody().readAllBytes(), UTF_8);
     }
 
+    private void sendStorageError(HttpExchange h, KVStorageException e) throws IOException {
+        System.out.println("Ошибка хранилища: " + e.getMessage());
+        h.sendResponseHeaders(500, 0);
+    }
+
     protected void sendText(HttpExchange h, String text) throws IOException {
         byte[] resp = text.getBytes(UTF_8);
         h.getResponseHeaders().add("Content-Type", "application/json");
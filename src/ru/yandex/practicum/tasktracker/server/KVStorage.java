@@ -0,0 +1,42 @@
+package ru.yandex.practicum.tasktracker.server;
+
+import ru.yandex.practicum.tasktracker.exeption.KVStorageException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Хранилище значений KV-сервера. Методы могут вызываться из нескольких потоков одновременно
+ */
+public interface KVStorage extends AutoCloseable {
+
+    /**
+     * @return значение ключа или null, если ключа нет
+     */
+    String get(String key) throws KVStorageException;
+
+    /**
+     * Возвращает значения нескольких ключей. Реализации, допускающие параллельные обращения, возвращают
+     * значения, согласованные с изменениями putAll: изменение видно либо целиком, либо не видно совсем
+     *
+     * @return значения в порядке ключей (null для отсутствующего ключа)
+     */
+    default List<String> getAll(List<String> keys) throws KVStorageException {
+        List<String> values = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            values.add(get(key));
+        }
+        return values;
+    }
+
+    void put(String key, String value) throws KVStorageException;
+
+    /**
+     * Сохраняет несколько значений как одно изменение: после сбоя сохранены либо все значения, либо ни одно
+     */
+    void putAll(Map<String, String> entries) throws KVStorageException;
+
+    @Override
+    void close() throws KVStorageException;
+}
@@ -1,34 +1,67 @@
 package ru.yandex.practicum.tasktracker.server;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BooleanSupplier;
 
+/**
+ * Клиент KV-сервера. Помимо блокирующих методов есть асинхронные методы putAsync и loadAsync, возвращающие
+ * CompletableFuture и не блокирующие вызывающий поток. Число одновременно выполняемых запросов ограничено:
+ * запросы сверх лимита ставятся в очередь клиента и отправляются по мере завершения предыдущих, поэтому
+ * быстрый источник запросов не создаёт на KV-сервере неограниченное число соединений. Очередь тоже ограничена:
+ * если она заполнена, future нового запроса сразу завершается исключением RejectedExecutionException, и
+ * источник запросов должен повторить запрос позже. Методы putAll и loadAll
+ * передают значения нескольких ключей одним запросом /mset или /mget
+ */
 public class KVTaskClient {
+    public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 16;
+    public static final int DEFAULT_MAX_PENDING_REQUESTS = 1024;
+
     private final String serverUrl;
     private final HttpClient client;
+    private final int maxInFlightRequests;
+    private final int maxPendingRequests;
+    // Запросы, ожидающие отправки, и число выполняемых запросов (защищены монитором pendingRequests)
+    private final Deque<BooleanSupplier> pendingRequests = new ArrayDeque<>();
+    private int inFlightRequestsCount;
     private final String apiToken;
 
     public KVTaskClient(String serverUrl) {
+        this(serverUrl, DEFAULT_MAX_IN_FLIGHT_REQUESTS);
+    }
+
+    public KVTaskClient(String serverUrl, int maxInFlightRequests) {
+        this(serverUrl, maxInFlightRequests, DEFAULT_MAX_PENDING_REQUESTS);
+    }
+
+    /**
+     * @param maxInFlightRequests максимальное число одновременно выполняемых запросов
+     * @param maxPendingRequests  максимальное число запросов в очереди (0 - запросы сверх лимита сразу отклоняются)
+     */
+    public KVTaskClient(String serverUrl, int maxInFlightRequests, int maxPendingRequests) {
+        if (maxInFlightRequests < 1) {
+            throw new IllegalArgumentException("Число одновременных запросов должно быть положительным.");
+        } else if (maxPendingRequests < 0) {
+            throw new IllegalArgumentException("Размер очереди запросов не может быть отрицательным.");
+        }
         this.serverUrl = serverUrl;
         client = HttpClient.newHttpClient();
+        this.maxInFlightRequests = maxInFlightRequests;
+        this.maxPendingRequests = maxPendingRequests;
         apiToken = getBodyContent("/register");
     }
 
     public void put(String key, String json) {
-        URI uri = URI.create(serverUrl + "/save/" + key + "?API_TOKEN=" + apiToken);
-        final HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofString(json);
         try {
-            HttpRequest request = HttpRequest.newBuilder().uri(uri).POST(body).build();
-            Optional<HttpResponse<String>> response = sendRequest(request);
-            if (response.isEmpty()) {
-                throw new RuntimeException("KV-сервер не ответил на запрос");
-            } else if (response.get().statusCode() != 200) {
-                throw new RuntimeException("KV-сервер отклонил запрос с кодом " + response.get().statusCode());
-            }
+            join(putAsync(key, json));
         } catch (IllegalArgumentException e) {
             System.out.println("Адрес KV-сервера не соответствует формату URL.");
         }
@@ -38,6 +71,123 @@ public class KVTaskClient {
         return getBodyContent("/load/" + key + "?API_TOKEN=" + apiToken);
     }
 
+    /**
+     * Возвращает значение ключа или null, если ключа нет на KV-сервере
+     */
+    public String loadIfExists(String key) {
+        return join(loadAsync(key, true));
+    }
+
+    /**
+     * Асинхронно сохраняет значение ключа. Если выполняется максимальное число запросов, запрос отправляется
+     * после завершения одного из них
+     *
+     * @return future, завершающийся после ответа сервера; при ошибке завершается исключением RuntimeException,
+     * при заполненной очереди - исключением RejectedExecutionException
+     */
+    public CompletableFuture<Void> putAsync(String key, String json) {
+        URI uri = URI.create(serverUrl + "/save/" + key + "?API_TOKEN=" + apiToken);
+        HttpRequest request = HttpRequest.newBuilder().uri(uri).POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        // тело ответа на сохранение не используется, поэтому не преобразуется в строку
+        return sendAsync(request, HttpResponse.BodyHandlers.discarding()).thenAccept(response -> {
+            if (response.statusCode() != 200) {
+                throw new RuntimeException("KV-сервер отклонил запрос с кодом " + response.statusCode());
+            }
+        });
+    }
+
+    /**
+     * Асинхронно загружает значение ключа. Если выполняется максимальное число запросов, запрос отправляется
+     * после завершения одного из них
+     *
+     * @return future со значением ключа; при ошибке (в том числе при отсутствии ключа) завершается
+     * исключением RuntimeException
+     */
+    public CompletableFuture<String> loadAsync(String key) {
+        return loadAsync(key, false);
+    }
+
+    /**
+     * Асинхронно сохраняет значения нескольких ключей одним запросом /mset. Сервер сохраняет все значения
+     * или (при ошибке в запросе) ни одного; значения сохраняются в порядке обхода values
+     *
+     * @return future, завершающийся после ответа сервера; при ошибке завершается исключением RuntimeException
+     */
+    public CompletableFuture<Void> putAllAsync(Map<String, String> values) {
+        URI uri = URI.create(serverUrl + "/mset?API_TOKEN=" + apiToken);
+        HttpRequest request = HttpRequest.newBuilder().uri(uri).header("Content-Type", KVFrames.CONTENT_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(KVFrames.encodeEntries(values))).build();
+        return sendAsync(request, HttpResponse.BodyHandlers.discarding()).thenAccept(response -> {
+            if (response.statusCode() != 200) {
+                throw new RuntimeException("KV-сервер отклонил запрос с кодом " + response.statusCode());
+            }
+        });
+    }
+
+    /**
+     * Асинхронно загружает значения нескольких ключей одним запросом /mget
+     *
+     * @return future со значениями в порядке ключей (null для отсутствующего ключа); при ошибке завершается
+     * исключением RuntimeException
+     */
+    public CompletableFuture<List<String>> loadAllAsync(List<String> keys) {
+        URI uri = URI.create(serverUrl + "/mget?API_TOKEN=" + apiToken);
+        HttpRequest request = HttpRequest.newBuilder().uri(uri).header("Content-Type", KVFrames.CONTENT_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(KVFrames.encodeStrings(keys))).build();
+        return sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new RuntimeException("KV-сервер отклонил запрос с кодом " + response.statusCode());
+            }
+            try {
+                List<String> values = KVFrames.decodeStrings(new ByteArrayInputStream(response.body()));
+                if (values.size() != keys.size()) {
+                    throw new RuntimeException("KV-сервер вернул " + values.size() + " значений вместо "
+                            + keys.size());
+                }
+                return values;
+            } catch (IOException e) {
+                throw new RuntimeException("Ошибка чтения ответа KV-сервера", e);
+            }
+        });
+    }
+
+    /**
+     * Сохраняет значения нескольких ключей одним запросом (см. {@link #putAllAsync(Map)})
+     */
+    public void putAll(Map<String, String> values) {
+        join(putAllAsync(values));
+    }
+
+    /**
+     * Загружает значения нескольких ключей одним запросом
+     *
+     * @return значения в порядке ключей
+     * @throws RuntimeException если какого-либо ключа нет на KV-сервере
+     */
+    public List<String> loadAll(List<String> keys) {
+        List<String> values = join(loadAllAsync(keys));
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) == null) {
+                throw new RuntimeException("Ключ " + keys.get(i) + " не найден на KV-сервере");
+            }
+        }
+        return values;
+    }
+
+    private CompletableFuture<String> loadAsync(String key, boolean isMissingKeyAllowed) {
+        URI uri = URI.create(serverUrl + "/load/" + key + "?API_TOKEN=" + apiToken);
+        HttpRequest request = HttpRequest.newBuilder().uri(uri).GET().build();
+        return sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            if (response.statusCode() == 404 && isMissingKeyAllowed) {
+                return null;
+            } else if (response.statusCode() != 200) {
+                throw new RuntimeException("KV-сервер отклонил запрос с кодом " + response.statusCode());
+            }
+            return response.body();
+        });
+    }
+
     private String getBodyContent(String endpoint) {
         URI uri = URI.create(serverUrl + endpoint);
         try {
@@ -63,4 +213,97 @@ public class KVTaskClient {
             return Optional.empty();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Отправляет запрос, если выполняется меньше максимального числа запросов, иначе ставит его в очередь или,
+     * если очередь заполнена, отклоняет; вызывающий поток не блокируется. Место выполняемого запроса после
+     * получения ответа или ошибки переходит к первому запросу очереди
+     */
+    private <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                             HttpResponse.BodyHandler<T> bodyHandler) {
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        // true, если запрос выполняется и освободит место сам; false, если он уже завершился и место свободно
+        BooleanSupplier send = () -> {
+            CompletableFuture<HttpResponse<T>> response;
+            try {
+                response = client.sendAsync(request, bodyHandler);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return false;
+            }
+            if (response.isDone()) {
+                response.whenComplete((value, exception) -> complete(result, value, exception));
+                return false;
+            }
+            response.whenComplete((value, exception) -> {
+                startNextRequest();
+                complete(result, value, exception);
+            });
+            return true;
+        };
+        boolean isRejected = false;
+        synchronized (pendingRequests) {
+            if (inFlightRequestsCount >= maxInFlightRequests) {
+                if (pendingRequests.size() < maxPendingRequests) {
+                    pendingRequests.add(send);
+                    return result;
+                }
+                isRejected = true;
+            } else {
+                inFlightRequestsCount++;
+            }
+        }
+        if (isRejected) {
+            result.completeExceptionally(new RejectedExecutionException("Очередь запросов к KV-серверу заполнена ("
+                    + maxPendingRequests + ")"));
+        } else if (!send.getAsBoolean()) {
+            startNextRequest();
+        }
+        return result;
+    }
+
+    /**
+     * Отправляет запросы очереди на место завершившегося запроса, пока один из них не начнёт выполняться, или
+     * освобождает место, если очередь пуста. Запросы, завершившиеся сразу при отправке, обрабатываются в цикле,
+     * а не рекурсивно, поэтому длинная очередь таких запросов не переполняет стек
+     */
+    private void startNextRequest() {
+        while (true) {
+            BooleanSupplier next;
+            synchronized (pendingRequests) {
+                next = pendingRequests.poll();
+                if (next == null) {
+                    inFlightRequestsCount--;
+                    return;
+                }
+            }
+            if (next.getAsBoolean()) {
+                return;
+            }
+        }
+    }
+
+    private static <T> void complete(CompletableFuture<HttpResponse<T>> result, HttpResponse<T> response,
+                                     Throwable exception) {
+        if (exception != null) {
+            result.completeExceptionally(new RuntimeException("KV-сервер не ответил на запрос", exception));
+        } else {
+            result.complete(response);
+        }
+    }
+
+    /**
+     * Ждёт завершения future и возвращает результат; исключение запроса выбрасывается без обёртки
+     * CompletionException
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -1,28 +1,97 @@
 package ru.yandex.practicum.tasktracker.server;
 
+import com.google.gson.JsonSyntaxException;
 import com.google.gson.TypeAdapter;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.time.DateTimeException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 
+/**
+ * Адаптер даты и времени в формате dd.MM.yyyy HH:mm. Строка формата разбирается и собирается посимвольно
+ * без DateTimeFormatter (шаблон используется только для годов вне диапазона 0-9999)
+ */
 public class LocalDateTimeAdapter extends TypeAdapter<LocalDateTime> {
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+    private static final int FORMATTED_LENGTH = 16; // dd.MM.yyyy HH:mm
+    private static final String NULL_VALUE = "null"; // отсутствующая дата записывается строкой "null"
 
     @Override
     public void write(final JsonWriter jsonWriter, final LocalDateTime localDateTime) throws IOException {
-        if (localDateTime != null) {
-            jsonWriter.value(localDateTime.format(formatter));
-        } else {
-            jsonWriter.value("null");
-        }
+        jsonWriter.value(format(localDateTime));
     }
 
     @Override
     public LocalDateTime read(final JsonReader jsonReader) throws IOException {
-        String value = jsonReader.nextString();
-        return (!value.equals("null")) ? LocalDateTime.parse(value, formatter) : null;
+        if (jsonReader.peek() == JsonToken.NULL) {
+            jsonReader.nextNull();
+            return null;
+        }
+        try {
+            return parse(jsonReader.nextString());
+        } catch (DateTimeException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    public static String format(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return NULL_VALUE;
+        }
+        int year = dateTime.getYear();
+        if (year < 0 || year > 9999) {
+            return dateTime.format(formatter);
+        }
+        char[] chars = new char[FORMATTED_LENGTH];
+        putTwoDigits(chars, 0, dateTime.getDayOfMonth());
+        chars[2] = '.';
+        putTwoDigits(chars, 3, dateTime.getMonthValue());
+        chars[5] = '.';
+        putTwoDigits(chars, 6, year / 100);
+        putTwoDigits(chars, 8, year % 100);
+        chars[10] = ' ';
+        putTwoDigits(chars, 11, dateTime.getHour());
+        chars[13] = ':';
+        putTwoDigits(chars, 14, dateTime.getMinute());
+        return new String(chars);
+    }
+
+    /**
+     * Разбирает строку формата dd.MM.yyyy HH:mm ("null" - отсутствующая дата)
+     *
+     * @throws DateTimeException если строка не соответствует формату или дата некорректна
+     */
+    public static LocalDateTime parse(String value) {
+        if (NULL_VALUE.equals(value)) {
+            return null;
+        }
+        if (value.length() != FORMATTED_LENGTH || value.charAt(2) != '.' || value.charAt(5) != '.'
+                || value.charAt(10) != ' ' || value.charAt(13) != ':') {
+            return LocalDateTime.parse(value, formatter);
+        }
+        return LocalDateTime.of(readNumber(value, 6, 4), readNumber(value, 3, 2), readNumber(value, 0, 2),
+                readNumber(value, 11, 2), readNumber(value, 14, 2));
+    }
+
+    private static void putTwoDigits(char[] chars, int position, int value) {
+        chars[position] = (char) ('0' + value / 10);
+        chars[position + 1] = (char) ('0' + value % 10);
+    }
+
+    private static int readNumber(String value, int position, int length) {
+        int result = 0;
+        for (int i = position; i < position + length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new DateTimeParseException("Некорректная дата: " + value, value, i);
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
     }
 }
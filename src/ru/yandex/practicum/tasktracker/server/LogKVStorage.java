@@ -0,0 +1,650 @@
+package ru.yandex.practicum.tasktracker.server;
+
+import ru.yandex.practicum.tasktracker.exeption.KVStorageException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Хранилище в журнале только для дописывания (по образцу Bitcask). Значения дописываются в конец активного
+ * сегмента - файла NNN.data в каталоге хранилища; в памяти хранится только индекс: ключ -> место значения
+ * в сегменте, поэтому чтение значения - одно позиционное чтение из файла. Когда активный сегмент достигает
+ * заданного размера, начинается новый.
+ * <p>
+ * Старые значения остаются в закрытых сегментах, пока их не удалит компактизация: когда устаревшие записи
+ * составляют больше половины закрытых сегментов, фоновый поток переписывает действующие значения в один
+ * сегмент и рядом с ним записывает файл подсказок NNN.hint (ключи и места значений без самих значений).
+ * При запуске индекс строится по файлам подсказок, а сегменты без подсказок читаются целиком.
+ * <p>
+ * Запись: контрольная сумма CRC32, длина ключа, длина значения, число следующих записей того же изменения
+ * (по 4 байта), затем ключ и значение в UTF-8. Изменение putAll записывается одним блоком, и при построении
+ * индекса учитывается, только если записано полностью; оборванный или повреждённый конец сегмента обрезается
+ */
+public class LogKVStorage implements KVStorage {
+    public static final long DEFAULT_MAX_SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final String DATA_SUFFIX = ".data";
+    private static final String HINT_SUFFIX = ".hint";
+    private static final String TEMP_SUFFIX = ".compact"; // файлы незавершённой компактизации
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+    private static final double COMPACTION_DEAD_RATIO = 0.5;
+
+    private final Path directory;
+    private final long maxSegmentSize;
+    private final boolean isSyncOnWrite;
+    // Индекс и список сегментов изменяются под блокировкой записи; чтение значений выполняется под блокировкой
+    // чтения, поэтому компактизация не закроет сегмент во время чтения из него
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Location> index = new HashMap<>();
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment activeSegment;
+    private boolean isClosed;
+    private KVStorageException failure; // ошибка, после которой состояние в памяти не соответствует файлам
+    private final ReentrantLock compactionLock = new ReentrantLock(); // компактизации выполняются по одной
+    private final AtomicBoolean isCompactionScheduled = new AtomicBoolean();
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "kv-storage-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Файл сегмента. Записывается только активный сегмент, остальные неизменны
+     */
+    private static class Segment {
+        private final long id;
+        private final FileChannel channel;
+        private long size;
+        private long liveBytes; // размер записей, на которые указывает индекс
+
+        private Segment(long id, FileChannel channel, long size) {
+            this.id = id;
+            this.channel = channel;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Место значения: сегмент, смещение и длина значения, размер всей записи
+     */
+    private static class Location {
+        private final Segment segment;
+        private final long valueOffset;
+        private final int valueLength;
+        private final int recordSize;
+
+        private Location(Segment segment, long valueOffset, int valueLength, int recordSize) {
+            this.segment = segment;
+            this.valueOffset = valueOffset;
+            this.valueLength = valueLength;
+            this.recordSize = recordSize;
+        }
+    }
+
+    public LogKVStorage(Path directory) throws KVStorageException {
+        this(directory, DEFAULT_MAX_SEGMENT_SIZE, false);
+    }
+
+    /**
+     * Открывает хранилище в каталоге (создаёт каталог, если его нет) и строит индекс по файлам каталога
+     *
+     * @param maxSegmentSize размер, после которого начинается новый сегмент
+     * @param isSyncOnWrite  true, если каждое изменение нужно сбрасывать на носитель (fsync) до ответа клиенту;
+     *                       иначе изменение сохраняется при аварийном завершении процесса, но может быть
+     *                       потеряно при отключении питания
+     */
+    public LogKVStorage(Path directory, long maxSegmentSize, boolean isSyncOnWrite) throws KVStorageException {
+        this.directory = directory;
+        this.maxSegmentSize = maxSegmentSize;
+        this.isSyncOnWrite = isSyncOnWrite;
+        try {
+            Files.createDirectories(directory);
+            open();
+        } catch (IOException exception) {
+            closeSegments();
+            throw new KVStorageException(String.format("Ошибка открытия хранилища %s.", directory), exception);
+        }
+    }
+
+    @Override
+    public String get(String key) throws KVStorageException {
+        lock.readLock().lock();
+        try {
+            checkState();
+            return readValue(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Читает значения под одной блокировкой чтения, поэтому изменение putAll видно целиком или не видно совсем
+     */
+    @Override
+    public List<String> getAll(List<String> keys) throws KVStorageException {
+        lock.readLock().lock();
+        try {
+            checkState();
+            List<String> values = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                values.add(readValue(key));
+            }
+            return values;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(String key, String value) throws KVStorageException {
+        putAll(Map.of(key, value));
+    }
+
+    @Override
+    public void putAll(Map<String, String> entries) throws KVStorageException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        // Записи изменения кодируются вне блокировки
+        List<String> keys = new ArrayList<>(entries.size());
+        List<byte[]> keyBytes = new ArrayList<>(entries.size());
+        List<byte[]> valueBytes = new ArrayList<>(entries.size());
+        int size = 0;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            keys.add(entry.getKey());
+            keyBytes.add(entry.getKey().getBytes(UTF_8));
+            valueBytes.add(entry.getValue().getBytes(UTF_8));
+            size += HEADER_SIZE + keyBytes.get(keyBytes.size() - 1).length
+                    + valueBytes.get(valueBytes.size() - 1).length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (int i = 0; i < keys.size(); i++) {
+            writeRecord(buffer, keyBytes.get(i), valueBytes.get(i), keys.size() - 1 - i);
+        }
+        buffer.flip();
+
+        boolean isSegmentClosed = false;
+        lock.writeLock().lock();
+        try {
+            checkState();
+            if (activeSegment.size > 0 && activeSegment.size + size > maxSegmentSize) {
+                activeSegment = createSegment(activeSegment.id + 1);
+                isSegmentClosed = true;
+            }
+            Segment segment = activeSegment;
+            long position = segment.size;
+            try {
+                while (buffer.hasRemaining()) {
+                    position += segment.channel.write(buffer, position);
+                }
+                if (isSyncOnWrite) {
+                    segment.channel.force(false);
+                }
+            } catch (IOException exception) {
+                // часть записей могла попасть в файл; они не должны учитываться при построении индекса
+                try {
+                    segment.channel.truncate(segment.size);
+                } catch (IOException truncateException) {
+                    exception.addSuppressed(truncateException);
+                }
+                throw exception;
+            }
+            long offset = segment.size;
+            for (int i = 0; i < keys.size(); i++) {
+                int recordSize = HEADER_SIZE + keyBytes.get(i).length + valueBytes.get(i).length;
+                index(keys.get(i), new Location(segment, offset + HEADER_SIZE + keyBytes.get(i).length,
+                        valueBytes.get(i).length, recordSize));
+                offset += recordSize;
+            }
+            segment.size = offset;
+        } catch (IOException exception) {
+            throw new KVStorageException("Ошибка записи в хранилище.", exception);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (isSegmentClosed) {
+            scheduleCompactionIfNeeded();
+        }
+    }
+
+    /**
+     * Переписывает действующие значения всех сегментов, кроме нового активного, в один сегмент
+     * (в отличие от фоновой компактизации - независимо от доли устаревших записей)
+     */
+    public void compact() throws KVStorageException {
+        compactionLock.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                checkState();
+                if (activeSegment.size > 0) {
+                    activeSegment = createSegment(activeSegment.id + 1);
+                }
+            } catch (IOException exception) {
+                throw new KVStorageException("Ошибка создания сегмента.", exception);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            compactClosedSegments();
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Дожидается окончания компактизации, сбрасывает активный сегмент на носитель и закрывает файлы
+     */
+    @Override
+    public void close() throws KVStorageException {
+        compactionExecutor.shutdown();
+        try {
+            compactionExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            if (isClosed) {
+                return;
+            }
+            isClosed = true;
+            if (failure == null) {
+                activeSegment.channel.force(false);
+            }
+        } catch (IOException exception) {
+            throw new KVStorageException("Ошибка сброса сегмента на носитель.", exception);
+        } finally {
+            closeSegments();
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void open() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    Files.delete(file); // компактизация не завершилась, исходные сегменты не удалены
+                } else if (name.endsWith(DATA_SUFFIX)) {
+                    ids.add(Long.parseLong(name.substring(0, name.length() - DATA_SUFFIX.length())));
+                }
+            }
+        }
+        Collections.sort(ids);
+        for (long id : ids) { // более новые сегменты перекрывают значения более старых
+            FileChannel channel = FileChannel.open(getDataPath(id), StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            Segment segment = new Segment(id, channel, 0);
+            segments.put(id, segment);
+            if (!readHints(segment)) {
+                readSegment(segment);
+            }
+        }
+        // сегмент с подсказками не дописывается, иначе подсказки перестанут ему соответствовать
+        if (segments.isEmpty() || segments.lastEntry().getValue().size >= maxSegmentSize
+                || Files.exists(getHintPath(segments.lastKey()))) {
+            activeSegment = createSegment(segments.isEmpty() ? 1 : segments.lastKey() + 1);
+        } else {
+            activeSegment = segments.lastEntry().getValue();
+        }
+    }
+
+    /**
+     * Строит индекс сегмента по файлу подсказок
+     *
+     * @return false, если файла подсказок нет или он повреждён
+     */
+    private boolean readHints(Segment segment) throws IOException {
+        Path hintPath = getHintPath(segment.id);
+        if (!Files.exists(hintPath)) {
+            return false;
+        }
+        byte[] hints = Files.readAllBytes(hintPath);
+        if (hints.length < Long.BYTES) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(hints);
+        CRC32 crc = new CRC32();
+        crc.update(hints, 0, hints.length - Long.BYTES);
+        if (buffer.getLong(hints.length - Long.BYTES) != crc.getValue()) {
+            return false;
+        }
+        buffer.limit(hints.length - Long.BYTES);
+        segment.size = buffer.getLong();
+        if (segment.channel.size() < segment.size) {
+            return false;
+        }
+        while (buffer.hasRemaining()) {
+            byte[] key = new byte[buffer.getInt()];
+            buffer.get(key);
+            long valueOffset = buffer.getLong();
+            int valueLength = buffer.getInt();
+            index(new String(key, UTF_8), new Location(segment, valueOffset, valueLength,
+                    HEADER_SIZE + key.length + valueLength));
+        }
+        return true;
+    }
+
+    /**
+     * Строит индекс сегмента чтением всех записей. Записи незавершённого изменения не учитываются,
+     * а файл обрезается после последнего полностью записанного изменения
+     */
+    private void readSegment(Segment segment) throws IOException {
+        long fileSize = segment.channel.size();
+        List<String> batchKeys = new ArrayList<>();
+        List<Location> batchLocations = new ArrayList<>();
+        long position = 0;
+        long validSize = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(segment.channel.position(0))));
+        byte[] header = new byte[HEADER_SIZE];
+        CRC32 crc = new CRC32();
+        int expectedRemaining = -1; // -1 - ожидается первая запись изменения
+        while (fileSize - position >= HEADER_SIZE) {
+            in.readFully(header);
+            ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+            int checksum = headerBuffer.getInt();
+            int keyLength = headerBuffer.getInt();
+            int valueLength = headerBuffer.getInt();
+            int remaining = headerBuffer.getInt();
+            if (keyLength < 0 || valueLength < 0 || remaining < 0
+                    || (expectedRemaining >= 0 && remaining != expectedRemaining)
+                    || fileSize - position - HEADER_SIZE < (long) keyLength + valueLength) {
+                break;
+            }
+            byte[] key = new byte[keyLength];
+            in.readFully(key);
+            byte[] value = new byte[valueLength];
+            in.readFully(value);
+            crc.reset();
+            crc.update(header, Integer.BYTES, HEADER_SIZE - Integer.BYTES);
+            crc.update(key);
+            crc.update(value);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            batchKeys.add(new String(key, UTF_8));
+            batchLocations.add(new Location(segment, position + HEADER_SIZE + keyLength, valueLength,
+                    HEADER_SIZE + keyLength + valueLength));
+            position += HEADER_SIZE + keyLength + valueLength;
+            if (remaining == 0) {
+                for (int i = 0; i < batchKeys.size(); i++) {
+                    index(batchKeys.get(i), batchLocations.get(i));
+                }
+                batchKeys.clear();
+                batchLocations.clear();
+                validSize = position;
+                expectedRemaining = -1;
+            } else {
+                expectedRemaining = remaining - 1;
+            }
+        }
+        if (validSize < fileSize) {
+            System.out.printf("Сегмент %s обрезан до %d байт: конец файла повреждён или не дописан.%n",
+                    getDataPath(segment.id), validSize);
+            segment.channel.truncate(validSize);
+        }
+        segment.size = validSize;
+    }
+
+    /**
+     * Переписывает действующие значения закрытых сегментов в один сегмент с номером последнего из них.
+     * Новый сегмент и подсказки записываются во временные файлы без блокировки и заменяют исходные сегменты
+     * под блокировкой записи. Вызывается под compactionLock
+     */
+    private void compactClosedSegments() throws KVStorageException {
+        List<Segment> compactedSegments;
+        List<Map.Entry<String, Location>> entries = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            checkState();
+            compactedSegments = new ArrayList<>(segments.headMap(activeSegment.id).values());
+            if (compactedSegments.isEmpty()) {
+                return;
+            }
+            for (Map.Entry<String, Location> entry : index.entrySet()) {
+                if (entry.getValue().segment != activeSegment) {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // Закрытые сегменты неизменны, а закрыть их может только компактизация, поэтому читаются без блокировки
+        long id = compactedSegments.get(compactedSegments.size() - 1).id;
+        Path tempDataPath = Path.of(getDataPath(id) + TEMP_SUFFIX);
+        Path tempHintPath = Path.of(getHintPath(id) + TEMP_SUFFIX);
+        List<Location> newLocations = new ArrayList<>(entries.size());
+        long size = 0;
+        try {
+            ByteArrayOutputStream hints = new ByteArrayOutputStream();
+            DataOutputStream hintsOut = new DataOutputStream(hints);
+            try (FileOutputStream file = new FileOutputStream(tempDataPath.toFile());
+                 BufferedOutputStream out = new BufferedOutputStream(file)) {
+                for (Map.Entry<String, Location> entry : entries) {
+                    Location location = entry.getValue();
+                    byte[] key = entry.getKey().getBytes(UTF_8);
+                    ByteBuffer value = ByteBuffer.allocate(location.valueLength);
+                    readFully(location.segment.channel, value, location.valueOffset);
+                    ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + key.length + location.valueLength);
+                    writeRecord(record, key, value.array(), 0);
+                    out.write(record.array());
+                    newLocations.add(new Location(null, size + HEADER_SIZE + key.length, location.valueLength,
+                            record.capacity()));
+                    hintsOut.writeInt(key.length);
+                    hintsOut.write(key);
+                    hintsOut.writeLong(size + HEADER_SIZE + key.length);
+                    hintsOut.writeInt(location.valueLength);
+                    size += record.capacity();
+                }
+                out.flush();
+                file.getChannel().force(true);
+            }
+            writeHints(tempHintPath, size, hints.toByteArray());
+        } catch (IOException exception) {
+            deleteQuietly(tempDataPath);
+            deleteQuietly(tempHintPath);
+            throw new KVStorageException("Ошибка компактизации хранилища.", exception);
+        }
+
+        lock.writeLock().lock();
+        try {
+            checkState();
+            // Порядок замены файлов сохраняет данные при сбое на любом шаге: новый сегмент заменяет последний
+            // исходный и содержит все действующие значения остальных, которые удаляются только после замены
+            for (Segment segment : compactedSegments) {
+                segment.channel.close();
+                segments.remove(segment.id);
+            }
+            Files.deleteIfExists(getHintPath(id));
+            Files.move(tempDataPath, getDataPath(id), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            Files.move(tempHintPath, getHintPath(id), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            Segment compactedSegment = new Segment(id, FileChannel.open(getDataPath(id), StandardOpenOption.READ,
+                    StandardOpenOption.WRITE), size);
+            segments.put(id, compactedSegment);
+            Set<Segment> replacedSegments = Collections.newSetFromMap(new IdentityHashMap<>());
+            replacedSegments.addAll(compactedSegments);
+            for (int i = 0; i < entries.size(); i++) {
+                String key = entries.get(i).getKey();
+                Location newLocation = newLocations.get(i);
+                // значение, изменённое во время компактизации, уже записано в активный сегмент
+                if (replacedSegments.contains(index.get(key).segment)) {
+                    index.put(key, new Location(compactedSegment, newLocation.valueOffset,
+                            newLocation.valueLength, newLocation.recordSize));
+                    compactedSegment.liveBytes += newLocation.recordSize;
+                }
+            }
+            for (Segment segment : compactedSegments) {
+                if (segment.id != id) {
+                    Files.deleteIfExists(getDataPath(segment.id));
+                    Files.deleteIfExists(getHintPath(segment.id));
+                }
+            }
+        } catch (IOException exception) {
+            // файлы остаются согласованными, но индекс в памяти мог устареть: хранилище нужно открыть заново
+            failure = new KVStorageException("Ошибка замены сегментов при компактизации; хранилище нужно открыть "
+                    + "заново.", exception);
+            throw failure;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        lock.readLock().lock();
+        try {
+            if (isClosed || failure != null) {
+                return;
+            }
+            long totalBytes = 0;
+            long liveBytes = 0;
+            for (Segment segment : segments.headMap(activeSegment.id).values()) {
+                totalBytes += segment.size;
+                liveBytes += segment.liveBytes;
+            }
+            if (totalBytes == 0 || totalBytes - liveBytes < totalBytes * COMPACTION_DEAD_RATIO) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (isCompactionScheduled.compareAndSet(false, true)) {
+            compactionExecutor.execute(() -> {
+                isCompactionScheduled.set(false);
+                compactionLock.lock();
+                try {
+                    compactClosedSegments();
+                } catch (KVStorageException exception) {
+                    System.out.println(exception.getMessage());
+                } finally {
+                    compactionLock.unlock();
+                }
+            });
+        }
+    }
+
+    /**
+     * Добавляет место значения в индекс и учитывает, что предыдущее значение ключа устарело
+     */
+    private void index(String key, Location location) {
+        Location previous = index.put(key, location);
+        if (previous != null) {
+            previous.segment.liveBytes -= previous.recordSize;
+        }
+        location.segment.liveBytes += location.recordSize;
+    }
+
+    private Segment createSegment(long id) throws IOException {
+        FileChannel channel = FileChannel.open(getDataPath(id), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (activeSegment != null) {
+            activeSegment.channel.force(false); // сегмент больше не изменяется
+        }
+        Segment segment = new Segment(id, channel, 0);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private void writeHints(Path path, long segmentSize, byte[] hints) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + hints.length + Long.BYTES);
+        buffer.putLong(segmentSize);
+        buffer.put(hints);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putLong(crc.getValue());
+        try (FileOutputStream file = new FileOutputStream(path.toFile())) {
+            file.write(buffer.array());
+            file.getChannel().force(true);
+        }
+    }
+
+    /**
+     * Читает значение ключа из сегмента. Вызывается под блокировкой чтения или записи
+     */
+    private String readValue(String key) throws KVStorageException {
+        Location location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(location.valueLength);
+        try {
+            readFully(location.segment.channel, buffer, location.valueOffset);
+        } catch (IOException exception) {
+            throw new KVStorageException(String.format("Ошибка чтения значения ключа %s.", key), exception);
+        }
+        return new String(buffer.array(), UTF_8);
+    }
+
+    private static void writeRecord(ByteBuffer buffer, byte[] key, byte[] value, int remaining) {
+        int start = buffer.position();
+        buffer.putInt(0); // контрольная сумма записывается после остальных полей
+        buffer.putInt(key.length);
+        buffer.putInt(value.length);
+        buffer.putInt(remaining);
+        buffer.put(key);
+        buffer.put(value);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), start + Integer.BYTES, buffer.position() - start - Integer.BYTES);
+        buffer.putInt(start, (int) crc.getValue());
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position + buffer.position());
+            if (count < 0) {
+                throw new EOFException("Значение выходит за конец сегмента");
+            }
+        }
+    }
+
+    private void checkState() throws KVStorageException {
+        if (failure != null) {
+            throw failure;
+        } else if (isClosed) {
+            throw new KVStorageException("Хранилище закрыто.");
+        }
+    }
+
+    private void closeSegments() {
+        for (Segment segment : segments.values()) {
+            try {
+                segment.channel.close();
+            } catch (IOException exception) {
+                System.out.printf("Ошибка закрытия сегмента %s.%n", getDataPath(segment.id));
+            }
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException exception) {
+            System.out.printf("Не удалось удалить временный файл %s.%n", path);
+        }
+    }
+
+    private Path getDataPath(long id) {
+        return directory.resolve(String.format("%016d%s", id, DATA_SUFFIX));
+    }
+
+    private Path getHintPath(long id) {
+        return directory.resolve(String.format("%016d%s", id, HINT_SUFFIX));
+    }
+}
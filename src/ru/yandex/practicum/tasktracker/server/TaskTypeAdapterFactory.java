@@ -0,0 +1,184 @@
+package ru.yandex.practicum.tasktracker.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import ru.yandex.practicum.tasktracker.model.*;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Потоковые адаптеры Gson для задач, эпиков и подзадач, записывающие и читающие поля напрямую, без отражения.
+ * В JSON добавляется поле type с типом задачи, поэтому в одном списке могут быть задачи разных типов.
+ * При чтении JSON без поля type (например, записанного адаптером на основе отражения) используется запрошенный
+ * тип. Имена полей совпадают с именами полей классов модели
+ */
+public class TaskTypeAdapterFactory implements TypeAdapterFactory {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+        Class<? super T> rawType = typeToken.getRawType();
+        if (rawType == Task.class) {
+            return (TypeAdapter<T>) new TaskAdapter(TaskType.TASK).nullSafe();
+        } else if (rawType == Epic.class) {
+            return (TypeAdapter<T>) new TaskAdapter(TaskType.EPIC).nullSafe();
+        } else if (rawType == Subtask.class) {
+            return (TypeAdapter<T>) new TaskAdapter(TaskType.SUBTASK).nullSafe();
+        }
+        return null;
+    }
+
+    private static class TaskAdapter extends TypeAdapter<Task> {
+        private final TaskType defaultType; // тип, запрошенный при чтении
+
+        TaskAdapter(TaskType defaultType) {
+            this.defaultType = defaultType;
+        }
+
+        @Override
+        public void write(JsonWriter out, Task task) throws IOException {
+            out.beginObject();
+            writeFields(out, task);
+            out.endObject();
+        }
+
+        private void writeFields(JsonWriter out, Task task) throws IOException {
+            TaskType type = getTaskType(task);
+            out.name("type").value(type.name());
+            out.name("id").value(task.getId());
+            out.name("name").value(task.getName());
+            out.name("status").value((task.getStatus() != null) ? task.getStatus().name() : null);
+            out.name("description").value(task.getDescription());
+            out.name("startTime").value(LocalDateTimeAdapter.format(task.getStartTime()));
+            out.name("duration").value(task.getDuration());
+            if (type == TaskType.SUBTASK) {
+                out.name("epicId").value(((Subtask) task).getEpicId());
+            } else if (type == TaskType.EPIC) {
+                Epic epic = (Epic) task;
+                out.name("endTime").value(LocalDateTimeAdapter.format(epic.getEndTime()));
+                out.name("subtasksMap").beginObject();
+                for (Map.Entry<Integer, Subtask> entry : epic.getSubtasksMap().entrySet()) {
+                    out.name(String.valueOf(entry.getKey()));
+                    write(out, entry.getValue());
+                }
+                out.endObject();
+            }
+        }
+
+        @Override
+        public Task read(JsonReader in) throws IOException {
+            TaskType type = defaultType;
+            int id = 0;
+            String name = null;
+            TaskStatus status = null;
+            String description = null;
+            LocalDateTime startTime = null;
+            int duration = 0;
+            int epicId = 0;
+            LocalDateTime endTime = null;
+            Map<Integer, Subtask> subtasks = null;
+
+            in.beginObject();
+            try {
+                while (in.hasNext()) {
+                    String field = in.nextName();
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        continue;
+                    }
+                    switch (field) {
+                        case "type":
+                            type = TaskType.valueOf(in.nextString());
+                            break;
+                        case "id":
+                            id = in.nextInt();
+                            break;
+                        case "name":
+                            name = in.nextString();
+                            break;
+                        case "status":
+                            status = TaskStatus.valueOf(in.nextString());
+                            break;
+                        case "description":
+                            description = in.nextString();
+                            break;
+                        case "startTime":
+                            startTime = LocalDateTimeAdapter.parse(in.nextString());
+                            break;
+                        case "duration":
+                            duration = in.nextInt();
+                            break;
+                        case "epicId":
+                            epicId = in.nextInt();
+                            break;
+                        case "endTime":
+                            endTime = LocalDateTimeAdapter.parse(in.nextString());
+                            break;
+                        case "subtasksMap":
+                            subtasks = readSubtasks(in);
+                            break;
+                        default:
+                            in.skipValue();
+                    }
+                }
+            } catch (IllegalArgumentException | DateTimeException e) {
+                throw new JsonSyntaxException(e); // NumberFormatException - тоже IllegalArgumentException
+            }
+            in.endObject();
+
+            if (!isAssignable(defaultType, type)) {
+                throw new JsonSyntaxException(String.format("Ожидался объект типа %s, получен %s.", defaultType, type));
+            }
+            switch (type) {
+                case EPIC:
+                    Epic epic = new Epic(id, name, status, description, startTime, duration, endTime);
+                    if (subtasks != null) {
+                        epic.getSubtasksMap().putAll(subtasks);
+                    }
+                    return epic;
+                case SUBTASK:
+                    return new Subtask(id, name, status, description, startTime, duration, epicId);
+                default:
+                    return new Task(id, name, status, description, startTime, duration);
+            }
+        }
+
+        private Map<Integer, Subtask> readSubtasks(JsonReader in) throws IOException {
+            Map<Integer, Subtask> subtasks = new HashMap<>();
+            TaskAdapter subtaskAdapter = new TaskAdapter(TaskType.SUBTASK);
+            in.beginObject();
+            while (in.hasNext()) {
+                int subtaskId = Integer.parseInt(in.nextName());
+                subtasks.put(subtaskId, (Subtask) subtaskAdapter.read(in));
+            }
+            in.endObject();
+            return subtasks;
+        }
+
+        /**
+         * Объект типа actualType может быть возвращён на запрос типа requestedType (эпик и подзадача - это задачи)
+         */
+        private static boolean isAssignable(TaskType requestedType, TaskType actualType) {
+            return requestedType == TaskType.TASK || requestedType == actualType;
+        }
+
+        private static TaskType getTaskType(Task task) {
+            if (task.getClass() == Epic.class) {
+                return TaskType.EPIC;
+            } else if (task.getClass() == Subtask.class) {
+                return TaskType.SUBTASK;
+            }
+            return TaskType.TASK;
+        }
+    }
+}